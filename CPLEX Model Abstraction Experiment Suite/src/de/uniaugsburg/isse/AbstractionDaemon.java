@@ -0,0 +1,312 @@
+package de.uniaugsburg.isse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.uniaugsburg.isse.abstraction.AvppGraph;
+import de.uniaugsburg.isse.abstraction.AvppLeafNode;
+import de.uniaugsburg.isse.abstraction.types.PiecewiseLinearFunction;
+import de.uniaugsburg.isse.cplex.CPLEXSolverFacade;
+import de.uniaugsburg.isse.cplex.PortfolioSolverFacade;
+import de.uniaugsburg.isse.cplex.SolverEnvironmentPool;
+import de.uniaugsburg.isse.experiments.Experiment;
+import de.uniaugsburg.isse.experiments.ExperimentSeries;
+import de.uniaugsburg.isse.experiments.ExperimentStatistics;
+import de.uniaugsburg.isse.powerplants.PowerPlantData;
+import de.uniaugsburg.isse.solver.CplexSolverFactory;
+
+/**
+ * Long-lived local service that keeps CPLEX engines, prepared experiments (plants, hierarchy and abstractions) and the
+ * JIT warm between many small jobs, e.g., of scripted parameter sweeps. It listens on localhost only and speaks a line
+ * protocol; arguments are separated by tabs since the paths of this project contain spaces:
+ *
+ * <pre>
+ * LOAD    name  properties  prepares and abstracts plants and hierarchy of a configuration, keeps them under name
+ * ABSTRACT name [avpp]      abstractions of a loaded configuration (dirty AVPPs are abstracted again),
+ *                           one line per AVPP: name, feasible regions, cost breakpoints (output:costs)
+ * SOLVE   model data [T]    solves with a pooled engine: objective and the total production of steps 1 .. T
+ * RUN     properties [runs] runs a series of experiments, streams the statistics as CSV
+ * STATUS                    loaded configurations and idle engines
+ * QUIT                      closes the connection
+ * SHUTDOWN                  stops the daemon
+ * </pre>
+ *
+ * Every response ends with a line "OK" or "ERROR exception: message". Requests of one connection are served in order,
+ * several connections in parallel; everything touching experiments is serialized as they share the global
+ * RandomManager.
+ */
+public class AbstractionDaemon {
+	public static final int DEFAULT_PORT = 4711;
+
+	private final int port;
+	private final SolverEnvironmentPool solverPool; // separate from the shared pool the sampling solvers lease from
+	private final Map<String, Experiment> loadedExperiments;
+	private final Object experimentLock = new Object();
+	private final ExperimentRunner runner = new ExperimentRunner();
+
+	private ServerSocket serverSocket;
+	private ExecutorService connections;
+	private volatile boolean running;
+
+	/**
+	 * @param port
+	 *            localhost port to listen on
+	 * @param solverPoolSize
+	 *            number of CPLEX engines kept alive, also the number of parallel solves
+	 */
+	public AbstractionDaemon(int port, int solverPoolSize) {
+		this.port = port;
+		this.solverPool = new SolverEnvironmentPool(solverPoolSize);
+		this.loadedExperiments = new HashMap<String, Experiment>();
+	}
+
+	/**
+	 * Accepts connections until SHUTDOWN is requested
+	 *
+	 * @throws IOException
+	 */
+	public void serve() throws IOException {
+		serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null)); // loopback only
+		connections = Executors.newCachedThreadPool();
+		running = true;
+		System.out.println("Abstraction daemon listening on localhost:" + port);
+		try {
+			while (running) {
+				final Socket socket;
+				try {
+					socket = serverSocket.accept();
+				} catch (SocketException e) {
+					if (running)
+						throw e;
+					break; // closed by shutdown
+				}
+				connections.submit(new Runnable() {
+					@Override
+					public void run() {
+						handleConnection(socket);
+					}
+				});
+			}
+		} finally {
+			connections.shutdown();
+			solverPool.shutdown();
+			SolverEnvironmentPool.getSharedPool().shutdown();
+		}
+	}
+
+	public void shutdown() {
+		running = false;
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void handleConnection(Socket socket) {
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.trim().isEmpty())
+					continue;
+				String[] request = line.split("\t");
+				String command = request[0].trim().toUpperCase();
+				if ("QUIT".equals(command)) {
+					out.println("OK");
+					break;
+				}
+				try {
+					handleRequest(command, request, out);
+					out.println("OK");
+				} catch (Exception e) {
+					out.println("ERROR " + describe(e));
+				}
+				if ("SHUTDOWN".equals(command)) {
+					shutdown();
+					break;
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Connection failed: " + e.getMessage());
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * @return exception class and message on one line, as the protocol ends a response with the error line
+	 */
+	private static String describe(Exception e) {
+		String message = e.getMessage();
+		if (message == null)
+			return e.getClass().getSimpleName();
+		return e.getClass().getSimpleName() + ": " + message.replaceAll("\\s+", " ").trim();
+	}
+
+	protected void handleRequest(String command, String[] request, PrintWriter out) {
+		if ("LOAD".equals(command)) {
+			checkArguments(request, 3);
+			load(request[1], request[2]);
+		} else if ("ABSTRACT".equals(command)) {
+			checkArguments(request, 2);
+			abstractAvpps(request[1], request.length > 2 ? request[2] : null, out);
+		} else if ("SOLVE".equals(command)) {
+			checkArguments(request, 3);
+			solve(request[1], request[2], request.length > 3 ? Integer.parseInt(request[3]) : 0, out);
+		} else if ("RUN".equals(command)) {
+			checkArguments(request, 2);
+			run(request[1], request.length > 2 ? Integer.parseInt(request[2]) : 1, out);
+		} else if ("STATUS".equals(command)) {
+			synchronized (experimentLock) {
+				out.println("loaded\t" + loadedExperiments.keySet());
+			}
+			out.println("solvers\t" + solverPool.getMaxEnvironments());
+		} else if (!"SHUTDOWN".equals(command)) {
+			throw new IllegalArgumentException("Unknown command " + command);
+		}
+	}
+
+	private void checkArguments(String[] request, int minLength) {
+		if (request.length < minLength)
+			throw new IllegalArgumentException(request[0] + " needs " + (minLength - 1) + " tab separated arguments");
+	}
+
+	private Experiment createExperiment(String propertiesFile) {
+		Experiment exp = runner.getExperiment(propertiesFile);
+		if (exp == null)
+			throw new IllegalArgumentException("Cannot read " + propertiesFile);
+		exp.setSolverFactory(new CplexSolverFactory());
+		exp.setUseSamplingAbstraction(true);
+		return exp;
+	}
+
+	protected void load(String name, String propertiesFile) {
+		synchronized (experimentLock) {
+			Experiment exp = createExperiment(propertiesFile);
+			exp.setStatistics(new ExperimentStatistics());
+			exp.abstractHierarchy();
+			loadedExperiments.put(name, exp);
+		}
+	}
+
+	protected void abstractAvpps(String name, String avpp, PrintWriter out) {
+		synchronized (experimentLock) {
+			Experiment exp = loadedExperiments.get(name);
+			if (exp == null)
+				throw new IllegalArgumentException("No configuration loaded as " + name);
+			runner.applySamplingMode(exp); // another configuration may have been loaded since
+			writeAbstractions(exp.abstractHierarchy(), avpp, out);
+		}
+	}
+
+	private void writeAbstractions(AvppGraph node, String avpp, PrintWriter out) {
+		if (node instanceof AvppLeafNode)
+			return;
+		for (AvppGraph child : node.getChildren()) {
+			writeAbstractions(child, avpp, out);
+		}
+		PowerPlantData pd = node.getPowerPlant();
+		if (avpp != null && !avpp.equals(pd.getName()))
+			return;
+
+		StringBuilder costs = new StringBuilder();
+		PiecewiseLinearFunction costFunction = pd.getCostFunction();
+		if (costFunction != null && !costFunction.isEmpty()) {
+			for (double breakpoint : costFunction.getBreakpoints(costFunction.getBPs())) {
+				if (costs.length() > 0)
+					costs.append(",");
+				costs.append(breakpoint + ":" + costFunction.evaluate(breakpoint));
+			}
+		}
+		out.println(pd.getName() + "\t" + pd.getFeasibleRegions() + "\t" + costs);
+	}
+
+	protected void solve(String modelFile, String dataFile, int steps, PrintWriter out) {
+		CPLEXSolverFacade solver = solverPool.lease();
+		try {
+			solver.setTimeLimit(60);
+			solver.solve(modelFile, dataFile);
+			if (!solver.isSolved())
+				throw new IllegalStateException("Model " + modelFile + " / " + dataFile + " could not be solved");
+			out.println("objective\t" + solver.getObjective());
+			for (int t = 1; t <= steps; ++t) {
+				out.println("production\t" + t + "\t" + solver.getTotalProduction(t));
+			}
+		} finally {
+			solverPool.release(solver);
+		}
+	}
+
+	/**
+	 * Runs are serialized anyway, hence the experiment is created (which sets the global sampling mode) and all engines
+	 * of a run are leased under the experiment lock: two runs never wait for each other's engines, only SOLVE requests
+	 * (one engine each) compete with them. A portfolio has environments of its own, they are ended after the run.
+	 */
+	protected void run(String propertiesFile, int runs, PrintWriter out) {
+		ExperimentSeries series;
+		synchronized (experimentLock) {
+			Experiment exp = createExperiment(propertiesFile);
+			int engines = (exp.isUsePortfolioSolving() ? 0 : 1) + (exp.isUseSpeculation() ? 1 : 0);
+			if (engines > solverPool.getMaxEnvironments())
+				throw new IllegalArgumentException(propertiesFile + " needs " + engines + " engines, the daemon pools only "
+						+ solverPool.getMaxEnvironments());
+
+			List<CPLEXSolverFacade> borrowed = new ArrayList<CPLEXSolverFacade>(engines);
+			PortfolioSolverFacade portfolio = null;
+			series = runner.createSeries(exp, runs);
+			try {
+				for (int i = 0; i < engines; ++i) {
+					borrowed.add(solverPool.lease());
+				}
+				int next = 0;
+				if (exp.isUsePortfolioSolving()) {
+					portfolio = PortfolioSolverFacade.createDefault();
+					exp.setSolverFacade(portfolio);
+				} else {
+					exp.setSolverFacade(borrowed.get(next++));
+				}
+				if (exp.isUseSpeculation())
+					exp.setSpeculativeSolverFacade(borrowed.get(next++));
+
+				series.run();
+			} finally {
+				if (portfolio != null)
+					portfolio.end();
+				for (CPLEXSolverFacade solver : borrowed) {
+					solverPool.release(solver);
+				}
+			}
+		}
+		out.print(series.getStatistics().writeCsv());
+		out.flush();
+	}
+
+	/**
+	 * @param args
+	 *            [port] [number of pooled engines]
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		// a run with speculation needs two engines
+		int solvers = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+		new AbstractionDaemon(port, solvers).serve();
+	}
+}
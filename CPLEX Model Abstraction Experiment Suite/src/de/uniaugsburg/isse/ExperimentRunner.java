@@ -1,13 +1,18 @@
 package de.uniaugsburg.isse;
 
 import java.io.FileInputStream;
+import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
 
+import de.uniaugsburg.isse.abstraction.types.TimeGrid;
 import de.uniaugsburg.isse.cplex.CPLEXSolverFacade;
+import de.uniaugsburg.isse.cplex.PortfolioSolverFacade;
 import de.uniaugsburg.isse.experiments.Experiment;
 import de.uniaugsburg.isse.experiments.ExperimentParameterLiterals;
 import de.uniaugsburg.isse.experiments.ExperimentSeries;
 import de.uniaugsburg.isse.experiments.HierarchyType;
+import de.uniaugsburg.isse.solver.CplexSolver;
 import de.uniaugsburg.isse.solver.CplexSolverFactory;
 
 /**
@@ -39,13 +44,62 @@ public class ExperimentRunner {
 		exp.setUseStaticSampling(readProperty(prop, "useStaticSampling", 1) == 1);
 		exp.setUseTemporalAbstraction(readProperty(prop, "useTemporalAbstraction", 1) == 1);
 		exp.setMinutesPerTimestep(readProperty(prop, "minutesPerTimestep", 15));
+		if (prop.getProperty("stepLengths") != null) // e.g. 15,15,15,15,30,30,60
+			exp.setTimeGrid(TimeGrid.parse(exp.getMinutesPerTimestep(), prop.getProperty("stepLengths")));
 		exp.setDetailedInertia(readProperty(prop, "detailedInertia", 0) == 1);
 		exp.setUseCostsInCents(readProperty(prop, "useCostsInCents", 0) == 1);
 		exp.setFeaturesAlgorithm(readProperty(prop, "featuresAlgorithm", 0) == 1);
 		exp.setInitialSamplingPoints(readProperty(prop, "initialSamplingPoints", 15));
+		exp.setUseWarmStart(readProperty(prop, "useWarmStart", 0) == 1);
+		exp.setUsePresolve(readProperty(prop, "usePresolve", 0) == 1);
+		if (prop.getProperty("meritOrderLevels") != null) { // e.g. 1,2 dispatches all AVPPs below the root greedily
+			Set<Integer> levels = new HashSet<Integer>();
+			for (String level : prop.getProperty("meritOrderLevels").split(","))
+				levels.add(Integer.parseInt(level.trim()));
+			exp.setMeritOrderLevels(levels);
+		}
+		exp.setUseMeritOrderFallback(readProperty(prop, "useMeritOrderFallback", 0) == 1);
+		exp.setStepDeadline(readProperty(prop, "stepDeadline", 0) * 1000L); // given in seconds
+		exp.setPipelineThreads(readProperty(prop, "pipelineThreads", 0));
+		exp.setUseSpeculation(readProperty(prop, "useSpeculation", 0) == 1);
+		exp.setUseHybridPlanning(readProperty(prop, "useHybridPlanning", 0) == 1);
+		exp.setHybridReplanInterval(readProperty(prop, "hybridReplanInterval", 10));
+		exp.setUseAggregatedPlants(readProperty(prop, "useAggregatedPlants", 0) == 1);
+		exp.setUsePortfolioSolving(readProperty(prop, "usePortfolioSolving", 0) == 1);
+		applySamplingMode(exp);
+		exp.setUseAdaptiveSampling(readProperty(prop, "useAdaptiveSampling", 0) == 1);
+		exp.setMinSamplingPoints(readProperty(prop, "minSamplingPoints", 3));
+		exp.setMaxSamplingPoints(readProperty(prop, "maxSamplingPoints", 30));
+		if (prop.getProperty("samplingErrorTolerance") != null)
+			exp.setSamplingErrorTolerance(Double.parseDouble(prop.getProperty("samplingErrorTolerance")));
+		exp.setUseConvexCosts(readProperty(prop, "useConvexCosts", 0) == 1);
+		exp.setUseCostConvolution(readProperty(prop, "useCostConvolution", 0) == 1);
+		exp.setMaxCostCombinations(readProperty(prop, "maxCostCombinations", 1000));
+		exp.setUseErrorMonitor(readProperty(prop, "useErrorMonitor", 0) == 1);
+		if (prop.getProperty("resamplingErrorThreshold") != null)
+			exp.setResamplingErrorThreshold(Double.parseDouble(prop.getProperty("resamplingErrorThreshold")));
+		exp.setSimplifyPiecewiseLinear(readProperty(prop, "simplifyPiecewiseLinear", 0) == 1);
+		if (prop.getProperty("pwlErrorBound") != null)
+			exp.setPwlErrorBound(Double.parseDouble(prop.getProperty("pwlErrorBound")));
+		exp.setMaxFeasibleRegions(readProperty(prop, "maxFeasibleRegions", 0));
+		if (prop.getProperty("holeEpsilon") != null)
+			exp.setHoleEpsilon(Double.parseDouble(prop.getProperty("holeEpsilon")));
+		exp.setConservativeCoarsening(readProperty(prop, "conservativeCoarsening", 0) == 1);
+		exp.setUseTemporalCache(readProperty(prop, "useTemporalCache", 0) == 1);
+		exp.setTemporalCacheSize(readProperty(prop, "temporalCacheSize", 1000));
 		return exp;
 	}
 
+	/**
+	 * Sets the sampling mode of the CPLEX solvers, a global setting, to the one of the experiment's properties
+	 * (usePortfolioSampling)
+	 * 
+	 * @param exp
+	 */
+	public void applySamplingMode(Experiment exp) {
+		CplexSolver.setUsePortfolio(readProperty(exp.getOriginatingProperties(), "usePortfolioSampling", 0) == 1);
+	}
+
 	private int readProperty(Properties prop, String key, int defaultVal) {
 		int res = defaultVal;
 		try {
@@ -84,11 +138,28 @@ public class ExperimentRunner {
 		String propertiesFile = "experiments/experiment1.properties";
 		ExperimentRunner runner = new ExperimentRunner();
 		Experiment exp = runner.getExperiment(propertiesFile);
-		exp.setSolverFacade(new CPLEXSolverFacade());
+		if (exp.isUsePortfolioSolving())
+			exp.setSolverFacade(PortfolioSolverFacade.createDefault());
+		else
+			exp.setSolverFacade(new CPLEXSolverFacade());
+		if (exp.isUseSpeculation())
+			exp.setSpeculativeSolverFacade(new CPLEXSolverFacade());
 		exp.setSolverFactory(new CplexSolverFactory());
 		exp.setUseSamplingAbstraction(true);
 
-		// make a series of experiments out of it
+		ExperimentSeries series = runner.createSeries(exp, nRuns);
+		series.run();
+	}
+
+	/**
+	 * Makes a series of experiments out of one configuration, the seeds of the configuration are used for the first
+	 * run
+	 * 
+	 * @param exp
+	 * @param nRuns
+	 * @return
+	 */
+	public ExperimentSeries createSeries(Experiment exp, int nRuns) {
 		ExperimentSeries series = new ExperimentSeries();
 
 		// convert seeds to an array
@@ -111,7 +182,7 @@ public class ExperimentRunner {
 		series.setExperiment(exp);
 		series.setHierarchyRandomSeed(hierarchyRandomSeeds);
 		series.setInitialStatesSeeds(initialStatesSeeds);
-		series.run();
+		return series;
 	}
 
 }
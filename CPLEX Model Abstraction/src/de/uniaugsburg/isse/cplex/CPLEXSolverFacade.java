@@ -4,10 +4,13 @@ import ilog.concert.IloException;
 import ilog.concert.IloIntMap;
 import ilog.concert.IloIntRange;
 import ilog.concert.IloIntVarMap;
+import ilog.concert.IloLinearNumExpr;
+import ilog.concert.IloLinearNumExprIterator;
 import ilog.concert.IloMapIndexArray;
 import ilog.concert.IloNumDExprMap;
 import ilog.concert.IloNumExpr;
 import ilog.concert.IloNumMap;
+import ilog.concert.IloNumVar;
 import ilog.concert.IloNumVarMap;
 import ilog.concert.IloSymbolSet;
 import ilog.cp.IloCP;
@@ -22,6 +25,13 @@ import ilog.opl.IloOplModel;
 import ilog.opl.IloOplModelDefinition;
 import ilog.opl.IloOplModelSource;
 import ilog.opl.IloOplSettings;
+import ilog.opl_core.cppimpl.IloMapIndexArrayBase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import de.uniaugsburg.isse.solver.SolutionMatrix;
 import de.uniaugsburg.isse.solver.SolverFacade;
 
 public class CPLEXSolverFacade implements SolverFacade {
@@ -29,6 +39,12 @@ public class CPLEXSolverFacade implements SolverFacade {
 	private IloCP cp;
 	private IloCplex cplex;
 	private IloOplModel model;
+	// per-model OPL objects, ended with the model so that factory and engine can be reused
+	private IloOplErrorHandler handler;
+	private IloOplModelSource modelSource;
+	private IloOplSettings settings;
+	private IloOplModelDefinition modelDefinition;
+	private IloOplDataSource dataSource;
 	private IloSymbolSet controllablePlants;
 	private IloIntRange timeRange;
 	private IloNumVarMap energyProductionMap;
@@ -38,9 +54,14 @@ public class CPLEXSolverFacade implements SolverFacade {
 	private boolean solved;
 	private boolean isSimplified = false;
 	private int timeLimit;
+	private double retryTimeLimit = 0.0; // seconds left for a cold retry, 0 if the solve is no retry
+	private double mipGap = 0.0; // relative, 0 solves to optimality
 	private boolean usePresolve = false;
 	private boolean useInitialSolution = false;
 	private boolean backupSettings = false;
+	private int threads = 0; // 0 lets CPLEX decide
+	private IloCplex.Aborter aborter;
+	private volatile boolean abortRequested = false;
 
 	public boolean isSimplified() {
 		return this.isSimplified;
@@ -60,33 +81,50 @@ public class CPLEXSolverFacade implements SolverFacade {
 		IloOplFactory.setDebugMode(false);
 		try {
 			this.cplex = this.factory.createCplex();
-			// set cplex parameter
-			this.cplex.setParam(IntParam.Symmetry, 0);
-			// cplex.setParam(DoubleParam.WorkMem, 8000);
-
-			if (this.timeLimit > 0)
-				this.cplex.setParam(DoubleParam.TiLim, this.timeLimit);
-
-			this.cplex.setOut(null);
+			this.aborter = new IloCplex.Aborter();
+			this.cplex.use(this.aborter);
+			if (this.abortRequested)
+				this.aborter.abort();
+			this.setBaseParameters();
 		} catch (IloException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Resets the engine to the parameters of a freshly created one since the engine is reused for several models
+	 * 
+	 * @throws IloException
+	 */
+	private void setBaseParameters() throws IloException {
+		this.cplex.setDefaults();
+		// set cplex parameter
+		this.cplex.setParam(IntParam.Symmetry, 0);
+		this.cplex.setParam(IntParam.Threads, this.threads);
+		// cplex.setParam(DoubleParam.WorkMem, 8000);
+
+		if (this.timeLimit > 0)
+			this.cplex.setParam(DoubleParam.TiLim, this.timeLimit);
+
+		this.cplex.setOut(null);
+	}
+
 	@Override
 	public void solve(String modelFile, String dataFile) {
+		this.solved = false; // a reused facade must not report the solution of its previous model
 		if (this.factory == null)
 			this.setUpCplex();
+		else
+			this.modelCleanup(); // previous model might not have been cleaned up
 
-		IloOplErrorHandler handler = this.factory.createOplErrorHandler();
-		IloOplModelSource modelSource = this.factory.createOplModelSource(modelFile);
-		IloOplSettings settings = this.factory.createOplSettings(handler);
+		this.handler = this.factory.createOplErrorHandler();
+		this.modelSource = this.factory.createOplModelSource(modelFile);
+		this.settings = this.factory.createOplSettings(this.handler);
 
-		IloOplModelDefinition modelDefinition = this.factory.createOplModelDefinition(modelSource, settings);
+		this.modelDefinition = this.factory.createOplModelDefinition(this.modelSource, this.settings);
 
 		try {
-			if (this.timeLimit > 0)
-				this.cplex.setParam(DoubleParam.TiLim, this.timeLimit);
+			this.setBaseParameters();
 
 			if (this.isSimplified) {
 				this.cplex.setParam(DoubleParam.TiLim, 10.0);
@@ -95,7 +133,7 @@ public class CPLEXSolverFacade implements SolverFacade {
 				this.cplex.setParam(IntParam.RelaxPreInd, 0);
 				this.cplex.setParam(IntParam.PrePass, -1);
 				this.cplex.setParam(IntParam.RelaxPreInd, -1);
-				this.cplex.setParam(DoubleParam.EpGap, 0.05);
+				this.cplex.setParam(DoubleParam.EpGap, Math.max(0.05, this.mipGap));
 				this.cplex.setParam(IntParam.RepeatPresolve, 0);
 				// this.cplex.setParam(IntParam.Reduce, 2);
 			} else {
@@ -104,7 +142,7 @@ public class CPLEXSolverFacade implements SolverFacade {
 				this.cplex.setParam(IntParam.RelaxPreInd, 0);
 				this.cplex.setParam(IntParam.RepeatPresolve, 0);
 				this.cplex.setParam(IntParam.PrePass, 0);
-				this.cplex.setParam(DoubleParam.EpGap, 0.0);
+				this.cplex.setParam(DoubleParam.EpGap, this.mipGap);
 			}
 
 			if (this.usePresolve) {
@@ -118,32 +156,41 @@ public class CPLEXSolverFacade implements SolverFacade {
 			if (this.backupSettings) {
 				this.cplex.setParam(IntParam.Reduce, 2);
 			}
+			if (this.retryTimeLimit > 0)
+				this.cplex.setParam(DoubleParam.TiLim, this.retryTimeLimit);
 			// cplex.setOut(null);
 
 		} catch (IloException e) {
 			e.printStackTrace();
 		}
 
-		this.model = this.factory.createOplModel(modelDefinition, this.cplex);
+		this.model = this.factory.createOplModel(this.modelDefinition, this.cplex);
 		if (dataFile != null) {
-			IloOplDataSource dataSource = this.factory.createOplDataSource(dataFile);
-			this.model.addDataSource(dataSource);
+			this.dataSource = this.factory.createOplDataSource(dataFile);
+			this.model.addDataSource(this.dataSource);
 		}
 
 		this.model.generate();
 
 		if (this.useInitialSolution) {
-			IloOplCplexVectors vecs = this.factory.createOplCplexVectors();
+			// prefer the shifted solution of the previous rolling horizon step if the model provides one
+			boolean warmStart = this.model.hasElement("warmProduction") && this.model.hasElement("warmRunning");
 			IloNumVarMap energyProductionVars = this.model.getElement("energyProduction").asNumVarMap();
-			IloNumMap initProductionValues = this.model.getElement("initProduction").asNumMap();
+			IloNumMap initProductionValues = this.model.getElement(warmStart ? "warmProduction" : "initProduction").asNumMap();
 
 			IloIntVarMap runningVars = this.model.getElement("running").asIntVarMap();
-			IloIntMap initRunningValues = this.model.getElement("initRunning").asIntMap();
+			IloIntMap initRunningValues = this.model.getElement(warmStart ? "warmRunning" : "initRunning").asIntMap();
 
-			vecs.attach(energyProductionVars, initProductionValues);
-			vecs.attach(runningVars, initRunningValues);
-			vecs.setVectors(this.cplex);
+			IloOplCplexVectors vecs = this.factory.createOplCplexVectors();
+			try {
+				vecs.attach(energyProductionVars, initProductionValues);
+				vecs.attach(runningVars, initRunningValues);
+				vecs.setVectors(this.cplex);
+			} finally {
+				vecs.end(); // the start is copied to the engine
+			}
 		}
+		long solveStart = System.currentTimeMillis();
 		try {
 			long milliSeconds = System.currentTimeMillis();
 			this.solved = this.cplex.solve();
@@ -158,14 +205,17 @@ public class CPLEXSolverFacade implements SolverFacade {
 			}
 		} catch (IloException e) {
 			e.printStackTrace();
-			if (this.useInitialSolution) { // might be because of 3010 error
-				this.useInitialSolution = false;
-				this.modelCleanup();
-				this.solve(modelFile, dataFile);
-				this.useInitialSolution = true;
+			if (this.useInitialSolution && !this.abortRequested) { // might be because of 3010 error
+				this.solveCold(modelFile, dataFile, solveStart);
+				return;
 			}
 		}
 
+		if (!this.solved && this.useInitialSolution && !this.abortRequested && this.isStartRejected()) {
+			this.solveCold(modelFile, dataFile, solveStart);
+			return;
+		}
+
 		if (this.solved) {
 			this.model.postProcess();
 
@@ -177,20 +227,137 @@ public class CPLEXSolverFacade implements SolverFacade {
 		}
 	}
 
+	/**
+	 * Solves the model again from scratch after CPLEX rejected the MIP start. The retry only gets the time that is left
+	 * of the limit of the warm-started solve, so a rejected start never extends the time granted to a solve (e.g., by
+	 * the DeadlineScheduler); if nothing is left, the model stays unsolved.
+	 * 
+	 * @param modelFile
+	 * @param dataFile
+	 * @param solveStart
+	 *            ms when the warm-started solve began
+	 */
+	private void solveCold(String modelFile, String dataFile, long solveStart) {
+		double limit = this.isSimplified ? 10.0 : this.timeLimit;
+		double remaining = 0.0; // no limit
+		if (limit > 0) {
+			remaining = limit - (System.currentTimeMillis() - solveStart) / 1000.0;
+			if (remaining <= 0) {
+				this.solved = false;
+				return;
+			}
+		}
+		this.useInitialSolution = false;
+		this.retryTimeLimit = remaining;
+		this.modelCleanup();
+		try {
+			this.solve(modelFile, dataFile);
+		} finally {
+			this.useInitialSolution = true;
+			this.retryTimeLimit = 0.0;
+		}
+	}
+
+	/**
+	 * @return true if the solve failed for another reason than a limit, a user abort or a proven infeasibility, i.e.,
+	 *         the MIP start may be to blame
+	 */
+	private boolean isStartRejected() {
+		try {
+			IloCplex.CplexStatus status = this.cplex.getCplexStatus();
+			return status != IloCplex.CplexStatus.AbortTimeLim && status != IloCplex.CplexStatus.AbortItLim
+					&& status != IloCplex.CplexStatus.AbortUser && status != IloCplex.CplexStatus.AbortObjLim
+					&& status != IloCplex.CplexStatus.NodeLimInfeas && status != IloCplex.CplexStatus.MemLimInfeas
+					&& status != IloCplex.CplexStatus.Infeasible && status != IloCplex.CplexStatus.InfOrUnbd;
+		} catch (IloException e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	/**
+	 * Stops a running (or the next) solve, used to cancel configurations of a portfolio that lost the race
+	 */
+	public void abort() {
+		this.abortRequested = true;
+		IloCplex.Aborter currentAborter = this.aborter;
+		if (currentAborter != null)
+			currentAborter.abort();
+	}
+
+	public void resetAbort() {
+		this.abortRequested = false;
+		if (this.aborter != null)
+			this.aborter.clear();
+	}
+
+	/**
+	 * Relative gap between the incumbent and the best bound, 0 for solutions that are proven optimal
+	 * 
+	 * @return
+	 */
+	public double getRelativeGap() {
+		if (!this.solved)
+			return Double.POSITIVE_INFINITY;
+		try {
+			double objective = this.cplex.getObjValue();
+			double bound = this.cplex.getBestObjValue();
+			return Math.abs(objective - bound) / (1.0e-10 + Math.abs(objective));
+		} catch (IloException e) {
+			// pure LP, no bound available
+		}
+		return 0.0;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+		try {
+			if (this.cplex != null)
+				this.cplex.setParam(IntParam.Threads, threads);
+		} catch (IloException e) {
+			e.printStackTrace();
+		}
+	}
+
 	private void modelCleanup() {
+		if (this.model == null)
+			return;
 		try {
 			this.model.end();
+			this.model = null;
+			if (this.dataSource != null) {
+				this.dataSource.end();
+				this.dataSource = null;
+			}
+			this.modelDefinition.end();
+			this.settings.end();
+			this.modelSource.end();
+			this.handler.end();
 			this.cplex.clearModel();
 		} catch (IloException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Releases the current model only; factory and engine are kept for the next model
+	 */
 	@Override
 	public void cleanup() {
 		this.modelCleanup();
+	}
+
+	/**
+	 * Releases the whole solver environment, the next solve creates a new one
+	 */
+	public void end() {
+		if (this.factory == null)
+			return;
+		this.modelCleanup();
 		this.factory.end();
 		this.factory = null;
+		this.cplex = null;
+		this.aborter = null;
 	}
 
 	@Override
@@ -213,6 +380,8 @@ public class CPLEXSolverFacade implements SolverFacade {
 			return this.model.getCplex().getValue(this.energyProductionMap.getAt(id));
 		} catch (IloException e) {
 			e.printStackTrace();
+		} finally {
+			endIndex(id);
 		}
 		return 0;
 	}
@@ -229,6 +398,8 @@ public class CPLEXSolverFacade implements SolverFacade {
 			return running != 0;
 		} catch (IloException e) {
 			e.printStackTrace();
+		} finally {
+			endIndex(id);
 		}
 		return false;
 	}
@@ -255,6 +426,86 @@ public class CPLEXSolverFacade implements SolverFacade {
 		return 0;
 	}
 
+	/**
+	 * Reads all production values and the total production with a single query to the engine instead of one map
+	 * lookup per plant and step. The total production is evaluated from the terms of its linear expressions; should the
+	 * model define it non-linearly, it is read step by step. Running values are post-processed data of the OPL model
+	 * and are still looked up one by one.
+	 * 
+	 * @throws RuntimeException
+	 *             if the engine cannot provide the values, e.g., since there is no solution
+	 */
+	@Override
+	public SolutionMatrix getSolution(Collection<String> plants, int timeHorizon) {
+		SolutionMatrix solution = new SolutionMatrix(plants, timeHorizon);
+		try {
+			IloCplex cplex = this.model.getCplex();
+			int productionCount = plants.size() * timeHorizon;
+			List<IloNumVar> vars = new ArrayList<IloNumVar>(2 * productionCount);
+			for (String plant : plants) {
+				IloNumVarMap plantProduction = this.energyProductionMap.getSub(plant);
+				for (int t = 1; t <= timeHorizon; ++t) {
+					vars.add(plantProduction.get(t));
+				}
+			}
+
+			// terms of totalProduction[t] are vars[termStart[t - 1] .. termStart[t] - 1]
+			boolean linear = true;
+			int[] termStart = new int[timeHorizon + 1];
+			termStart[0] = productionCount;
+			List<Double> coefficients = new ArrayList<Double>(productionCount);
+			double[] constants = new double[timeHorizon + 1];
+			for (int t = 1; t <= timeHorizon && linear; ++t) {
+				IloNumExpr expr = this.totalProductionMap.get(t);
+				if (expr instanceof IloLinearNumExpr) {
+					IloLinearNumExpr linearExpr = (IloLinearNumExpr) expr;
+					constants[t] = linearExpr.getConstant();
+					IloLinearNumExprIterator terms = linearExpr.linearIterator();
+					while (terms.hasNext()) {
+						vars.add(terms.nextNumVar());
+						coefficients.add(terms.getValue());
+					}
+					termStart[t] = vars.size();
+				} else {
+					linear = false;
+				}
+			}
+			if (!linear) // only the production is read in bulk
+				vars = vars.subList(0, productionCount);
+
+			double[] values = cplex.getValues(vars.toArray(new IloNumVar[vars.size()]));
+
+			double[][] production = solution.getProduction();
+			boolean[][] running = solution.getRunning();
+			int p = 0;
+			int v = 0;
+			for (String plant : plants) {
+				IloIntMap plantRunning = this.runningMap.getSub(plant);
+				for (int t = 1; t <= timeHorizon; ++t) {
+					production[p][t] = values[v++];
+					running[p][t] = plantRunning.get(t) != 0;
+				}
+				++p;
+			}
+			double[] totalProduction = solution.getTotalProduction();
+			for (int t = 1; t <= timeHorizon; ++t) {
+				if (linear) {
+					double total = constants[t];
+					for (int term = termStart[t - 1]; term < termStart[t]; ++term) {
+						total += coefficients.get(term - productionCount) * values[term];
+					}
+					totalProduction[t] = total;
+				} else {
+					totalProduction[t] = cplex.getValue(this.totalProductionMap.get(t));
+				}
+			}
+			solution.setObjective(cplex.getObjValue());
+		} catch (IloException e) {
+			throw new RuntimeException("Could not read the solution from CPLEX", e);
+		}
+		return solution;
+	}
+
 	@Override
 	public double getDecExpr(String decExpr, int i) {
 		try {
@@ -278,10 +529,23 @@ public class CPLEXSolverFacade implements SolverFacade {
 			return this.model.getCplex().getValue(nvmap.getAt(id));
 		} catch (IloException e) {
 			e.printStackTrace();
+		} finally {
+			endIndex(id);
 		}
 		return 0;
 	}
 
+	/**
+	 * Index arrays are native objects of the factory; as factories live in a pool, they have to be ended after use
+	 * 
+	 * @param id
+	 *            may be null
+	 */
+	private static void endIndex(IloMapIndexArray id) {
+		if (id instanceof IloMapIndexArrayBase)
+			((IloMapIndexArrayBase) id).end();
+	}
+
 	public double getDecExpr(String decExpr) {
 		try {
 			return this.model.getCplex().getValue(this.model.getElement(decExpr).asNumExpr());
@@ -302,6 +566,11 @@ public class CPLEXSolverFacade implements SolverFacade {
 		this.timeLimit = seconds;
 	}
 
+	@Override
+	public void setMipGap(double relativeGap) {
+		this.mipGap = relativeGap;
+	}
+
 	@Override
 	public void setPresolve(boolean b) {
 		this.usePresolve = b;
@@ -0,0 +1,289 @@
+package de.uniaugsburg.isse.cplex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.uniaugsburg.isse.solver.SolutionMatrix;
+import de.uniaugsburg.isse.solver.SolverFacade;
+
+/**
+ * Races several solver configurations (e.g., normal, simplified, backup settings) on separate CPLEX instances instead
+ * of trying them one after another. The first solution with a relative gap within the tolerance wins and all other
+ * configurations are aborted; if no configuration meets the tolerance, the best feasible solution found is used.
+ *
+ * Configurations are fixed when they are added (see addConfiguration); setSimplified(true) and setBackupSettings(true)
+ * restrict the race to the matching configurations (all of them if none matches) until they are set to false again.
+ * The configurations run on threads owned by the portfolio, which are released by cleanup(); end() also releases their
+ * CPLEX environments.
+ */
+public class PortfolioSolverFacade implements SolverFacade {
+	private final List<CPLEXSolverFacade> configurations;
+	private CPLEXSolverFacade winner;
+	private boolean solved;
+	private double gapTolerance = 0.01; // tighter than the gap of the simplified settings, so they do not win right away
+	private ExecutorService executor;
+	private boolean useInitialSolution = false;
+	private boolean simplified = false; // race only simplified configurations
+	private boolean backupSettings = false; // race only configurations with backup settings
+
+	public PortfolioSolverFacade() {
+		this.configurations = new ArrayList<CPLEXSolverFacade>(3);
+	}
+
+	/**
+	 * Creates the portfolio that corresponds to the sequential fallbacks in the experiments: normal settings,
+	 * simplified, simplified with backup settings
+	 *
+	 * @return
+	 */
+	public static PortfolioSolverFacade createDefault() {
+		PortfolioSolverFacade portfolio = new PortfolioSolverFacade();
+		portfolio.addConfiguration(false, false);
+		portfolio.addConfiguration(true, false);
+		portfolio.addConfiguration(true, true);
+		return portfolio;
+	}
+
+	public void addConfiguration(boolean simplified, boolean backupSettings) {
+		if (this.executor != null) { // sized for the previous configurations
+			this.executor.shutdown();
+			this.executor = null;
+		}
+		CPLEXSolverFacade configuration = new CPLEXSolverFacade();
+		configuration.setSimplified(simplified);
+		configuration.setBackupSettings(backupSettings);
+		configuration.setUseInitialSolution(this.useInitialSolution);
+		this.configurations.add(configuration);
+
+		// share the available cores between the racing configurations
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / this.configurations.size());
+		for (CPLEXSolverFacade facade : this.configurations) {
+			facade.setThreads(threads);
+		}
+	}
+
+	@Override
+	public void solve(final String modelFile, final String dataFile) {
+		if (this.configurations.isEmpty())
+			throw new RuntimeException("Portfolio does not contain any solver configuration!");
+
+		if (this.executor == null)
+			this.executor = Executors.newFixedThreadPool(this.configurations.size());
+		CompletionService<CPLEXSolverFacade> completionService = new ExecutorCompletionService<CPLEXSolverFacade>(this.executor);
+		List<Future<CPLEXSolverFacade>> running = new ArrayList<Future<CPLEXSolverFacade>>(this.configurations.size());
+
+		List<CPLEXSolverFacade> racing = getRacingConfigurations();
+		for (final CPLEXSolverFacade configuration : racing) {
+			configuration.resetAbort();
+			running.add(completionService.submit(new Callable<CPLEXSolverFacade>() {
+				@Override
+				public CPLEXSolverFacade call() throws Exception {
+					configuration.solve(modelFile, dataFile);
+					return configuration;
+				}
+			}));
+		}
+
+		this.winner = null;
+		CPLEXSolverFacade bestFeasible = null;
+		try {
+			for (int i = 0; i < racing.size(); ++i) {
+				CPLEXSolverFacade finished = null;
+				try {
+					finished = completionService.take().get();
+				} catch (ExecutionException e) {
+					e.getCause().printStackTrace();
+					continue;
+				}
+
+				if (finished.isSolved()) {
+					if (finished.getRelativeGap() <= this.gapTolerance) {
+						this.winner = finished;
+						break;
+					}
+					if (bestFeasible == null || finished.getRelativeGap() < bestFeasible.getRelativeGap())
+						bestFeasible = finished;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			// cancel the remaining configurations and wait for them to return
+			for (CPLEXSolverFacade configuration : racing) {
+				if (configuration != this.winner)
+					configuration.abort();
+			}
+			for (Future<CPLEXSolverFacade> pending : running) {
+				try {
+					pending.get();
+				} catch (ExecutionException e) {
+					// already reported or irrelevant after the race
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+
+		if (this.winner == null)
+			this.winner = bestFeasible;
+		this.solved = this.winner != null;
+	}
+
+	/**
+	 * @return the configurations matching the requested settings, all configurations if none matches
+	 */
+	private List<CPLEXSolverFacade> getRacingConfigurations() {
+		List<CPLEXSolverFacade> racing = new ArrayList<CPLEXSolverFacade>(this.configurations.size());
+		for (CPLEXSolverFacade configuration : this.configurations) {
+			if ((!this.simplified || configuration.isSimplified()) && (!this.backupSettings || configuration.isBackupSettings()))
+				racing.add(configuration);
+		}
+		return racing.isEmpty() ? this.configurations : racing;
+	}
+
+	/**
+	 * @return the configuration whose solution is reported, null if no configuration found a solution
+	 */
+	public CPLEXSolverFacade getWinner() {
+		return this.winner;
+	}
+
+	@Override
+	public double getProduction(String key, int i) {
+		return this.winner.getProduction(key, i);
+	}
+
+	@Override
+	public boolean getRunning(String key, int i) {
+		return this.winner.getRunning(key, i);
+	}
+
+	@Override
+	public double getObjective() {
+		return this.winner.getObjective();
+	}
+
+	@Override
+	public double getDecExpr(String decExpr, int i) {
+		return this.winner.getDecExpr(decExpr, i);
+	}
+
+	public double getDecExpr(String decExpr) {
+		return this.winner.getDecExpr(decExpr);
+	}
+
+	@Override
+	public double getDecVar(String decVar, String p, int i) {
+		return this.winner.getDecVar(decVar, p, i);
+	}
+
+	@Override
+	public double getTotalProduction(int i) {
+		return this.winner.getTotalProduction(i);
+	}
+
+	@Override
+	public SolutionMatrix getSolution(Collection<String> plants, int timeHorizon) {
+		return this.winner.getSolution(plants, timeHorizon);
+	}
+
+	@Override
+	public void cleanup() {
+		for (CPLEXSolverFacade configuration : this.configurations) {
+			configuration.cleanup();
+		}
+		this.winner = null;
+		if (this.executor != null) {
+			this.executor.shutdown();
+			this.executor = null;
+		}
+	}
+
+	/**
+	 * Releases the CPLEX environments of all configurations, the next solve creates new ones
+	 */
+	public void end() {
+		this.cleanup();
+		for (CPLEXSolverFacade configuration : this.configurations) {
+			configuration.end();
+		}
+	}
+
+	@Override
+	public boolean isSolved() {
+		return this.solved;
+	}
+
+	@Override
+	public void setSettingsFile(String settingsFile) {
+		for (CPLEXSolverFacade configuration : this.configurations) {
+			configuration.setSettingsFile(settingsFile);
+		}
+	}
+
+	@Override
+	public void setTimeLimit(int seconds) {
+		for (CPLEXSolverFacade configuration : this.configurations) {
+			configuration.setTimeLimit(seconds);
+		}
+	}
+
+	@Override
+	public void setMipGap(double relativeGap) {
+		for (CPLEXSolverFacade configuration : this.configurations) {
+			configuration.setMipGap(relativeGap);
+		}
+	}
+
+	@Override
+	public void setPresolve(boolean b) {
+		for (CPLEXSolverFacade configuration : this.configurations) {
+			configuration.setPresolve(b);
+		}
+	}
+
+	@Override
+	public void setSimplified(boolean isSimplified) {
+		this.simplified = isSimplified;
+	}
+
+	@Override
+	public void setUseInitialSolution(boolean useInitialSolution) {
+		this.useInitialSolution = useInitialSolution;
+		for (CPLEXSolverFacade configuration : this.configurations) {
+			configuration.setUseInitialSolution(useInitialSolution);
+		}
+	}
+
+	@Override
+	public boolean isUseInitialSolution() {
+		return this.useInitialSolution;
+	}
+
+	@Override
+	public void setBackupSettings(boolean backupSettings) {
+		this.backupSettings = backupSettings;
+	}
+
+	@Override
+	public boolean isBackupSettings() {
+		return this.backupSettings;
+	}
+
+	public double getGapTolerance() {
+		return this.gapTolerance;
+	}
+
+	public void setGapTolerance(double gapTolerance) {
+		this.gapTolerance = gapTolerance;
+	}
+}
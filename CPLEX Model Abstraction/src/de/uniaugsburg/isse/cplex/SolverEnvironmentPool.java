@@ -0,0 +1,104 @@
+package de.uniaugsburg.isse.cplex;
+
+import java.util.LinkedList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps CPLEX environments (OPL factory and engine) alive across models. Callers lease a facade, solve one or more
+ * models and release it again; at most maxEnvironments facades are leased at the same time, further callers wait
+ * until one is released or the lease timeout expires.
+ */
+public class SolverEnvironmentPool {
+	private static SolverEnvironmentPool sharedPool;
+
+	private final LinkedList<CPLEXSolverFacade> idleEnvironments;
+	private final Semaphore leases;
+	private final int maxEnvironments;
+	private long leaseTimeout = 600; // seconds to wait for an environment, a longer wait points to a leaked lease
+
+	public SolverEnvironmentPool(int maxEnvironments) {
+		this.maxEnvironments = maxEnvironments;
+		this.idleEnvironments = new LinkedList<CPLEXSolverFacade>();
+		this.leases = new Semaphore(maxEnvironments, true);
+	}
+
+	/**
+	 * Pool shared by all sampling solvers, one environment per available processor
+	 *
+	 * @return
+	 */
+	public static synchronized SolverEnvironmentPool getSharedPool() {
+		if (sharedPool == null)
+			sharedPool = new SolverEnvironmentPool(Runtime.getRuntime().availableProcessors());
+		return sharedPool;
+	}
+
+	/**
+	 * Waits until an environment is available
+	 *
+	 * @return a facade with default settings
+	 * @throws IllegalStateException
+	 *             if no environment was released within the lease timeout or the thread was interrupted
+	 */
+	public CPLEXSolverFacade lease() {
+		try {
+			if (!this.leases.tryAcquire(this.leaseTimeout, TimeUnit.SECONDS))
+				throw new IllegalStateException("No solver environment released within " + this.leaseTimeout + " s, all "
+						+ this.maxEnvironments + " are leased");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a solver environment", e);
+		}
+		synchronized (this.idleEnvironments) {
+			if (!this.idleEnvironments.isEmpty())
+				return this.idleEnvironments.removeFirst();
+		}
+		return new CPLEXSolverFacade();
+	}
+
+	/**
+	 * Clears the current model of the facade and hands its environment back to the pool
+	 *
+	 * @param facade
+	 */
+	public void release(CPLEXSolverFacade facade) {
+		facade.cleanup();
+		facade.setSimplified(false);
+		facade.setBackupSettings(false);
+		facade.setPresolve(false);
+		facade.setUseInitialSolution(false);
+		facade.setTimeLimit(0);
+		facade.setMipGap(0.0);
+		facade.setThreads(0);
+		facade.resetAbort();
+		synchronized (this.idleEnvironments) {
+			this.idleEnvironments.addFirst(facade);
+		}
+		this.leases.release();
+	}
+
+	/**
+	 * Ends all idle environments
+	 */
+	public void shutdown() {
+		synchronized (this.idleEnvironments) {
+			for (CPLEXSolverFacade facade : this.idleEnvironments) {
+				facade.end();
+			}
+			this.idleEnvironments.clear();
+		}
+	}
+
+	public int getMaxEnvironments() {
+		return this.maxEnvironments;
+	}
+
+	public long getLeaseTimeout() {
+		return this.leaseTimeout;
+	}
+
+	public void setLeaseTimeout(long leaseTimeout) {
+		this.leaseTimeout = leaseTimeout;
+	}
+}
@@ -3,25 +3,49 @@ package de.uniaugsburg.isse.solver;
 import java.io.File;
 
 import de.uniaugsburg.isse.cplex.CPLEXSolverFacade;
+import de.uniaugsburg.isse.cplex.PortfolioSolverFacade;
+import de.uniaugsburg.isse.cplex.SolverEnvironmentPool;
 import de.uniaugsburg.isse.util.Utils;
 
 public class CplexSolver extends AbstractSolver {
 
 	private String modelFile;
 	private String dataFile;
-	private final CPLEXSolverFacade facade;
+	private CPLEXSolverFacade facade; // leased from the environment pool between solve and cleanup
+	private final PortfolioSolverFacade portfolio;
+	private CPLEXSolverFacade solvingFacade; // the facade holding the current solution
 	private final double jitter = 0.001; // matches CPLEX file
 
 	private static boolean TRY_AGAIN = true;
 	private static boolean DELETE_MOD_AND_DAT_FILES = true;
+	private static boolean USE_PORTFOLIO = false; // race the simplified and the backup settings instead of trying again
 
 	public CplexSolver() {
-		this.facade = new CPLEXSolverFacade();
-		this.facade.setSimplified(true);
+		if (USE_PORTFOLIO) {
+			this.facade = null;
+			this.portfolio = new PortfolioSolverFacade();
+			this.portfolio.addConfiguration(true, false);
+			this.portfolio.addConfiguration(true, true);
+		} else {
+			this.portfolio = null;
+		}
 	}
 
+	/**
+	 * Leases an environment for this solver until cleanup() is called; if solving fails with an exception, the lease is
+	 * returned right away
+	 */
 	@Override
 	public void solve() {
+		try {
+			solveLeased();
+		} catch (RuntimeException e) {
+			cleanup();
+			throw e;
+		}
+	}
+
+	private void solveLeased() {
 		CplexModel model = (CplexModel) this.getModel();
 		String modelString = model.getCplexString();
 		// System.out.println(modelString);
@@ -37,10 +61,21 @@ public class CplexSolver extends AbstractSolver {
 
 		this.modelFile = tmpModelFile.getAbsolutePath();
 		Utils.writeFile(this.modelFile, modelString);
-		this.facade.solve(this.modelFile, this.dataFile);
-		this.solved = this.facade.isSolved();
+		if (this.portfolio != null) {
+			this.portfolio.solve(this.modelFile, this.dataFile);
+			this.solved = this.portfolio.isSolved();
+			this.solvingFacade = this.portfolio.getWinner();
+		} else {
+			if (this.facade == null) {
+				this.facade = SolverEnvironmentPool.getSharedPool().lease();
+				this.facade.setSimplified(true);
+			}
+			this.facade.solve(this.modelFile, this.dataFile);
+			this.solved = this.facade.isSolved();
+			this.solvingFacade = this.facade;
+		}
 
-		if (TRY_AGAIN && !this.solved) { // perform some backup try
+		if (TRY_AGAIN && !this.solved && this.portfolio == null) { // perform some backup try
 			this.facade.setPresolve(false);
 			this.facade.setBackupSettings(true);
 			this.facade.solve(this.modelFile, this.dataFile);
@@ -57,7 +92,7 @@ public class CplexSolver extends AbstractSolver {
 	@Override
 	public double getResult(String decExpr) {
 		if (this.isSolved()) {
-			double res = this.facade.getDecExpr(decExpr);
+			double res = this.solvingFacade.getDecExpr(decExpr);
 			if (Math.abs(res) < this.jitter)
 				return 0.0;
 			else
@@ -68,12 +103,34 @@ public class CplexSolver extends AbstractSolver {
 
 	@Override
 	public double getObjective() {
-		return this.facade.getObjective();
+		if (this.solvingFacade == null) // no configuration of the portfolio succeeded
+			return -1;
+		return this.solvingFacade.getObjective();
 	}
 
 	@Override
 	public void cleanup() {
-		this.facade.cleanup();
+		if (this.portfolio != null) {
+			this.portfolio.end(); // its environments are not pooled
+		} else if (this.facade != null) {
+			SolverEnvironmentPool.getSharedPool().release(this.facade);
+			this.facade = null;
+		}
+		this.solvingFacade = null;
+	}
+
+	public static boolean isUsePortfolio() {
+		return USE_PORTFOLIO;
+	}
+
+	/**
+	 * Solvers created afterwards race the simplified and the backup settings on a portfolio instead of trying them one
+	 * after another on an engine of the shared pool
+	 * 
+	 * @param usePortfolio
+	 */
+	public static void setUsePortfolio(boolean usePortfolio) {
+		USE_PORTFOLIO = usePortfolio;
 	}
 
 	/**
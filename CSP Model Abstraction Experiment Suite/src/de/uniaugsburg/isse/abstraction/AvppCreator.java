@@ -2,6 +2,8 @@ package de.uniaugsburg.isse.abstraction;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import de.uniaugsburg.isse.powerplants.AbstractPowerplantFactory;
@@ -29,6 +31,11 @@ public class AvppCreator {
 	private int numberOfAvpps;
 	private int numberOfPlants;
 
+	// runtime-aware hierarchies
+	private int maxChildren = 10; // of AVPPs that are split further
+	private double workWeight = 0.1; // total work relative to the longest serial path
+	private double abstractionSolves = 0.0; // solves of an AVPP model for its abstraction, amortized per step
+
 	public AvppCreator() {
 		factories = new ArrayList<AbstractPowerplantFactory>(5);
 	}
@@ -192,4 +199,116 @@ public class AvppCreator {
 		topLevelAvpp.setHeight(2);
 		return topLevelAvpp;
 	}
+
+	/**
+	 * Builds the hierarchy from estimated solve times instead of fixed splits: a set of plants becomes one AVPP with all
+	 * plants as children unless splitting it into k balanced groups (k = 2 .. maxChildren) yields a lower cost, where
+	 * the cost is the longest serial path of solves per step plus workWeight times the total work (solves and amortized
+	 * abstraction). Groups are balanced by model size rather than plant count, so plants that can be switched off weigh
+	 * more. Each split is decided assuming flat groups; the groups are split recursively afterwards.
+	 * 
+	 * @param allPlants
+	 * @param solveTimeModel
+	 *            estimates, possibly fitted to the solves of earlier runs
+	 * @return root of the hierarchy
+	 */
+	public AvppGraph createRuntimeAwareGraph(List<PowerPlantData> allPlants, SolveTimeModel solveTimeModel) {
+		AvppGraph topLevelAvpp = createRuntimeAwareNode(allPlants, solveTimeModel, 0);
+		topLevelAvpp.setHeight(maxHeight);
+		topLevelAvpp.setRoot(true);
+		return topLevelAvpp;
+	}
+
+	private AvppGraph createRuntimeAwareNode(List<PowerPlantData> myPlants, SolveTimeModel solveTimeModel, int height) {
+		if (height > maxHeight)
+			maxHeight = height;
+
+		double size = 0.0;
+		for (PowerPlantData pd : myPlants) {
+			size += solveTimeModel.getSize(pd);
+		}
+		double bestCost = solveTimeModel.estimate(size) + workWeight * getWork(size, solveTimeModel);
+		List<List<PowerPlantData>> bestGroups = null;
+
+		int maxGroups = Math.min(maxChildren, myPlants.size() / 2);
+		for (int k = 2; k <= maxGroups; ++k) {
+			List<List<PowerPlantData>> groups = partition(myPlants, k, solveTimeModel);
+			double ownSize = k * solveTimeModel.getDefaultAvppSize();
+			double serial = 0.0;
+			double work = getWork(ownSize, solveTimeModel);
+			for (List<PowerPlantData> group : groups) {
+				double groupSize = 0.0;
+				for (PowerPlantData pd : group) {
+					groupSize += solveTimeModel.getSize(pd);
+				}
+				serial = Math.max(serial, solveTimeModel.estimate(groupSize));
+				work += getWork(groupSize, solveTimeModel);
+			}
+			double cost = solveTimeModel.estimate(ownSize) + serial + workWeight * work;
+			if (cost < bestCost) {
+				bestCost = cost;
+				bestGroups = groups;
+			}
+		}
+
+		AvppGraph node = new AvppGraph();
+		if (bestGroups == null) {
+			for (PowerPlantData pd : myPlants) {
+				node.getChildren().add(new AvppLeafNode(pd));
+			}
+		} else {
+			for (List<PowerPlantData> group : bestGroups) {
+				node.getChildren().add(createRuntimeAwareNode(group, solveTimeModel, height + 1));
+			}
+		}
+		PowerPlantData data = new PowerPlantData("AVPP_" + (++avppCounter));
+		data.setAVPP(true);
+		node.setPowerPlant(data);
+		return node;
+	}
+
+	private double getWork(double size, SolveTimeModel solveTimeModel) {
+		return solveTimeModel.estimate(size) * (1.0 + abstractionSolves);
+	}
+
+	/**
+	 * Longest processing time first: the largest plants are placed first, each into the currently smallest group
+	 */
+	private List<List<PowerPlantData>> partition(List<PowerPlantData> plants, int k, final SolveTimeModel solveTimeModel) {
+		List<PowerPlantData> sorted = new ArrayList<PowerPlantData>(plants);
+		Collections.sort(sorted, new Comparator<PowerPlantData>() {
+			@Override
+			public int compare(PowerPlantData o1, PowerPlantData o2) {
+				return Double.compare(solveTimeModel.getSize(o2), solveTimeModel.getSize(o1));
+			}
+		});
+
+		List<List<PowerPlantData>> groups = new ArrayList<List<PowerPlantData>>(k);
+		double[] groupSizes = new double[k];
+		for (int i = 0; i < k; ++i) {
+			groups.add(new ArrayList<PowerPlantData>());
+		}
+		for (PowerPlantData pd : sorted) {
+			int smallest = 0;
+			for (int i = 1; i < k; ++i) {
+				if (groupSizes[i] < groupSizes[smallest])
+					smallest = i;
+			}
+			groups.get(smallest).add(pd);
+			groupSizes[smallest] += solveTimeModel.getSize(pd);
+		}
+		return groups;
+	}
+
+	public void setMaxChildren(int maxChildren) {
+		this.maxChildren = maxChildren;
+	}
+
+	public void setWorkWeight(double workWeight) {
+		this.workWeight = workWeight;
+	}
+
+	public void setAbstractionSolves(double abstractionSolves) {
+		this.abstractionSolves = abstractionSolves;
+	}
 }
@@ -21,6 +21,12 @@ public class AvppGraph {
 	private int height;
 	private boolean isRoot;
 
+	// change tracking for incremental re-abstraction
+	private AvppGraph parent;
+	private long version;
+	private long modelVersion = -1; // version the cplex model was created for
+	private boolean dirty = true; // new nodes have not been abstracted yet
+
 	public void setRoot(boolean isRoot) {
 		this.isRoot = isRoot;
 	}
@@ -75,6 +81,70 @@ public class AvppGraph {
 
 	public void setCplexModel(String cplexModel) {
 		this.cplexModel = cplexModel;
+		this.modelVersion = version;
+	}
+
+	/**
+	 * @return true if the cplex model was created after the last change to this subtree
+	 */
+	public boolean isModelCurrent() {
+		return cplexModel != null && modelVersion == version;
+	}
+
+	public void addChild(AvppGraph child) {
+		children.add(child);
+		child.parent = this;
+		markDirty();
+	}
+
+	public boolean removeChild(AvppGraph child) {
+		if (!children.remove(child))
+			return false;
+		child.parent = null;
+		markDirty();
+		return true;
+	}
+
+	/**
+	 * Sets the parent references of the whole subtree, needed if children were added directly to the collection
+	 */
+	public void linkParents() {
+		for (AvppGraph child : children) {
+			child.parent = this;
+			child.linkParents();
+		}
+	}
+
+	/**
+	 * To be called if the fleet below this node or the parameters of its plant change; the node and all its ancestors
+	 * get a new version and need to be abstracted again
+	 */
+	public void markDirty() {
+		AvppGraph node = this;
+		while (node != null) {
+			++node.version;
+			node.dirty = true;
+			node = node.parent;
+		}
+	}
+
+	/**
+	 * The abstraction of this node is up to date
+	 */
+	public void markClean() {
+		this.dirty = false;
+	}
+
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public AvppGraph getParent() {
+		return parent;
 	}
 
 	public Collection<PowerPlantData> getChildrenPlantData() {
@@ -2,6 +2,7 @@ package de.uniaugsburg.isse.abstraction;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import de.uniaugsburg.isse.powerplants.PowerPlantData;
 
@@ -18,11 +19,14 @@ public class CplexAvppGraphExporter {
 
 	/**
 	 * This method creates a cplex model for a single avpp taking into account
-	 * intervals etc.
+	 * intervals etc. Subtrees that did not change since their models were
+	 * created are skipped.
 	 * 
 	 * @param graph
 	 */
 	public void createRegionalModels(AvppGraph graph) {
+		if (graph.isModelCurrent())
+			return;
 		// postfix traversal - first get the kids right
 		Collection<PowerPlantData> children = new ArrayList<PowerPlantData>(
 				graph.getChildren().size());
@@ -38,6 +42,16 @@ public class CplexAvppGraphExporter {
 		return exporter.createModel(allPlants);
 	}
 
+	/**
+	 * Classes of interchangeable leaf plants for the aggregated central model
+	 * 
+	 * @param graph
+	 * @return
+	 */
+	public List<PlantClass> getPlantClasses(AvppGraph graph) {
+		return PlantClass.group(getPlants(graph));
+	}
+
 	private Collection<PowerPlantData> getPlants(AvppGraph graph) {
 		Collection<PowerPlantData> allPlantStrings = new ArrayList<PowerPlantData>();
 		return getPlantsRec(graph, allPlantStrings);
@@ -0,0 +1,160 @@
+package de.uniaugsburg.isse.abstraction;
+
+import java.util.Collection;
+import java.util.LinkedList;
+
+import de.uniaugsburg.isse.abstraction.types.PiecewiseLinearFunction;
+import de.uniaugsburg.isse.powerplants.PowerPlantData;
+
+/**
+ * Estimates the time to solve the model of an AVPP from its size as coefficient * size^exponent. The size of a model
+ * is the sum of the sizes of its children: a concrete plant counts 1 (plus a penalty if it can be switched off, as
+ * this adds a binary decision) and an AVPP counts by the breakpoints and feasible regions of its abstraction. Timings
+ * of actual solves refit coefficient and exponent (least squares in log-log space), so a model kept over several runs
+ * learns the solver behaviour of the machine. Fitted parameters are read and written under the model's lock, as
+ * solves may be observed from several threads.
+ */
+public class SolveTimeModel {
+	private double coefficient = 0.5; // ms
+	private double exponent = 1.5;
+	private double breakpointWeight = 0.5; // size of a breakpoint of an AVPP child relative to a concrete child
+	private double onOffWeight = 0.5; // additional size of a concrete plant with a minimal production
+	private int defaultBreakpoints = 15; // for AVPPs that are not sampled yet
+
+	private final LinkedList<double[]> observations; // size, duration
+	private int maxObservations = 200;
+	private int minObservations = 5;
+
+	public SolveTimeModel() {
+		observations = new LinkedList<double[]>();
+	}
+
+	/**
+	 * @param size
+	 * @return ms to solve a model of the given size
+	 */
+	public synchronized double estimate(double size) {
+		return coefficient * Math.pow(Math.max(1.0, size), exponent);
+	}
+
+	/**
+	 * Contribution of a child to the size of its parent's model
+	 */
+	public double getSize(PowerPlantData pd) {
+		if (!pd.isAVPP()) {
+			if (pd.getPowerBoundaries() != null && pd.getPowerBoundaries().min > 0)
+				return 1.0 + onOffWeight;
+			return 1.0;
+		}
+		int breakpoints = defaultBreakpoints;
+		PiecewiseLinearFunction costs = pd.getCostFunction();
+		if (costs != null && !costs.isEmpty())
+			breakpoints = costs.getBPs();
+		int regions = pd.getFeasibleRegions() == null ? 1 : Math.max(1, pd.getFeasibleRegions().size());
+		return 1.0 + breakpointWeight * breakpoints + (regions - 1);
+	}
+
+	/**
+	 * @return size of an AVPP that is not abstracted yet, as a child of another AVPP
+	 */
+	public double getDefaultAvppSize() {
+		return 1.0 + breakpointWeight * defaultBreakpoints;
+	}
+
+	public double getModelSize(Collection<AvppGraph> children) {
+		double size = 0.0;
+		for (AvppGraph child : children) {
+			size += getSize(child.getPowerPlant());
+		}
+		return size;
+	}
+
+	/**
+	 * Records a solve and refits the model
+	 *
+	 * @param size
+	 *            see getModelSize
+	 * @param duration
+	 *            ms
+	 */
+	public synchronized void observe(double size, double duration) {
+		observations.add(new double[] { Math.max(1.0, size), Math.max(1.0, duration) });
+		if (observations.size() > maxObservations)
+			observations.removeFirst();
+		fit();
+	}
+
+	private void fit() {
+		if (observations.size() < minObservations)
+			return;
+		double meanX = 0.0, meanY = 0.0;
+		for (double[] observation : observations) {
+			meanX += Math.log(observation[0]);
+			meanY += Math.log(observation[1]);
+		}
+		meanX /= observations.size();
+		meanY /= observations.size();
+
+		double covariance = 0.0, variance = 0.0;
+		for (double[] observation : observations) {
+			double dx = Math.log(observation[0]) - meanX;
+			covariance += dx * (Math.log(observation[1]) - meanY);
+			variance += dx * dx;
+		}
+		if (variance >= 1.0e-9) // otherwise all models had the same size, only the level can be learned
+			exponent = Math.max(0.5, Math.min(4.0, covariance / variance));
+		coefficient = Math.exp(meanY - exponent * meanX);
+	}
+
+	public synchronized int getObservationCount() {
+		return observations.size();
+	}
+
+	public synchronized double getCoefficient() {
+		return coefficient;
+	}
+
+	public synchronized void setCoefficient(double coefficient) {
+		this.coefficient = coefficient;
+	}
+
+	public synchronized double getExponent() {
+		return exponent;
+	}
+
+	public synchronized void setExponent(double exponent) {
+		this.exponent = exponent;
+	}
+
+	public double getBreakpointWeight() {
+		return breakpointWeight;
+	}
+
+	public void setBreakpointWeight(double breakpointWeight) {
+		this.breakpointWeight = breakpointWeight;
+	}
+
+	public double getOnOffWeight() {
+		return onOffWeight;
+	}
+
+	public void setOnOffWeight(double onOffWeight) {
+		this.onOffWeight = onOffWeight;
+	}
+
+	public int getDefaultBreakpoints() {
+		return defaultBreakpoints;
+	}
+
+	public void setDefaultBreakpoints(int defaultBreakpoints) {
+		this.defaultBreakpoints = defaultBreakpoints;
+	}
+
+	public int getMinObservations() {
+		return minObservations;
+	}
+
+	public void setMinObservations(int minObservations) {
+		this.minObservations = minObservations;
+	}
+}
@@ -0,0 +1,115 @@
+package de.uniaugsburg.isse.experiments;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks, per AVPP, how well its abstraction matches what it actually delivers: the relative deviation between
+ * requested and delivered load and between abstracted and actual costs (both as exponentially smoothed averages), as
+ * well as the range of loads it was asked for. An AVPP whose error exceeds the threshold is flagged for re-sampling
+ * around that operating range.
+ */
+public class AbstractionErrorMonitor {
+
+	private static class NodeRecord {
+		private double loadError;
+		private double costError;
+		private int observations;
+		private double minLoad = Double.POSITIVE_INFINITY;
+		private double maxLoad = Double.NEGATIVE_INFINITY;
+	}
+
+	private final Map<String, NodeRecord> records;
+	private double errorThreshold = 0.05;
+	private double smoothing = 0.3; // weight of the newest observation
+	private int minObservations = 3;
+
+	public AbstractionErrorMonitor() {
+		records = new HashMap<String, NodeRecord>();
+	}
+
+	public void record(String avpp, double requestedLoad, double deliveredLoad, double abstractCosts, double actualCosts) {
+		NodeRecord rec = records.get(avpp);
+		if (rec == null) {
+			rec = new NodeRecord();
+			records.put(avpp, rec);
+		}
+		double loadError = Math.abs(requestedLoad - deliveredLoad) / Math.max(Math.abs(requestedLoad), 1.0);
+		double costError = Math.abs(abstractCosts - actualCosts) / Math.max(Math.abs(actualCosts), 1.0);
+
+		if (rec.observations == 0) {
+			rec.loadError = loadError;
+			rec.costError = costError;
+		} else {
+			rec.loadError = smoothing * loadError + (1.0 - smoothing) * rec.loadError;
+			rec.costError = smoothing * costError + (1.0 - smoothing) * rec.costError;
+		}
+		++rec.observations;
+		rec.minLoad = Math.min(rec.minLoad, Math.min(requestedLoad, deliveredLoad));
+		rec.maxLoad = Math.max(rec.maxLoad, Math.max(requestedLoad, deliveredLoad));
+	}
+
+	public boolean needsResampling(String avpp) {
+		NodeRecord rec = records.get(avpp);
+		if (rec == null || rec.observations < minObservations)
+			return false;
+		return rec.loadError > errorThreshold || rec.costError > errorThreshold;
+	}
+
+	/**
+	 * Forget the history of an AVPP, e.g., after its abstraction was replaced
+	 *
+	 * @param avpp
+	 */
+	public void reset(String avpp) {
+		records.remove(avpp);
+	}
+
+	public void clear() {
+		records.clear();
+	}
+
+	public double getLoadError(String avpp) {
+		NodeRecord rec = records.get(avpp);
+		return rec == null ? 0.0 : rec.loadError;
+	}
+
+	public double getCostError(String avpp) {
+		NodeRecord rec = records.get(avpp);
+		return rec == null ? 0.0 : rec.costError;
+	}
+
+	public double getMinOperatingLoad(String avpp) {
+		NodeRecord rec = records.get(avpp);
+		return rec == null ? Double.NaN : rec.minLoad;
+	}
+
+	public double getMaxOperatingLoad(String avpp) {
+		NodeRecord rec = records.get(avpp);
+		return rec == null ? Double.NaN : rec.maxLoad;
+	}
+
+	public double getErrorThreshold() {
+		return errorThreshold;
+	}
+
+	public void setErrorThreshold(double errorThreshold) {
+		this.errorThreshold = errorThreshold;
+	}
+
+	public double getSmoothing() {
+		return smoothing;
+	}
+
+	public void setSmoothing(double smoothing) {
+		this.smoothing = smoothing;
+	}
+
+	public int getMinObservations() {
+		return minObservations;
+	}
+
+	public void setMinObservations(int minObservations) {
+		this.minObservations = minObservations;
+	}
+}
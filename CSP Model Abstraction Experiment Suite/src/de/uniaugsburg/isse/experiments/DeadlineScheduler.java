@@ -0,0 +1,205 @@
+package de.uniaugsburg.isse.experiments;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import de.uniaugsburg.isse.abstraction.AvppGraph;
+import de.uniaugsburg.isse.abstraction.AvppLeafNode;
+
+/**
+ * Splits the wall-clock budget of one time step (e.g., the 15 minutes until the next dispatch) among the AVPPs that
+ * still have to be solved in this step. Each AVPP gets a share of the remaining budget proportional to its expected
+ * solve duration (exponentially smoothed over the previous steps); if that share would not even allow a minimal exact
+ * solve, the AVPP is to be dispatched greedily. AVPPs that are expected to need more than their share get a relaxed
+ * MIP gap so that the solver can stop earlier.
+ */
+public class DeadlineScheduler {
+
+	public static class Allocation {
+		private final int timeLimit;
+		private final double mipGap;
+
+		public Allocation(int timeLimit, double mipGap) {
+			this.timeLimit = timeLimit;
+			this.mipGap = mipGap;
+		}
+
+		/**
+		 * @return seconds for the exact solve, 0 if the AVPP is to be dispatched greedily
+		 */
+		public int getTimeLimit() {
+			return timeLimit;
+		}
+
+		public double getMipGap() {
+			return mipGap;
+		}
+
+		public boolean isGreedy() {
+			return timeLimit <= 0;
+		}
+	}
+
+	private final long stepBudget; // ms
+	private final Map<String, Double> expectedDurations; // ms, smoothed
+	private final Set<String> pending;
+	private long stepStart;
+
+	private double reserve = 0.1; // fraction of the budget kept for extraction and greedy fallbacks
+	private double smoothing = 0.3; // weight of the newest observation
+	private double defaultDuration = 1000.0; // ms, for AVPPs never solved before
+	private int minTimeLimit = 1; // s, less is dispatched greedily
+	private int maxTimeLimit = 60; // s
+	private double mipGapPerOverload = 0.01; // relative gap per factor the expected duration exceeds the share
+	private double maxMipGap = 0.05;
+
+	/**
+	 * @param stepBudget
+	 *            milliseconds one time step may take
+	 */
+	public DeadlineScheduler(long stepBudget) {
+		this.stepBudget = stepBudget;
+		this.expectedDurations = new HashMap<String, Double>();
+		this.pending = new LinkedHashSet<String>();
+	}
+
+	/**
+	 * Starts the clock for a new time step in which all AVPPs of the given hierarchy have to be solved
+	 *
+	 * @param root
+	 */
+	public void startStep(AvppGraph root) {
+		stepStart = System.nanoTime();
+		pending.clear();
+		collectAvpps(root);
+	}
+
+	private void collectAvpps(AvppGraph node) {
+		if (node instanceof AvppLeafNode)
+			return;
+		pending.add(node.getPowerPlant().getName());
+		for (AvppGraph child : node.getChildren()) {
+			collectAvpps(child);
+		}
+	}
+
+	/**
+	 * Assigns time limit and MIP gap to the next AVPP to be solved
+	 *
+	 * @param avpp
+	 * @return
+	 */
+	public Allocation allocate(String avpp) {
+		double expected = getExpectedDuration(avpp);
+		double expectedPending = expected;
+		for (String other : pending) {
+			if (!other.equals(avpp))
+				expectedPending += getExpectedDuration(other);
+		}
+		pending.remove(avpp);
+
+		double available = getRemainingBudget() - reserve * stepBudget;
+		double share = available * expected / expectedPending;
+		int timeLimit = (int) Math.min(maxTimeLimit, Math.floor(share / 1000.0));
+		if (timeLimit < minTimeLimit)
+			return new Allocation(0, maxMipGap);
+
+		double overload = expected / share;
+		double mipGap = overload <= 1.0 ? 0.0 : Math.min(maxMipGap, mipGapPerOverload * overload);
+		return new Allocation(timeLimit, mipGap);
+	}
+
+	/**
+	 * Records how long an AVPP actually took, greedy dispatches are not recorded as they tell nothing about the exact
+	 * solve
+	 *
+	 * @param avpp
+	 * @param duration
+	 *            ms
+	 */
+	public void report(String avpp, double duration) {
+		Double expected = expectedDurations.get(avpp);
+		if (expected == null)
+			expectedDurations.put(avpp, duration);
+		else
+			expectedDurations.put(avpp, smoothing * duration + (1.0 - smoothing) * expected);
+	}
+
+	public double getExpectedDuration(String avpp) {
+		Double expected = expectedDurations.get(avpp);
+		return expected == null ? defaultDuration : expected;
+	}
+
+	/**
+	 * @return ms left in the current time step
+	 */
+	public double getRemainingBudget() {
+		return stepBudget - (System.nanoTime() - stepStart) / 1.0e6;
+	}
+
+	public boolean isOverdue() {
+		return getRemainingBudget() < 0;
+	}
+
+	public long getStepBudget() {
+		return stepBudget;
+	}
+
+	public double getReserve() {
+		return reserve;
+	}
+
+	public void setReserve(double reserve) {
+		this.reserve = reserve;
+	}
+
+	public double getSmoothing() {
+		return smoothing;
+	}
+
+	public void setSmoothing(double smoothing) {
+		this.smoothing = smoothing;
+	}
+
+	public double getDefaultDuration() {
+		return defaultDuration;
+	}
+
+	public void setDefaultDuration(double defaultDuration) {
+		this.defaultDuration = defaultDuration;
+	}
+
+	public int getMinTimeLimit() {
+		return minTimeLimit;
+	}
+
+	public void setMinTimeLimit(int minTimeLimit) {
+		this.minTimeLimit = minTimeLimit;
+	}
+
+	public int getMaxTimeLimit() {
+		return maxTimeLimit;
+	}
+
+	public void setMaxTimeLimit(int maxTimeLimit) {
+		this.maxTimeLimit = maxTimeLimit;
+	}
+
+	public double getMaxMipGap() {
+		return maxMipGap;
+	}
+
+	public void setMaxMipGap(double maxMipGap) {
+		this.maxMipGap = maxMipGap;
+	}
+
+	public double getMipGapPerOverload() {
+		return mipGapPerOverload;
+	}
+
+	public void setMipGapPerOverload(double mipGapPerOverload) {
+		this.mipGapPerOverload = mipGapPerOverload;
+	}
+}
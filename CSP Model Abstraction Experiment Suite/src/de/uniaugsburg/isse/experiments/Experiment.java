@@ -5,10 +5,21 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import optimizationtools.CplexTools;
 import de.uniaugsburg.isse.RandomManager;
@@ -16,12 +27,20 @@ import de.uniaugsburg.isse.abstraction.AvppCreator;
 import de.uniaugsburg.isse.abstraction.AvppGraph;
 import de.uniaugsburg.isse.abstraction.AvppLeafNode;
 import de.uniaugsburg.isse.abstraction.CplexAvppGraphExporter;
+import de.uniaugsburg.isse.abstraction.CostConvolution;
 import de.uniaugsburg.isse.abstraction.CplexExporter;
 import de.uniaugsburg.isse.abstraction.GeneralAbstraction;
+import de.uniaugsburg.isse.abstraction.InOutPair;
+import de.uniaugsburg.isse.abstraction.PlantClass;
+import de.uniaugsburg.isse.abstraction.Presolve;
 import de.uniaugsburg.isse.abstraction.SamplingAbstraction;
+import de.uniaugsburg.isse.abstraction.SolveTimeModel;
 import de.uniaugsburg.isse.abstraction.TemporalAbstraction;
+import de.uniaugsburg.isse.abstraction.TemporalAbstractionCache;
+import de.uniaugsburg.isse.abstraction.merging.HoleCoarsening;
 import de.uniaugsburg.isse.abstraction.types.Interval;
 import de.uniaugsburg.isse.abstraction.types.PiecewiseLinearFunction;
+import de.uniaugsburg.isse.abstraction.types.TimeGrid;
 import de.uniaugsburg.isse.data.ResidualLoadReader;
 import de.uniaugsburg.isse.experiments.ExperimentParameterLiterals.PowerplantType;
 import de.uniaugsburg.isse.powerplants.FilePowerPlantSource;
@@ -31,6 +50,9 @@ import de.uniaugsburg.isse.powerplants.PowerPlantState;
 import de.uniaugsburg.isse.solver.AbstractModel;
 import de.uniaugsburg.isse.solver.AbstractSolver;
 import de.uniaugsburg.isse.solver.AbstractSolverFactory;
+import de.uniaugsburg.isse.solver.MeritOrderSolverFacade;
+import de.uniaugsburg.isse.solver.SolutionMatrix;
+import de.uniaugsburg.isse.solver.SolutionSnapshot;
 import de.uniaugsburg.isse.solver.SolverFacade;
 import de.uniaugsburg.isse.timer.Timer;
 import de.uniaugsburg.isse.timer.TimerCategory;
@@ -73,6 +95,40 @@ public class Experiment {
 	protected int minutesPerTimestep = 15;
 	protected boolean detailedInertia = false;
 	protected boolean useCostsInCents = false;
+	protected boolean useWarmStart = false; // seed each step with the shifted solution of the previous step
+	protected boolean usePresolve = false; // fix running states and tighten bounds derived from the current states
+	protected boolean useAggregatedPlants = false; // central model over classes of interchangeable plants
+	protected boolean usePortfolioSolving = false; // solver facade races its configurations, no sequential fallbacks
+	protected boolean useAdaptiveSampling = false; // sampling points per AVPP depend on the estimated error
+	protected double samplingErrorTolerance = 0.01; // relative to the sampled output range
+	protected int minSamplingPoints = 3;
+	protected int maxSamplingPoints = 30;
+	protected boolean simplifyPiecewiseLinear = false; // reduce breakpoints of sampled functions before export
+	protected double pwlErrorBound = 0.0; // relative to output range, 0 only merges collinear segments
+	protected boolean useConvexCosts = false; // replace sampled AVPP costs by their lower convex envelope
+	protected boolean useCostConvolution = false; // compute AVPP costs from the children's costs instead of sampling
+	protected int maxCostCombinations = 1000; // pairs of convex pieces per child, sampled if exceeded
+	protected boolean useErrorMonitor = false; // re-sample AVPPs with high abstraction error in the background
+	protected double resamplingErrorThreshold = 0.05;
+	protected int maxFeasibleRegions = 0; // per AVPP, 0 keeps all regions
+	protected double holeEpsilon = 0.0; // holes/regions narrower than this are coarsened anyway
+	protected boolean conservativeCoarsening = false; // drop regions instead of closing holes
+	protected boolean useTemporalCache = false; // memoise temporal abstraction by children's states
+	protected int temporalCacheSize = 1000;
+	protected TemporalAbstractionCache temporalAbstractionCache;
+	protected TimeGrid timeGrid; // variable step lengths over the horizon, null for uniform steps
+	protected Set<Integer> meritOrderLevels = new HashSet<Integer>(); // AVPP levels (0 = root) dispatched greedily
+	protected boolean useMeritOrderFallback = false; // dispatch greedily if the exact solve fails instead of retrying
+	protected long stepDeadline = 0; // ms per time step shared by all AVPPs, 0 keeps the fixed time limit
+	protected DeadlineScheduler deadlineScheduler;
+	protected int pipelineThreads = 0; // workers abstracting finished subtrees for the next step, 0 is sequential
+	protected boolean useSpeculation = false; // solve AVPPs for the next step ahead of time with a second facade
+	protected SolverFacade speculativeSolverFacade;
+	protected double speculationTolerance = 0.001; // relative deviation of states and loads a speculation survives
+	protected boolean useHybridPlanning = false; // flatten AVPPs into their parents where one model solves faster
+	protected int hybridReplanInterval = 10; // time steps between re-evaluations of the cut
+	protected HybridPlanner hybridPlanner;
+	protected SolveTimeModel solveTimeModel; // kept over the runs of a series, learns from every exact solve
 
 	/**
 	 * This one is to be used if the number of plants is directly specified by the input file
@@ -123,6 +179,25 @@ public class Experiment {
 	private AlgorithmFeatures features;
 	private int initialSamplingPoints;
 
+	// rolling horizon warm start: shifted production/running values per plant, indexed by DEF_TIMERANGE
+	protected Map<String, double[]> warmStartProduction;
+	protected Map<String, boolean[]> warmStartRunning;
+
+	// lazy re-sampling of AVPPs whose abstraction does not match the delivered loads/costs
+	protected AbstractionErrorMonitor errorMonitor;
+	private ExecutorService resamplingExecutor;
+	private Map<AvppGraph, Future<PiecewiseLinearFunction[]>> pendingResamplings;
+
+	// pipelined time steps: temporal abstraction of t+1 per subtree as soon as the subtree is solved for t
+	private ExecutorService pipelineExecutor;
+	private Map<AvppGraph, Future<?>> pipelinedAbstractions;
+	private long reportedCacheHits;
+	private long reportedCacheMisses;
+
+	// speculative solving: next step of every AVPP with the states predicted by its current solution
+	private ExecutorService speculationExecutor;
+	private Map<String, Speculation> speculations;
+
 	public Properties getOriginatingProperties() {
 		return originatingProperties;
 	}
@@ -198,6 +273,9 @@ public class Experiment {
 		AvppCreator ac = new AvppCreator();
 		if (hierarchyType == HierarchyType.FLAT) {
 			avppGraph = ac.createFlatGraph(allPlants);
+		} else if (hierarchyType == HierarchyType.RUNTIME_AWARE) {
+			ac.setAbstractionSolves(initialSamplingPoints / (double) Math.max(1, experimentHorizon));
+			avppGraph = ac.createRuntimeAwareGraph(allPlants, getSolveTimeModel());
 		} else {
 			ac.setPlantsPerAvpp(plantsPerAvpp);
 			ac.setAvppsPerAvpp(avppsPerAvpp);
@@ -242,13 +320,7 @@ public class Experiment {
 			updateStates(child);
 			PowerPlantState childState = allStates.get(child.getPowerPlant().getName());
 			avppProduction += childState.getPower().min;
-			PowerPlantData pdata = childState.getData();
-
-			if (!pdata.isAVPP()) {
-				pdata.put(AbstractionParameterLiterals.CONSRUNNING_INIT, childState.getConsRunning().min.toString());
-				pdata.put(AbstractionParameterLiterals.CONSSTOPPING_INIT, childState.getConsStopping().min.toString());
-				pdata.put(AbstractionParameterLiterals.POWER_INIT, Double.toString(childState.getPower().min));
-			}
+			writeInitialState(childState);
 		}
 
 		PowerPlantState avppState = allStates.get(node.getPowerPlant().getName());
@@ -261,6 +333,20 @@ public class Experiment {
 		avppState.setRunning(new Interval<Boolean>(avppProduction > 0));
 	}
 
+	/**
+	 * Reinserts the state of a concrete plant into the parameters the abstractions start from
+	 * 
+	 * @param state
+	 */
+	protected void writeInitialState(PowerPlantState state) {
+		PowerPlantData pdata = state.getData();
+		if (!pdata.isAVPP()) {
+			pdata.put(AbstractionParameterLiterals.CONSRUNNING_INIT, state.getConsRunning().min.toString());
+			pdata.put(AbstractionParameterLiterals.CONSSTOPPING_INIT, state.getConsStopping().min.toString());
+			pdata.put(AbstractionParameterLiterals.POWER_INIT, Double.toString(state.getPower().min));
+		}
+	}
+
 	protected HashMap<String, PowerPlantState> getDeepStateCopy(Map<String, PowerPlantState> initialStates2) {
 		HashMap<String, PowerPlantState> deepCopy = new HashMap<String, PowerPlantState>(initialStates2);
 		for (Entry<String, PowerPlantState> entry : initialStates2.entrySet()) {
@@ -324,6 +410,25 @@ public class Experiment {
 		System.gc();
 	}
 
+	/**
+	 * Performs the general and sampling abstraction of all AVPPs without solving anything, preparing plants and
+	 * hierarchy on the first call. Later calls only abstract AVPPs marked dirty, hence a prepared experiment can be
+	 * queried repeatedly (see AbstractionDaemon).
+	 * 
+	 * @return root of the abstracted hierarchy
+	 */
+	public AvppGraph abstractHierarchy() {
+		if (timer == null)
+			timer = new Timer();
+		if (avppGraph == null) {
+			prepare();
+			reset();
+			avppGraph.linkParents();
+		}
+		performAbstraction(avppGraph);
+		return avppGraph;
+	}
+
 	protected String writeProperties(Properties originatingProperties2) {
 		StringBuilder sb = new StringBuilder();
 		for (Object key : originatingProperties2.keySet()) {
@@ -362,12 +467,17 @@ public class Experiment {
 	}
 
 	/**
-	 * Recursively performs abstraction of constraint models
+	 * Recursively performs abstraction of constraint models; only AVPPs marked dirty (see AvppGraph.markDirty) are
+	 * abstracted again, so a change to one subtree costs time proportional to its depth
 	 * 
 	 * @param node
 	 */
 	protected void performAbstraction(AvppGraph node) {
-		if (node instanceof AvppLeafNode) // nothing to do
+		if (node instanceof AvppLeafNode) { // nothing to do
+			node.markClean();
+			return;
+		}
+		if (!node.isDirty()) // nothing changed below
 			return;
 
 		// postfix traversal - first abstract children
@@ -385,57 +495,166 @@ public class Experiment {
 		GeneralAbstraction ga = new GeneralAbstraction();
 		node.setGeneralAbstraction(ga);
 		ga.setPowerPlants(childPlants);
+		ga.setCoarsening(createCoarsening());
 		ga.perform();
 		PowerPlantData nodeData = node.getPowerPlant();
 		nodeData.setFeasibleRegions(ga.getFeasibleRegions());
 		nodeData.setHoles(ga.getHoles());
 
 		if (useSamplingAbstraction) {
-			SamplingAbstraction sa = new SamplingAbstraction(ga.getFeasibleRegions(), ga.getHoles());
-			sa.setInitialSamplingPoints(initialSamplingPoints);
-
-			// get concrete cplex solver
-			AbstractSolver solver = solverFactory.createSolver();
-			AbstractModel model = solverFactory.createModel();
-			model.setCostsInCents(useCostsInCents);
-			model.setCosts(true);
-			model.setPlantData(node.getPowerPlant(), node.getChildrenPlantData());
-			Collection<String> dexprs = new ArrayList<String>(2);
-
-			String costsObjective = AbstractionParameterLiterals.DEXP_COSTS + "[0]";
-			if (useCostsInCents)
-				costsObjective = "(" + costsObjective + ")/100.0";
-			dexprs.add(AbstractionParameterLiterals.DEXP_COSTS + "Init = " + costsObjective);
-			dexprs.add(AbstractionParameterLiterals.DEXP_POWER + "Init = " + AbstractionParameterLiterals.DEXP_POWER + "[0]");
-			dexprs.add(AbstractionParameterLiterals.DEXP_POWER + "Succ = " + AbstractionParameterLiterals.DEXP_POWER + "[1]");
-			model.addDecisionExpressions(dexprs);
-			solver.setModel(model);
-
-			sa.setMaximizationDecisionExpressions(Arrays.asList(AbstractionParameterLiterals.DEXP_POWER + "Succ"));
-			sa.setMinimizationDecisionExpressions(Arrays.asList(AbstractionParameterLiterals.DEXP_COSTS + "Init", AbstractionParameterLiterals.DEXP_POWER
-					+ "Succ"));
-			sa.setSolver(solver);
-
-			sa.setUseStaticSampling(useStaticSampling);
-			sa.perform(samplingPoints);
+			PiecewiseLinearFunction costFunction = null;
+			if (useCostConvolution)
+				costFunction = convolveCosts(node);
+			SamplingAbstraction sa = sampleNode(node, ga.getFeasibleRegions(), ga.getHoles(), costFunction == null);
+			statistics.reportSamplingPoints(node.getPowerPlant().getName(), sa.getUsedSamplingPoints());
+			if (costFunction == null)
+				costFunction = sa.getPiecewiseLinearFunction(AbstractionParameterLiterals.DEXP_COSTS + "Init", true);
 
 			// reintegrate sampling points
-			PiecewiseLinearFunction costFunction = sa.getPiecewiseLinearFunction(AbstractionParameterLiterals.DEXP_COSTS + "Init", true);
-			node.getPowerPlant().setPositiveDelta(sa.getPiecewiseLinearFunction(AbstractionParameterLiterals.DEXP_POWER + "Succ", false));
-			node.getPowerPlant().setCostFunction(costFunction);
-			node.getPowerPlant().setNegativeDelta(sa.getPiecewiseLinearFunction(AbstractionParameterLiterals.DEXP_POWER + "Succ", true));
+			setSampledFunctions(node, costFunction, sa.getPiecewiseLinearFunction(AbstractionParameterLiterals.DEXP_POWER + "Succ", false),
+					sa.getPiecewiseLinearFunction(AbstractionParameterLiterals.DEXP_POWER + "Succ", true));
 		}
+		node.markClean();
 		long elapsed = timer.tock(TimerCategory.ABSTRACT_AVPP_RUNTIME.id);
 		statistics.addAvppAbstractionRuntime(elapsed);
 	}
 
+	/**
+	 * Computes the costs of an AVPP as infimal convolution of its children's costs
+	 * 
+	 * @param node
+	 * @return null if the convolution needs too many combinations, then the costs are sampled
+	 */
+	protected PiecewiseLinearFunction convolveCosts(AvppGraph node) {
+		CostConvolution convolution = new CostConvolution(maxCostCombinations);
+		if (!convolution.perform(node.getChildrenPlantData())) {
+			statistics.reportCostConvolutionFallback(true); // exceeds maxCostCombinations, sampled instead
+			return null;
+		}
+		statistics.reportCostConvolutionFallback(false);
+		statistics.reportConvexCostPieces(convolution.getConvexPieces());
+		return convolution.getCostFunction();
+	}
+
+	protected SamplingAbstraction sampleNode(AvppGraph node, SortedSet<Interval<Double>> feasibleRegions, Collection<Interval<Double>> holes) {
+		return sampleNode(node, feasibleRegions, holes, true);
+	}
+
+	/**
+	 * Samples cost and delta functions of an AVPP over the given feasible regions
+	 * 
+	 * @param node
+	 * @param feasibleRegions
+	 * @param holes
+	 * @param sampleCosts
+	 *            false if the costs are known already, then only the delta functions are sampled
+	 * @return the performed sampling abstraction
+	 */
+	protected SamplingAbstraction sampleNode(AvppGraph node, SortedSet<Interval<Double>> feasibleRegions, Collection<Interval<Double>> holes,
+			boolean sampleCosts) {
+		return sampleNode(node.getPowerPlant(), node.getChildrenPlantData(), feasibleRegions, holes, sampleCosts);
+	}
+
+	/**
+	 * Samples an AVPP given by its plant data and the data of its children, e.g., snapshots taken for a background
+	 * sampling
+	 */
+	protected SamplingAbstraction sampleNode(PowerPlantData avpp, Collection<PowerPlantData> children, SortedSet<Interval<Double>> feasibleRegions,
+			Collection<Interval<Double>> holes, boolean sampleCosts) {
+		SamplingAbstraction sa = new SamplingAbstraction(feasibleRegions, holes);
+		sa.setInitialSamplingPoints(initialSamplingPoints);
+
+		// get concrete cplex solver
+		AbstractSolver solver = solverFactory.createSolver();
+		AbstractModel model = solverFactory.createModel();
+		model.setCostsInCents(useCostsInCents);
+		model.setCosts(true);
+		model.setPlantData(avpp, children);
+		Collection<String> dexprs = new ArrayList<String>(2);
+
+		String costsObjective = AbstractionParameterLiterals.DEXP_COSTS + "[0]";
+		if (useCostsInCents)
+			costsObjective = "(" + costsObjective + ")/100.0";
+		dexprs.add(AbstractionParameterLiterals.DEXP_COSTS + "Init = " + costsObjective);
+		dexprs.add(AbstractionParameterLiterals.DEXP_POWER + "Init = " + AbstractionParameterLiterals.DEXP_POWER + "[0]");
+		dexprs.add(AbstractionParameterLiterals.DEXP_POWER + "Succ = " + AbstractionParameterLiterals.DEXP_POWER + "[1]");
+		model.addDecisionExpressions(dexprs);
+		solver.setModel(model);
+
+		sa.setMaximizationDecisionExpressions(Arrays.asList(AbstractionParameterLiterals.DEXP_POWER + "Succ"));
+		if (sampleCosts)
+			sa.setMinimizationDecisionExpressions(Arrays.asList(AbstractionParameterLiterals.DEXP_COSTS + "Init", AbstractionParameterLiterals.DEXP_POWER
+					+ "Succ"));
+		else
+			sa.setMinimizationDecisionExpressions(Arrays.asList(AbstractionParameterLiterals.DEXP_POWER + "Succ"));
+		sa.setSolver(solver);
+
+		sa.setUseStaticSampling(useStaticSampling);
+		sa.setUseAdaptiveSampling(useAdaptiveSampling);
+		sa.setAdaptiveErrorTolerance(samplingErrorTolerance);
+		sa.setMinSamplingPoints(minSamplingPoints);
+		sa.setMaxSamplingPoints(maxSamplingPoints);
+		sa.perform(samplingPoints);
+		return sa;
+	}
+
+	/**
+	 * Attaches sampled functions to the AVPP's plant data, after optional convexification and breakpoint reduction
+	 */
+	protected void setSampledFunctions(AvppGraph node, PiecewiseLinearFunction costFunction, PiecewiseLinearFunction positiveDelta,
+			PiecewiseLinearFunction negativeDelta) {
+		if (useConvexCosts && costFunction != null && !costFunction.isEmpty()) {
+			PiecewiseLinearFunction convexCosts = costFunction.convexHull();
+			double convexError = costFunction.getMaxDeviation(convexCosts);
+			statistics.reportConvexCostError(convexError);
+			costFunction = convexCosts;
+		}
+		costFunction = reduceBreakpoints(costFunction);
+		node.getPowerPlant().setPositiveDelta(reduceBreakpoints(positiveDelta));
+		node.getPowerPlant().setCostFunction(costFunction);
+		node.getPowerPlant().setNegativeDelta(reduceBreakpoints(negativeDelta));
+	}
+
+	/**
+	 * Fewer breakpoints per child keep the piecewise constraints of the parent model small
+	 * 
+	 * @param pwl
+	 * @return
+	 */
+	protected PiecewiseLinearFunction reduceBreakpoints(PiecewiseLinearFunction pwl) {
+		if (!simplifyPiecewiseLinear || pwl == null || pwl.isEmpty())
+			return pwl;
+		return pwl.simplify(pwlErrorBound * pwl.getOutputRange());
+	}
+
+	/**
+	 * @return null if the feasible regions are not to be coarsened
+	 */
+	protected HoleCoarsening createCoarsening() {
+		if (maxFeasibleRegions <= 0 && holeEpsilon <= 0.0)
+			return null;
+		return new HoleCoarsening(maxFeasibleRegions, holeEpsilon, conservativeCoarsening ? HoleCoarsening.Approximation.CONSERVATIVE
+				: HoleCoarsening.Approximation.OPTIMISTIC);
+	}
+
 	protected void performTemporalAbstraction(AvppGraph node) {
 		if (node instanceof AvppLeafNode) // nothing to do
 			return;
 
-		List<PowerPlantData> childPlants = new ArrayList<PowerPlantData>(node.getChildren().size());
 		for (AvppGraph child : node.getChildren()) {
 			performTemporalAbstraction(child);
+		}
+		performTemporalAbstractionLocally(node);
+	}
+
+	/**
+	 * Temporal abstraction of a single AVPP, its AVPP children have to be abstracted already
+	 * 
+	 * @param node
+	 */
+	protected void performTemporalAbstractionLocally(AvppGraph node) {
+		List<PowerPlantData> childPlants = new ArrayList<PowerPlantData>(node.getChildren().size());
+		for (AvppGraph child : node.getChildren()) {
 			childPlants.add(child.getPowerPlant());
 		}
 
@@ -444,6 +663,9 @@ public class Experiment {
 		ta.setPowerPlants(childPlants);
 		ta.setGeneralHoles(node.getGeneralAbstraction().getHoles());
 		ta.setGeneralFeasibleRegions(node.getGeneralAbstraction().getFeasibleRegions());
+		ta.setCoarsening(createCoarsening());
+		ta.setCache(temporalAbstractionCache);
+		ta.setTimeGrid(timeGrid);
 
 		ta.perform(timeHorizon);
 		PowerPlantData pd = node.getPowerPlant();
@@ -456,6 +678,7 @@ public class Experiment {
 		CplexExporter exporter = new CplexExporter();
 		CplexAvppGraphExporter graphExporter = new CplexAvppGraphExporter(exporter);
 		exporter.setTimeHorizon(getTimeHorizon());
+		exporter.setTimeGrid(timeGrid);
 		exporter.setResidualLoad(residualLoad);
 		exporter.setUseSamplingAbstraction(true);
 		exporter.setUseTemporalAbstraction(useTemporalAbstraction);
@@ -463,8 +686,16 @@ public class Experiment {
 		exporter.setUseCompleteRange(false); // starts at 1
 		exporter.setCosts(true);
 		exporter.setUseCostsInCents(useCostsInCents);
+		exporter.setUseWarmStart(useWarmStart);
+		exporter.setUsePresolve(usePresolve);
 		exporter.setOptimizationFunction("overallCosts", true);
 		// exporter.setOptimizationFunction(decExpr, minimize);
+		avppGraph.linkParents();
+		if (useHybridPlanning) {
+			hybridPlanner = new HybridPlanner(avppGraph, getSolveTimeModel());
+			hybridPlanner.plan();
+			statistics.reportFlattenedAvpps(hybridPlanner.getFlattenedCount());
+		}
 		graphExporter.createRegionalModels(avppGraph);
 
 		extractConcretePlants();
@@ -474,20 +705,63 @@ public class Experiment {
 		long elapsed = timer.tock(TimerCategory.ABSTRACTION_RUNTIME.id);
 
 		solverFacade.setTimeLimit(60);
-		solverFacade.setUseInitialSolution(false);
+		solverFacade.setUseInitialSolution(useWarmStart);
+		if (stepDeadline > 0)
+			deadlineScheduler = new DeadlineScheduler(stepDeadline);
+		if (useSpeculation && speculativeSolverFacade != null)
+			startSpeculation();
+		resetWarmStart();
 		statistics.addAbstractionRuntime(elapsed);
 		statistics.setFixedAbstractionRuntime(elapsed);
+		if (useErrorMonitor)
+			startErrorMonitor();
+		if (useTemporalCache) {
+			temporalAbstractionCache = new TemporalAbstractionCache(temporalCacheSize);
+			reportedCacheHits = 0;
+			reportedCacheMisses = 0;
+		}
+		if (useTemporalAbstraction && pipelineThreads > 0)
+			startPipeline();
+		boolean pipelineFinished = false; // pipelined abstractions for this step were awaited at the end of the last one
 		// solve model by creating decentralized models using avpps
-		for (int t = 0; t < experimentHorizon - timeHorizon; ++t) {
+		for (int t = 0; t < experimentHorizon - getLookahead(); ++t) {
+			// the states must not change while abstractions of the previous step are still running
+			boolean pipelined = finishPipelinedAbstractions() || pipelineFinished;
+			pipelineFinished = false;
+			if (useErrorMonitor)
+				applyResampledAbstractions();
+			if (hybridPlanner != null && t > 0 && t % hybridReplanInterval == 0 && replan()) {
+				// the moved children changed the affected AVPPs and their ancestors
+				timer.tick(TimerCategory.ABSTRACTION_RUNTIME.id);
+				performAbstraction(avppGraph);
+				graphExporter.createRegionalModels(avppGraph);
+				elapsed = timer.tock(TimerCategory.ABSTRACTION_RUNTIME.id);
+				statistics.addAbstractionRuntime(statistics.getAbstractionRuntime() + elapsed);
+				statistics.reportFlattenedAvpps(hybridPlanner.getFlattenedCount());
+				pipelined = false; // pipelined temporal abstractions belong to the old cut
+			}
 			// update states from concrete power plants
 			updateStates(avppGraph);
 			resetStatsMaps();
 
+			if (deadlineScheduler != null)
+				deadlineScheduler.startStep(avppGraph);
 			timer.tick(TimerCategory.RUNTIME_REGIOCENTRAL_TS.id);
 			// perform temporal abstraction with current state
 			timer.tick(TimerCategory.ABSTRACTION_RUNTIME.id);
-			if (useTemporalAbstraction)
-				performTemporalAbstraction(avppGraph);
+			if (useTemporalAbstraction) {
+				if (!pipelined)
+					performTemporalAbstraction(avppGraph);
+				if (useTemporalCache) {
+					// lookups since the last report, pipelined ones happened during the previous step
+					long hits = temporalAbstractionCache.getHits() - reportedCacheHits;
+					long lookups = hits + temporalAbstractionCache.getMisses() - reportedCacheMisses;
+					reportedCacheHits = temporalAbstractionCache.getHits();
+					reportedCacheMisses = temporalAbstractionCache.getMisses();
+					if (lookups > 0)
+						statistics.reportTemporalCacheHitRate(hits / (double) lookups);
+				}
+			}
 
 			elapsed = timer.tock(TimerCategory.ABSTRACTION_RUNTIME.id);
 			statistics.addAbstractionRuntime(statistics.getAbstractionRuntime() + elapsed);
@@ -497,13 +771,22 @@ public class Experiment {
 
 			currentLongestSerialPath = 0; // reset the current lsp value
 			// calls recursive solving algorithm
-			solveRecursively(avppGraph, graphExporter, t, residualLoadPiece, 0);
+			solveRecursively(avppGraph, graphExporter, t, residualLoadPiece, 0, 0);
 			statistics.reportSerialPath(currentLongestSerialPath);
 
 			long elapsedStep = timer.tock(TimerCategory.RUNTIME_REGIOCENTRAL_TS.id);
 			statistics.addRegioCentralRuntimePerStep(elapsedStep);
+			if (deadlineScheduler != null)
+				statistics.reportDeadlineSlack(deadlineScheduler.getRemainingBudget());
 			// manage abstraction error
 			statistics.reportAbstractionError(avppGraph.getPowerPlant().getName(), loadInputs, actualLoads);
+			if (hybridPlanner != null)
+				hybridPlanner.observeErrors(loadInputs, actualLoads);
+			if (useErrorMonitor) {
+				// re-sampling takes snapshots of the plant data the pipelined abstractions write
+				pipelineFinished = finishPipelinedAbstractions();
+				monitorAbstractionError(avppGraph);
+			}
 
 			// get aggregated production and report it
 			double totalProduction = 0.0;
@@ -531,23 +814,505 @@ public class Experiment {
 			statistics.addToplevelCostsRegioCentral(totalCosts);
 			statistics.addRootCostsRegioCentral(abstractTotalCosts);
 		}
+		if (useErrorMonitor)
+			stopErrorMonitor();
+		if (pipelineExecutor != null)
+			stopPipeline();
+		if (speculationExecutor != null)
+			stopSpeculation();
 		// compare overall performance
 	}
 
+	protected void startPipeline() {
+		pipelineExecutor = Executors.newFixedThreadPool(pipelineThreads);
+		pipelinedAbstractions = new HashMap<AvppGraph, Future<?>>();
+	}
+
+	protected void stopPipeline() {
+		pipelineExecutor.shutdownNow(); // the abstractions for the step after the last one are not needed
+		try {
+			pipelineExecutor.awaitTermination(1, TimeUnit.HOURS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		pipelineExecutor = null;
+		pipelinedAbstractions = null;
+	}
+
+	/**
+	 * Starts the temporal abstraction of a subtree for the next step once all of its plants are solved for the current
+	 * one. The job first waits for the jobs of its AVPP children; these were submitted earlier, hence the FIFO queue of
+	 * the pool never lets a parent block a worker its children still wait for.
+	 * 
+	 * Only plants of this subtree are touched, the main thread does not read or write them again before
+	 * awaitPipelinedAbstractions.
+	 * 
+	 * @param node
+	 */
+	protected void schedulePipelinedAbstraction(final AvppGraph node) {
+		final List<Future<?>> childAbstractions = new ArrayList<Future<?>>(node.getChildren().size());
+		for (AvppGraph child : node.getChildren()) {
+			Future<?> childAbstraction = pipelinedAbstractions.get(child);
+			if (childAbstraction != null)
+				childAbstractions.add(childAbstraction);
+		}
+		Future<?> abstraction = pipelineExecutor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				for (Future<?> childAbstraction : childAbstractions) {
+					childAbstraction.get();
+				}
+				for (AvppGraph child : node.getChildren()) {
+					writeInitialState(allStates.get(child.getPowerPlant().getName()));
+				}
+				performTemporalAbstractionLocally(node);
+				return null;
+			}
+		});
+		pipelinedAbstractions.put(node, abstraction);
+	}
+
+	/**
+	 * Awaits pipelined abstractions, if any, and reports the time waited
+	 * 
+	 * @return true if there were pipelined abstractions for the coming step
+	 */
+	protected boolean finishPipelinedAbstractions() {
+		if (pipelineExecutor == null || pipelinedAbstractions.isEmpty())
+			return false;
+		long waitStart = System.nanoTime();
+		awaitPipelinedAbstractions();
+		statistics.reportPipelineWait((System.nanoTime() - waitStart) / 1000000);
+		return true;
+	}
+
+	/**
+	 * Blocks until the temporal abstractions of all subtrees for the coming step are done
+	 */
+	protected void awaitPipelinedAbstractions() {
+		try {
+			for (Future<?> abstraction : pipelinedAbstractions.values()) {
+				abstraction.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Pipelined temporal abstraction failed", e.getCause());
+		}
+		pipelinedAbstractions.clear();
+	}
+
+	protected void startSpeculation() {
+		speculativeSolverFacade.setTimeLimit(60);
+		speculativeSolverFacade.setUseInitialSolution(useWarmStart);
+		speculationExecutor = Executors.newSingleThreadExecutor();
+		speculations = new HashMap<String, Speculation>();
+	}
+
+	protected void stopSpeculation() {
+		speculationExecutor.shutdownNow(); // speculations beyond the last step are not needed
+		try {
+			speculationExecutor.awaitTermination(1, TimeUnit.HOURS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		speculationExecutor = null;
+		speculations = null;
+	}
+
+	/**
+	 * Writes the model of an AVPP for the next step with the states its current solution leads to and solves it with
+	 * the speculative solver facade in the background. The residual load of the root is known, inner AVPPs are assumed
+	 * to keep the schedule their parent assigned for the remaining steps.
+	 * 
+	 * The files are written right away as the exporter and the abstractions of the children may change as soon as the
+	 * children are solved.
+	 * 
+	 * @param node
+	 * @param graphExporter
+	 * @param nextT
+	 * @param predictedStates
+	 *            states of the children after the current step
+	 * @param residualLoadPerNode
+	 *            residual load of the current step
+	 */
+	protected void speculate(AvppGraph node, CplexAvppGraphExporter graphExporter, int nextT, Map<String, PowerPlantState> predictedStates,
+			Double[] residualLoadPerNode) {
+		String name = node.getPowerPlant().getName();
+		Double[] predictedLoad;
+		if (node.isRoot()) {
+			predictedLoad = getResidualLoad(residualLoad, nextT, timeHorizon);
+		} else {
+			predictedLoad = new Double[residualLoadPerNode.length];
+			for (int t_ = 0; t_ < predictedLoad.length; ++t_) {
+				predictedLoad[t_] = residualLoadPerNode[Math.min(t_ + 1, residualLoadPerNode.length - 1)];
+			}
+		}
+		Map<String, PowerPlantState> states = getDeepStateCopy(predictedStates);
+		final String modelFile = "generated/" + name + "_speculative.mod";
+		final String dataFile = "generated/" + name + "_" + nextT + "_speculative.dat";
+		writeAvppFiles(node, graphExporter, states, predictedLoad, modelFile, dataFile);
+
+		final Collection<String> plants = new ArrayList<String>(states.keySet());
+		Speculation speculation = new Speculation(states, predictedLoad, node.getChildrenPlantData());
+		speculation.setSolution(speculationExecutor.submit(new Callable<SolutionSnapshot>() {
+			@Override
+			public SolutionSnapshot call() throws Exception {
+				try {
+					speculativeSolverFacade.solve(modelFile, dataFile);
+					return new SolutionSnapshot(speculativeSolverFacade, plants, timeHorizon);
+				} finally {
+					speculativeSolverFacade.cleanup();
+					Utils.deleteFile(modelFile);
+					Utils.deleteFile(dataFile);
+				}
+			}
+		}));
+		speculations.put(name, speculation);
+	}
+
+	/**
+	 * Validates the speculation for an AVPP against its actual states and load
+	 * 
+	 * @param node
+	 * @param localStates
+	 * @param residualLoadPerNode
+	 * @return the speculative solution if it is valid and solved, null if the AVPP has to be solved anyway
+	 */
+	protected SolverFacade takeSpeculation(AvppGraph node, Map<String, PowerPlantState> localStates, Double[] residualLoadPerNode) {
+		Speculation speculation = speculations.remove(node.getPowerPlant().getName());
+		if (speculation == null)
+			return null;
+		if (!speculation.matches(localStates, residualLoadPerNode, node.getChildrenPlantData(), speculationTolerance)) {
+			speculation.getSolution().cancel(false);
+			statistics.reportSpeculation(false);
+			return null;
+		}
+		SolutionSnapshot solution = null;
+		try {
+			solution = speculation.getSolution().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			System.err.println("Speculative solving of " + node.getPowerPlant().getName() + " failed: " + e.getCause());
+		}
+		boolean valid = solution != null && solution.isSolved();
+		statistics.reportSpeculation(valid);
+		return valid ? solution : null;
+	}
+
+	protected void startErrorMonitor() {
+		errorMonitor = new AbstractionErrorMonitor();
+		errorMonitor.setErrorThreshold(resamplingErrorThreshold);
+		resamplingExecutor = Executors.newSingleThreadExecutor();
+		pendingResamplings = new HashMap<AvppGraph, Future<PiecewiseLinearFunction[]>>();
+	}
+
+	protected void stopErrorMonitor() {
+		resamplingExecutor.shutdown();
+		try {
+			resamplingExecutor.awaitTermination(1, TimeUnit.HOURS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		pendingResamplings.clear();
+	}
+
+	/**
+	 * Records load and cost deviations of all AVPPs below the root (postfix) and schedules re-sampling for those
+	 * exceeding the threshold
+	 * 
+	 * @param node
+	 */
+	protected void monitorAbstractionError(AvppGraph node) {
+		if (node instanceof AvppLeafNode)
+			return;
+		for (AvppGraph child : node.getChildren()) {
+			monitorAbstractionError(child);
+		}
+		if (node.isRoot()) // the root's abstraction is not used by anyone
+			return;
+
+		String name = node.getPowerPlant().getName();
+		Double requested = loadInputs.get(name);
+		Double delivered = actualLoads.get(name);
+		if (requested == null || delivered == null)
+			return;
+
+		// costs the parent assumed vs. costs of the children's actual production
+		double abstractCosts = 0.0;
+		double actualCosts = 0.0;
+		PiecewiseLinearFunction costFunction = node.getPowerPlant().getCostFunction();
+		if (costFunction != null && !costFunction.isEmpty()) {
+			abstractCosts = costFunction.evaluate(delivered);
+			for (AvppGraph child : node.getChildren()) {
+				PiecewiseLinearFunction childCosts = child.getPowerPlant().getCostFunction();
+				PowerPlantState state = allStates.get(child.getPowerPlant().getName());
+				if (childCosts != null && !childCosts.isEmpty() && state != null)
+					actualCosts += childCosts.evaluate(state.getPower().min);
+			}
+		}
+		errorMonitor.record(name, requested, delivered, abstractCosts, actualCosts);
+
+		if (errorMonitor.needsResampling(name) && !pendingResamplings.containsKey(node))
+			scheduleResampling(node);
+	}
+
+	/**
+	 * Samples the functions of an AVPP again, restricted to the operating range it was used in, and merges the new
+	 * points into the existing functions
+	 * 
+	 * @param node
+	 */
+	protected void scheduleResampling(final AvppGraph node) {
+		String name = node.getPowerPlant().getName();
+		double low = errorMonitor.getMinOperatingLoad(name);
+		double high = errorMonitor.getMaxOperatingLoad(name);
+		double margin = 0.1 * (high - low);
+
+		final SortedSet<Interval<Double>> operatingRegions = new TreeSet<Interval<Double>>();
+		for (Interval<Double> region : node.getPowerPlant().getFeasibleRegions()) {
+			double min = Math.max(region.min, low - margin);
+			double max = Math.min(region.max, high + margin);
+			if (min < max)
+				operatingRegions.add(new Interval<Double>(min, max));
+		}
+		if (operatingRegions.isEmpty()) {
+			errorMonitor.reset(name);
+			return;
+		}
+
+		final PowerPlantData plantData = node.getPowerPlant();
+		// the main thread keeps updating the plant data (e.g., initial states) while the sampling runs
+		final PowerPlantData avppSnapshot = plantData.copy();
+		final List<PowerPlantData> childSnapshots = new ArrayList<PowerPlantData>(node.getChildren().size());
+		for (PowerPlantData child : node.getChildrenPlantData()) {
+			childSnapshots.add(child.copy());
+		}
+		final PiecewiseLinearFunction costs = plantData.getCostFunction();
+		final PiecewiseLinearFunction positiveDelta = plantData.getPositiveDelta();
+		final PiecewiseLinearFunction negativeDelta = plantData.getNegativeDelta();
+		final double from = operatingRegions.first().min;
+		final double to = operatingRegions.last().max;
+
+		Future<PiecewiseLinearFunction[]> resampling = resamplingExecutor.submit(new Callable<PiecewiseLinearFunction[]>() {
+			@Override
+			public PiecewiseLinearFunction[] call() throws Exception {
+				SamplingAbstraction sa = sampleNode(avppSnapshot, childSnapshots, operatingRegions, avppSnapshot.getHoles(), true);
+				return new PiecewiseLinearFunction[] {
+						mergeResampled(costs, sa.getPiecewiseLinearFunction(AbstractionParameterLiterals.DEXP_COSTS + "Init", true), from, to),
+						mergeResampled(positiveDelta, sa.getPiecewiseLinearFunction(AbstractionParameterLiterals.DEXP_POWER + "Succ", false), from, to),
+						mergeResampled(negativeDelta, sa.getPiecewiseLinearFunction(AbstractionParameterLiterals.DEXP_POWER + "Succ", true), from, to) };
+			}
+		});
+		pendingResamplings.put(node, resampling);
+	}
+
+	/**
+	 * Drops all scheduled re-samplings and waits for a running one to finish, e.g., before the hierarchy is
+	 * restructured: their functions belong to the old children and their sampling models read the children of the nodes
+	 */
+	protected void cancelResamplings() {
+		for (Entry<AvppGraph, Future<PiecewiseLinearFunction[]>> pending : pendingResamplings.entrySet()) {
+			pending.getValue().cancel(false);
+			errorMonitor.reset(pending.getKey().getPowerPlant().getName());
+		}
+		pendingResamplings.clear();
+		try {
+			// the executor is single-threaded, so this runs after the sampling that might still be in progress
+			resamplingExecutor.submit(new Runnable() {
+				@Override
+				public void run() {
+				}
+			}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Evaluates the cut of the hybrid planner, no re-sampling may run while it moves children
+	 * 
+	 * @return true if the hierarchy changed
+	 */
+	protected boolean replan() {
+		if (!hybridPlanner.evaluate())
+			return false;
+		if (resamplingExecutor != null)
+			cancelResamplings();
+		hybridPlanner.apply();
+		return true;
+	}
+
+	/**
+	 * Keeps the breakpoints of the old function outside [from, to] and takes the resampled ones inside
+	 */
+	protected PiecewiseLinearFunction mergeResampled(PiecewiseLinearFunction old, PiecewiseLinearFunction resampled, double from, double to) {
+		if (resampled == null || resampled.isEmpty())
+			return old;
+		if (old == null || old.isEmpty())
+			return resampled;
+
+		TreeSet<InOutPair> pairs = new TreeSet<InOutPair>();
+		for (double breakpoint : old.getBreakpoints(old.getBPs())) {
+			if (breakpoint < from || breakpoint > to)
+				pairs.add(new InOutPair(breakpoint, old.evaluate(breakpoint)));
+		}
+		for (double breakpoint : resampled.getBreakpoints(resampled.getBPs())) {
+			pairs.add(new InOutPair(breakpoint, resampled.evaluate(breakpoint)));
+		}
+		PiecewiseLinearFunction merged = new PiecewiseLinearFunction();
+		merged.convert(pairs);
+		return merged;
+	}
+
+	/**
+	 * Swaps in the functions of finished re-samplings (between time steps only)
+	 */
+	protected void applyResampledAbstractions() {
+		int applied = 0;
+		Iterator<Entry<AvppGraph, Future<PiecewiseLinearFunction[]>>> iterator = pendingResamplings.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Entry<AvppGraph, Future<PiecewiseLinearFunction[]>> entry = iterator.next();
+			if (!entry.getValue().isDone())
+				continue;
+			iterator.remove();
+			AvppGraph node = entry.getKey();
+			errorMonitor.reset(node.getPowerPlant().getName());
+			try {
+				PiecewiseLinearFunction[] functions = entry.getValue().get();
+				setSampledFunctions(node, functions[0], functions[1], functions[2]);
+				++applied;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				System.err.println("Re-sampling of " + node.getPowerPlant().getName() + " failed: " + e.getCause());
+			}
+		}
+		statistics.reportResamplings(applied);
+	}
+
 	protected void resetStatsMaps() {
 		loadInputs = new HashMap<String, Double>();
 		actualLoads = new HashMap<String, Double>();
 	}
 
-	protected void solveRecursively(AvppGraph node, CplexAvppGraphExporter graphExporter, int t, Double[] residualLoadPerNode, long elapsedUntil) {
+	protected void solveRecursively(AvppGraph node, CplexAvppGraphExporter graphExporter, int t, Double[] residualLoadPerNode, int level,
+			long elapsedUntil) {
 		// first solve, then call recursively for children
 		timer.tick(TimerCategory.AVPP_TIME.id);
 		loadInputs.put(node.getPowerPlant().getName(), residualLoadPerNode[0]);
 
 		Map<String, PowerPlantState> localStates = getStates(node, allStates);
 
+		String modelFile = null;
+		String dataFile = null;
+		SolverFacade solver = solverFacade;
+		boolean exact = true;
+		DeadlineScheduler.Allocation allocation = null;
+		if (deadlineScheduler != null)
+			allocation = deadlineScheduler.allocate(node.getPowerPlant().getName());
+		SolverFacade speculated = null;
+		if (speculationExecutor != null)
+			speculated = takeSpeculation(node, localStates, residualLoadPerNode);
+
+		if (speculated != null) {
+			solver = speculated;
+		} else if (meritOrderLevels.contains(level) || (allocation != null && allocation.isGreedy())) {
+			solver = dispatchByMeritOrder(node, localStates, residualLoadPerNode, false);
+			exact = false;
+		} else {
+			modelFile = "generated/" + node.getPowerPlant().getName() + ".mod";
+			dataFile = "generated/" + node.getPowerPlant().getName() + "_" + t + ".dat";
+			writeAvppFiles(node, graphExporter, localStates, residualLoadPerNode, modelFile, dataFile);
+			if (allocation != null) {
+				solverFacade.setTimeLimit(allocation.getTimeLimit());
+				solverFacade.setMipGap(allocation.getMipGap());
+			}
+			long solveStart = System.nanoTime();
+			solveAvpp(modelFile, dataFile);
+			double solveTime = (System.nanoTime() - solveStart) / 1.0e6;
+			if (allocation != null)
+				deadlineScheduler.report(node.getPowerPlant().getName(), solveTime);
+			if (solveTimeModel != null && solverFacade.isSolved())
+				solveTimeModel.observe(solveTimeModel.getModelSize(node.getChildren()), solveTime);
+			if (!solverFacade.isSolved()) {
+				solverFacade.cleanup();
+				solver = dispatchByMeritOrder(node, localStates, residualLoadPerNode, true);
+				exact = false;
+			}
+		}
+		// read the whole solution at once, localStates holds every child
+		SolutionMatrix solution = solver.getSolution(localStates.keySet(), timeHorizon);
+		if (useWarmStart)
+			storeWarmStart(solution);
+
+		for (Entry<String, PowerPlantState> state : localStates.entrySet()) {
+			int index = solution.getIndex(state.getKey());
+			double power = solution.getProduction()[index][1];
+			if (power < jitter)
+				power = 0;
+			boolean running = solution.getRunning()[index][1];
+
+			state.getValue().setPower(new Interval<Double>(power));
+			state.getValue().setRunning(new Interval<Boolean>(running));
+		}
+
+		// get total production for comparison with input
+		double totalPower = solution.getTotalProduction()[1];
+		actualLoads.put(node.getPowerPlant().getName(), totalPower);
+		// solve children
+		HashMap<String, Double[]> childLoads = new HashMap<String, Double[]>(node.getChildren().size() * 2);
+
+		// first iterate to get residual loads, then call solver again
+		for (AvppGraph childNode : node.getChildren()) {
+			if (!(childNode instanceof AvppLeafNode)) {
+				// extract powers
+				double[] childProduction = solution.getProduction()[solution.getIndex(childNode.getPowerPlant().getName())];
+				Double[] remainingLoads = new Double[timeHorizon];
+				for (int t_ = 0; t_ < timeHorizon; ++t_) {
+					remainingLoads[t_] = childProduction[t_ + 1];
+				}
+				childLoads.put(childNode.getPowerPlant().getName(), remainingLoads);
+
+			}
+		}
+		// localStates now hold the likely initial states of the next step
+		if (speculationExecutor != null && exact && t + 1 < experimentHorizon - getLookahead())
+			speculate(node, graphExporter, t + 1, localStates, residualLoadPerNode);
+
+		long elapsed = timer.tock(TimerCategory.AVPP_TIME.id);
+
+		statistics.addAvppRuntime(elapsed);
+		// solve for child TODO maybe with new thread here
+		// cleanup solver here
+		solver.cleanup();
+
+		// delete model and dat file
+		if (modelFile != null) {
+			Utils.deleteFile(modelFile);
+			Utils.deleteFile(dataFile);
+		}
+		for (AvppGraph childNode : node.getChildren()) {
+			if (!(childNode instanceof AvppLeafNode)) {
+				solveRecursively(childNode, graphExporter, t, childLoads.get(childNode.getPowerPlant().getName()), level + 1, elapsedUntil
+						+ elapsed);
+			}
+		}
+
+		// whole subtree is solved for t, its abstraction for t + 1 can start
+		if (pipelineExecutor != null)
+			schedulePipelinedAbstraction(node);
+
+		// report serial path
+		reportSerialPathLocally(elapsed + elapsedUntil);
+	}
+
+	protected void writeAvppFiles(AvppGraph node, CplexAvppGraphExporter graphExporter, Map<String, PowerPlantState> localStates,
+			Double[] residualLoadPerNode, String modelFile, String dataFile) {
 		// print top level model
-		String modelFile = "generated/" + node.getPowerPlant().getName() + ".mod";
 		Utils.writeFile(modelFile, node.getCplexModel());
 		String generalAbstractionData = graphExporter.getGeneralAbstractionData(node);
 		String temporalAbstractionData = "";
@@ -566,15 +1331,33 @@ public class Experiment {
 		String costStr = graphExporter.getExporter().writeCostsString(node.getChildrenPlantData());
 
 		String initState = graphExporter.getExporter().createInitStateData(localStates);
+		if (useWarmStart)
+			initState += "\n" + graphExporter.getExporter().createWarmStartData(localStates, warmStartProduction, warmStartRunning);
+		if (usePresolve)
+			initState += "\n" + createPresolveData(graphExporter.getExporter(), localStates);
 
-		String dataFile = "generated/" + node.getPowerPlant().getName() + "_" + t + ".dat";
 		String dataContent = generalAbstractionData + "\n" + temporalAbstractionData + "\n" + residualLoadStr + "\n" + piecewiseData + "\n" + initState + "\n"
 				+ costStr + "\n" + generalSelfAbstraction;
 		Utils.writeFile(dataFile, dataContent);
+	}
 
+	/**
+	 * Solves the model of an AVPP exactly, retrying with simplified and backup settings if necessary. With the merit
+	 * order fallback or a step deadline, there are no retries and the caller dispatches greedily if the solver facade
+	 * is not solved.
+	 * 
+	 * @param modelFile
+	 * @param dataFile
+	 */
+	protected void solveAvpp(String modelFile, String dataFile) {
 		solverFacade.solve(modelFile, dataFile);
-		// extract values for t=1 to be the next init
-		if (!solverFacade.isSolved()) {
+		if (solverFacade.isSolved() || useMeritOrderFallback || deadlineScheduler != null) {
+			return;
+		} else if (usePortfolioSolving) {
+			// all configurations have already been tried concurrently
+			solverFacade.cleanup();
+			throw new RuntimeException("Model " + modelFile + " / " + dataFile + " could not be solved!");
+		} else {
 			// try simplified
 			solverFacade.setSimplified(true);
 			solverFacade.cleanup();
@@ -596,53 +1379,71 @@ public class Experiment {
 			}
 
 		}
-		for (Entry<String, PowerPlantState> state : localStates.entrySet()) {
-			double power = solverFacade.getProduction(state.getKey(), 1);
-			if (power < jitter)
-				power = 0;
-			boolean running = solverFacade.getRunning(state.getKey(), 1);
-
-			state.getValue().setPower(new Interval<Double>(power));
-			state.getValue().setRunning(new Interval<Boolean>(running));
-		}
+	}
 
-		// get total production for comparison with input
-		double totalPower = solverFacade.getTotalProduction(1);
-		actualLoads.put(node.getPowerPlant().getName(), totalPower);
-		// solve children
-		HashMap<String, Double[]> childLoads = new HashMap<String, Double[]>(node.getChildren().size() * 2);
+	/**
+	 * Allocates the residual load of an AVPP to its children by merit order without solving its model
+	 * 
+	 * @param node
+	 * @param localStates
+	 * @param residualLoadPerNode
+	 * @param fallback
+	 *            true if the exact solve failed before
+	 * @return the solved dispatcher
+	 */
+	protected SolverFacade dispatchByMeritOrder(AvppGraph node, Map<String, PowerPlantState> localStates, Double[] residualLoadPerNode,
+			boolean fallback) {
+		MeritOrderSolverFacade dispatcher = new MeritOrderSolverFacade(timeHorizon);
+		dispatcher.setDeltaTime(minutesPerTimestep);
+		dispatcher.setTimeGrid(timeGrid);
+		dispatcher.setProblem(node.getChildrenPlantData(), localStates, residualLoadPerNode);
+		dispatcher.solve(null, null);
+		statistics.reportMeritOrderDispatch(fallback);
+		return dispatcher;
+	}
 
-		// first iterate to get residual loads, then call solver again
-		for (AvppGraph childNode : node.getChildren()) {
-			if (!(childNode instanceof AvppLeafNode)) {
-				// extract powers
-				Double[] remainingLoads = new Double[timeHorizon];
-				for (int t_ = 0; t_ < timeHorizon; ++t_) {
-					remainingLoads[t_] = solverFacade.getProduction(childNode.getPowerPlant().getName(), t_ + 1);
-				}
-				childLoads.put(childNode.getPowerPlant().getName(), remainingLoads);
+	protected void resetWarmStart() {
+		warmStartProduction = new HashMap<String, double[]>();
+		warmStartRunning = new HashMap<String, boolean[]>();
+	}
 
-			}
+	/**
+	 * Distributes the solution of the aggregated central model for t = 1 among the plants of each class
+	 * 
+	 * @param plantClasses
+	 */
+	protected void disaggregate(List<PlantClass> plantClasses) {
+		double stepWeight = timeGrid == null ? 1.0 : timeGrid.getBaseSteps(1);
+		for (PlantClass plantClass : plantClasses) {
+			int runningUnits = (int) Math.round(solverFacade.getDecVar("runningUnits", plantClass.getName(), 1));
+			double production = solverFacade.getProduction(plantClass.getName(), 1);
+			if (production < jitter)
+				production = 0;
+			plantClass.disaggregate(runningUnits, production, concretePlantStates, stepWeight);
 		}
+	}
 
-		long elapsed = timer.tock(TimerCategory.AVPP_TIME.id);
-
-		statistics.addAvppRuntime(elapsed);
-		// solve for child TODO maybe with new thread here
-		// cleanup solver here
-		solverFacade.cleanup();
-
-		// delete model and dat file
-		Utils.deleteFile(modelFile);
-		Utils.deleteFile(dataFile);
-		for (AvppGraph childNode : node.getChildren()) {
-			if (!(childNode instanceof AvppLeafNode)) {
-				solveRecursively(childNode, graphExporter, t, childLoads.get(childNode.getPowerPlant().getName()), elapsedUntil + elapsed);
+	/**
+	 * Shifts the current solution by one step (the values for steps 1..T become 0..T-1 for the next time step, the last
+	 * step is kept) and stores it as MIP start for the next rolling horizon step
+	 * 
+	 * @param solution
+	 */
+	protected void storeWarmStart(SolutionMatrix solution) {
+		for (Entry<String, Integer> plant : solution.getPlantIndex().entrySet()) {
+			double[] solvedProduction = solution.getProduction()[plant.getValue()];
+			boolean[] solvedRunning = solution.getRunning()[plant.getValue()];
+			double[] production = new double[timeHorizon + 2];
+			boolean[] running = new boolean[timeHorizon + 2];
+			for (int t_ = 0; t_ < production.length; ++t_) {
+				int step = Math.min(t_ + 1, timeHorizon);
+				double power = solvedProduction[step];
+				production[t_] = power < jitter ? 0 : power;
+				running[t_] = solvedRunning[step];
 			}
+			warmStartProduction.put(plant.getKey(), production);
+			warmStartRunning.put(plant.getKey(), running);
 		}
-
-		// report serial path
-		reportSerialPathLocally(elapsed + elapsedUntil);
 	}
 
 	private void reportSerialPathLocally(long longestCandidate) {
@@ -658,7 +1459,24 @@ public class Experiment {
 		return localStates;
 	}
 
+	/**
+	 * Propagates the current states over the horizon and writes the fixed running states and tightened bounds
+	 * 
+	 * @param exporter
+	 * @param states
+	 * @return
+	 */
+	protected String createPresolveData(CplexExporter exporter, Map<String, PowerPlantState> states) {
+		Presolve presolve = new Presolve(timeHorizon);
+		presolve.setTimeGrid(timeGrid);
+		presolve.perform(states);
+		statistics.reportPresolve(presolve.getFixedBinaries(), presolve.getTightenedBounds(), presolve.getOmittedConstraints());
+		return exporter.createPresolveData(presolve);
+	}
+
 	protected Double[] getResidualLoad(Double[] residualLoadParam, int t, int timeHorizon) {
+		if (timeGrid != null) // averaged over coarse steps
+			return timeGrid.aggregate(residualLoadParam, t);
 		Double[] residualLoad2 = new Double[timeHorizon];
 		for (int inc = 0; inc < timeHorizon; ++inc) {
 			residualLoad2[inc] = residualLoadParam[t + inc];
@@ -669,16 +1487,25 @@ public class Experiment {
 	protected void runCentralized() {
 		CplexExporter exporter = new CplexExporter();
 		exporter.setTimeHorizon(getTimeHorizon());
+		exporter.setTimeGrid(timeGrid);
 		exporter.setResidualLoad(residualLoad);
 		exporter.setMaximalUpperBound(maxProduction);
 		exporter.setUseCompleteRange(false); // starts at 1
 		exporter.setCosts(true);
 		exporter.setUseCostsInCents(useCostsInCents);
+		exporter.setUseWarmStart(useWarmStart);
+		exporter.setUsePresolve(usePresolve);
 		exporter.setOptimizationFunction("overallCosts", true);
 
 		CplexAvppGraphExporter graphExporter = new CplexAvppGraphExporter(exporter);
 		extractConcretePlants();
-		String s = graphExporter.createSingleModel(avppGraph);
+		List<PlantClass> plantClasses = null;
+		String s;
+		if (useAggregatedPlants) {
+			plantClasses = graphExporter.getPlantClasses(avppGraph);
+			s = exporter.createAggregatedModel(plantClasses);
+		} else
+			s = graphExporter.createSingleModel(avppGraph);
 
 		String modelFile = "generated/file001.mod";
 		String modelFileFeatures = null;
@@ -691,15 +1518,26 @@ public class Experiment {
 		}
 		solverFacade.setTimeLimit(1800); // 30 min initial time limit
 		solverFacade.setPresolve(true);
-		solverFacade.setUseInitialSolution(false);
+		solverFacade.setUseInitialSolution(useWarmStart);
+		resetWarmStart();
 		// main loop
-		for (int t = 0; t < experimentHorizon - timeHorizon; ++t) {
+		for (int t = 0; t < experimentHorizon - getLookahead(); ++t) {
 			timer.tick(TimerCategory.RUNTIME_CENTRAL_TS.id);
 			// create new .dat file with the current states
-			String initState = exporter.createInitStateData(concretePlantStates);
+			String initState;
+			String costStr = "";
+			if (plantClasses != null) { // costs are part of the model, warm start and presolve refer to single plants
+				initState = exporter.createAggregatedInitStateData(plantClasses, concretePlantStates);
+			} else {
+				initState = exporter.createInitStateData(concretePlantStates);
+				if (useWarmStart)
+					initState += "\n" + exporter.createWarmStartData(concretePlantStates, warmStartProduction, warmStartRunning);
+				if (usePresolve)
+					initState += "\n" + createPresolveData(exporter, concretePlantStates);
+				costStr = "\n" + exporter.writeCostsString(allPlants);
+			}
 			Double[] residualLoadPiece = getResidualLoad(residualLoad, t, timeHorizon);
 			String residualLoadStr = "\n" + exporter.createResidualLoad(residualLoadPiece);
-			String costStr = "\n" + exporter.writeCostsString(allPlants);
 			String dataFile = "generated/central_state" + t + ".mod";
 
 			String dataContent = initState + residualLoadStr + costStr;
@@ -739,22 +1577,33 @@ public class Experiment {
 			double avgRelLoadPosterior = 0.0;
 
 			if (solverFacade.isSolved()) {
+				SolutionMatrix solution = null;
+				if (plantClasses != null)
+					disaggregate(plantClasses);
+				else {
+					solution = solverFacade.getSolution(concretePlantStates.keySet(), timeHorizon);
+					if (useWarmStart)
+						storeWarmStart(solution);
+				}
 				double sumRel = 0.0;
 				for (Entry<String, PowerPlantState> state : concretePlantStates.entrySet()) {
-					double power = solverFacade.getProduction(state.getKey(), 1);
-					boolean running = solverFacade.getRunning(state.getKey(), 1);
-
-					if (power < jitter)
-						power = 0;
-					state.getValue().setPower(new Interval<Double>(power));
-					state.getValue().setRunning(new Interval<Boolean>(running));
+					if (plantClasses == null) {
+						int index = solution.getIndex(state.getKey());
+						double power = solution.getProduction()[index][1];
+						boolean running = solution.getRunning()[index][1];
+
+						if (power < jitter)
+							power = 0;
+						state.getValue().setPower(new Interval<Double>(power));
+						state.getValue().setRunning(new Interval<Boolean>(running));
+					}
 
 					if (useFeaturesAlgorithm) {
-						if (running)
+						if (state.getValue().isRunning().min)
 							++noRunningPosterior;
 						double pMax = state.getValue().getData().getFeasibleRegions().last().max;
 
-						double rel = power / pMax;
+						double rel = state.getValue().getPower().min / pMax;
 						sumRel += rel;
 					}
 				}
@@ -764,6 +1613,8 @@ public class Experiment {
 			} // else everything stays the same
 			else {
 				statistics.reportUnsolvedAllocation(1.0);
+				if (useWarmStart)
+					resetWarmStart(); // stale solution, start from initial states again
 			}
 			solverFacade.cleanup();
 
@@ -1051,4 +1902,275 @@ public class Experiment {
 		return initialSamplingPoints;
 	}
 
+	/**
+	 * @return number of input data steps covered by the prediction horizon
+	 */
+	protected int getLookahead() {
+		return timeGrid == null ? timeHorizon : timeGrid.getCoveredBaseSteps();
+	}
+
+	public TimeGrid getTimeGrid() {
+		return timeGrid;
+	}
+
+	/**
+	 * Switches to a multi-resolution horizon, the time horizon becomes the number of steps of the grid
+	 * 
+	 * @param timeGrid
+	 */
+	public void setTimeGrid(TimeGrid timeGrid) {
+		this.timeGrid = timeGrid;
+		if (timeGrid != null)
+			this.timeHorizon = timeGrid.size();
+	}
+
+	public boolean isUseTemporalCache() {
+		return useTemporalCache;
+	}
+
+	public void setUseTemporalCache(boolean useTemporalCache) {
+		this.useTemporalCache = useTemporalCache;
+	}
+
+	public int getTemporalCacheSize() {
+		return temporalCacheSize;
+	}
+
+	public void setTemporalCacheSize(int temporalCacheSize) {
+		this.temporalCacheSize = temporalCacheSize;
+	}
+
+	public int getMaxFeasibleRegions() {
+		return maxFeasibleRegions;
+	}
+
+	public void setMaxFeasibleRegions(int maxFeasibleRegions) {
+		this.maxFeasibleRegions = maxFeasibleRegions;
+	}
+
+	public double getHoleEpsilon() {
+		return holeEpsilon;
+	}
+
+	public void setHoleEpsilon(double holeEpsilon) {
+		this.holeEpsilon = holeEpsilon;
+	}
+
+	public boolean isConservativeCoarsening() {
+		return conservativeCoarsening;
+	}
+
+	public void setConservativeCoarsening(boolean conservativeCoarsening) {
+		this.conservativeCoarsening = conservativeCoarsening;
+	}
+
+	public boolean isUseErrorMonitor() {
+		return useErrorMonitor;
+	}
+
+	public void setUseErrorMonitor(boolean useErrorMonitor) {
+		this.useErrorMonitor = useErrorMonitor;
+	}
+
+	public double getResamplingErrorThreshold() {
+		return resamplingErrorThreshold;
+	}
+
+	public void setResamplingErrorThreshold(double resamplingErrorThreshold) {
+		this.resamplingErrorThreshold = resamplingErrorThreshold;
+	}
+
+	public boolean isUseConvexCosts() {
+		return useConvexCosts;
+	}
+
+	public void setUseConvexCosts(boolean useConvexCosts) {
+		this.useConvexCosts = useConvexCosts;
+	}
+
+	public boolean isUseCostConvolution() {
+		return useCostConvolution;
+	}
+
+	public void setUseCostConvolution(boolean useCostConvolution) {
+		this.useCostConvolution = useCostConvolution;
+	}
+
+	public int getMaxCostCombinations() {
+		return maxCostCombinations;
+	}
+
+	public void setMaxCostCombinations(int maxCostCombinations) {
+		this.maxCostCombinations = maxCostCombinations;
+	}
+
+	public boolean isSimplifyPiecewiseLinear() {
+		return simplifyPiecewiseLinear;
+	}
+
+	public void setSimplifyPiecewiseLinear(boolean simplifyPiecewiseLinear) {
+		this.simplifyPiecewiseLinear = simplifyPiecewiseLinear;
+	}
+
+	public double getPwlErrorBound() {
+		return pwlErrorBound;
+	}
+
+	public void setPwlErrorBound(double pwlErrorBound) {
+		this.pwlErrorBound = pwlErrorBound;
+	}
+
+	public boolean isUseAdaptiveSampling() {
+		return useAdaptiveSampling;
+	}
+
+	public void setUseAdaptiveSampling(boolean useAdaptiveSampling) {
+		this.useAdaptiveSampling = useAdaptiveSampling;
+	}
+
+	public double getSamplingErrorTolerance() {
+		return samplingErrorTolerance;
+	}
+
+	public void setSamplingErrorTolerance(double samplingErrorTolerance) {
+		this.samplingErrorTolerance = samplingErrorTolerance;
+	}
+
+	public int getMinSamplingPoints() {
+		return minSamplingPoints;
+	}
+
+	public void setMinSamplingPoints(int minSamplingPoints) {
+		this.minSamplingPoints = minSamplingPoints;
+	}
+
+	public int getMaxSamplingPoints() {
+		return maxSamplingPoints;
+	}
+
+	public void setMaxSamplingPoints(int maxSamplingPoints) {
+		this.maxSamplingPoints = maxSamplingPoints;
+	}
+
+	public boolean isUsePortfolioSolving() {
+		return usePortfolioSolving;
+	}
+
+	public void setUsePortfolioSolving(boolean usePortfolioSolving) {
+		this.usePortfolioSolving = usePortfolioSolving;
+	}
+
+	public boolean isUseWarmStart() {
+		return useWarmStart;
+	}
+
+	public void setUseWarmStart(boolean useWarmStart) {
+		this.useWarmStart = useWarmStart;
+	}
+
+	public boolean isUseAggregatedPlants() {
+		return useAggregatedPlants;
+	}
+
+	public void setUseAggregatedPlants(boolean useAggregatedPlants) {
+		this.useAggregatedPlants = useAggregatedPlants;
+	}
+
+	public boolean isUsePresolve() {
+		return usePresolve;
+	}
+
+	public void setUsePresolve(boolean usePresolve) {
+		this.usePresolve = usePresolve;
+	}
+
+	public Set<Integer> getMeritOrderLevels() {
+		return meritOrderLevels;
+	}
+
+	public void setMeritOrderLevels(Set<Integer> meritOrderLevels) {
+		this.meritOrderLevels = meritOrderLevels;
+	}
+
+	public boolean isUseMeritOrderFallback() {
+		return useMeritOrderFallback;
+	}
+
+	public void setUseMeritOrderFallback(boolean useMeritOrderFallback) {
+		this.useMeritOrderFallback = useMeritOrderFallback;
+	}
+
+	public long getStepDeadline() {
+		return stepDeadline;
+	}
+
+	public void setStepDeadline(long stepDeadline) {
+		this.stepDeadline = stepDeadline;
+	}
+
+	public boolean isUseSpeculation() {
+		return useSpeculation;
+	}
+
+	public void setUseSpeculation(boolean useSpeculation) {
+		this.useSpeculation = useSpeculation;
+	}
+
+	public SolverFacade getSpeculativeSolverFacade() {
+		return speculativeSolverFacade;
+	}
+
+	public void setSpeculativeSolverFacade(SolverFacade speculativeSolverFacade) {
+		this.speculativeSolverFacade = speculativeSolverFacade;
+	}
+
+	public double getSpeculationTolerance() {
+		return speculationTolerance;
+	}
+
+	public void setSpeculationTolerance(double speculationTolerance) {
+		this.speculationTolerance = speculationTolerance;
+	}
+
+	public int getPipelineThreads() {
+		return pipelineThreads;
+	}
+
+	public void setPipelineThreads(int pipelineThreads) {
+		this.pipelineThreads = pipelineThreads;
+	}
+
+	public boolean isUseHybridPlanning() {
+		return useHybridPlanning;
+	}
+
+	public void setUseHybridPlanning(boolean useHybridPlanning) {
+		this.useHybridPlanning = useHybridPlanning;
+	}
+
+	public int getHybridReplanInterval() {
+		return hybridReplanInterval;
+	}
+
+	public void setHybridReplanInterval(int hybridReplanInterval) {
+		this.hybridReplanInterval = hybridReplanInterval;
+	}
+
+	public HybridPlanner getHybridPlanner() {
+		return hybridPlanner;
+	}
+
+	public SolveTimeModel getSolveTimeModel() {
+		if (solveTimeModel == null) {
+			solveTimeModel = new SolveTimeModel();
+			if (initialSamplingPoints > 0)
+				solveTimeModel.setDefaultBreakpoints(initialSamplingPoints);
+		}
+		return solveTimeModel;
+	}
+
+	public void setSolveTimeModel(SolveTimeModel solveTimeModel) {
+		this.solveTimeModel = solveTimeModel;
+	}
+
 }
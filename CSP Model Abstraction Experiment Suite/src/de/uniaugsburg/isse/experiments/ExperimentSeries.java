@@ -18,6 +18,7 @@ public class ExperimentSeries {
 
 	private Experiment experiment;
 	private String symbolicName;
+	private ExperimentStatistics statistics;
 
 	public long[] getHierarchyRandomSeed() {
 		return hierarchyRandomSeed;
@@ -53,7 +54,7 @@ public class ExperimentSeries {
 
 	public void run() {
 		long timestamp = new Date().getTime();
-		ExperimentStatistics statistics = new ExperimentStatistics();
+		statistics = new ExperimentStatistics();
 		AlgorithmFeatures features = new AlgorithmFeatures();
 
 		statistics.setSolveCentrally(experiment.isSolveCentrally());
@@ -92,4 +93,11 @@ public class ExperimentSeries {
 		this.symbolicName = symbolicName;
 	}
 
+	/**
+	 * @return statistics of all runs of the last call to run
+	 */
+	public ExperimentStatistics getStatistics() {
+		return statistics;
+	}
+
 }
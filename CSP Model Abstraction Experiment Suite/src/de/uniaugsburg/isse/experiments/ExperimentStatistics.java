@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.Map.Entry;
 
 /**
@@ -108,6 +109,21 @@ public class ExperimentStatistics {
 	private MovingAverage longestSerialPaths;
 	private MovingAverage fixedAbstractionTimes;
 	private MovingAverage fixedAbstractionTimesPerAVPP;
+	private MovingAverage samplingPointsPerAVPP;
+	private Map<String, Integer> samplingPointsByAvpp; // last abstraction only
+	private MovingAverage convexCostErrors; // max deviation of convex envelope from sampled costs
+	private MovingAverage convexCostPieces; // of convolved AVPP costs
+	private MovingAverage costConvolutionFallbacks; // 1 per AVPP sampled since its convolution was too large, 0 per convolved one
+	private MovingAverage resamplingsPerStep;
+	private MovingAverage temporalCacheHitRates; // per time step
+	private MovingAverage presolveFixedBinaries; // per model
+	private MovingAverage presolveTightenedBounds;
+	private MovingAverage presolveOmittedConstraints;
+	private MovingAverage meritOrderFallbacks; // 1 per greedy dispatch after a failed solve, 0 per planned one
+	private MovingAverage deadlineSlack; // ms left of the step budget, negative if overdue
+	private MovingAverage pipelineWaits; // ms per step waiting for abstractions started during the previous step
+	private MovingAverage speculationHits; // 1 per reused speculative solution, 0 per discarded one
+	private MovingAverage flattenedAvpps; // AVPPs solved as part of their parent's model, per (re-)planned cut
 
 	public ExperimentStatistics() {
 		averages = new ArrayList<MovingAverage>(20);
@@ -177,6 +193,44 @@ public class ExperimentStatistics {
 		fixedAbstractionTimesPerAVPP = new MovingAverage("FixedAbstractionTimesPerAVPP");
 		averages.add(fixedAbstractionTimesPerAVPP);
 
+		samplingPointsPerAVPP = new MovingAverage("SamplingPointsPerAVPP");
+		averages.add(samplingPointsPerAVPP);
+		samplingPointsByAvpp = new TreeMap<String, Integer>();
+
+		convexCostErrors = new MovingAverage("ConvexCostErrorPerAVPP");
+		averages.add(convexCostErrors);
+
+		convexCostPieces = new MovingAverage("ConvexCostPiecesPerAVPP");
+		averages.add(convexCostPieces);
+
+		costConvolutionFallbacks = new MovingAverage("CostConvolutionFallbacks");
+		averages.add(costConvolutionFallbacks);
+
+		resamplingsPerStep = new MovingAverage("ResamplingsPerStep");
+		averages.add(resamplingsPerStep);
+
+		temporalCacheHitRates = new MovingAverage("TemporalCacheHitRate");
+		averages.add(temporalCacheHitRates);
+
+		presolveFixedBinaries = new MovingAverage("PresolveFixedBinaries");
+		averages.add(presolveFixedBinaries);
+
+		presolveTightenedBounds = new MovingAverage("PresolveTightenedBounds");
+		averages.add(presolveTightenedBounds);
+
+		presolveOmittedConstraints = new MovingAverage("PresolveOmittedConstraints");
+		averages.add(presolveOmittedConstraints);
+
+		meritOrderFallbacks = new MovingAverage("MeritOrderFallbacks");
+		averages.add(meritOrderFallbacks);
+		deadlineSlack = new MovingAverage("DeadlineSlack");
+		averages.add(deadlineSlack);
+		pipelineWaits = new MovingAverage("PipelineWait");
+		averages.add(pipelineWaits);
+		speculationHits = new MovingAverage("SpeculationHits");
+		averages.add(speculationHits);
+		flattenedAvpps = new MovingAverage("FlattenedAVPPs");
+		averages.add(flattenedAvpps);
 	}
 
 	public void reset() {
@@ -304,6 +358,38 @@ public class ExperimentStatistics {
 			sb.append("+ Fixed time abstraction: " + toSeconds(fixedAbstractionRuntime) + "\n");
 			sb.append("+ Variable abstraction runtime total : " + Math.round(variableAbstraction.sum) + "\n");
 			appendMovingAverage(sb, "Variable abstraction runtime per step ", variableAbstraction);
+			if (samplingPointsPerAVPP.num > 0) {
+				appendMovingAverage(sb, "Sampling points per AVPP", samplingPointsPerAVPP);
+				for (Entry<String, Integer> entry : samplingPointsByAvpp.entrySet()) {
+					sb.append("++ " + entry.getKey() + " : " + entry.getValue() + "\n");
+				}
+			}
+			if (convexCostErrors.num > 0)
+				appendMovingAverage(sb, "Convex cost abstraction error per AVPP", convexCostErrors);
+			if (convexCostPieces.num > 0)
+				appendMovingAverage(sb, "Convex pieces of convolved costs per AVPP", convexCostPieces);
+			if (costConvolutionFallbacks.num > 0)
+				appendMovingAverage(sb, "Cost convolutions (1 = sampled instead)", costConvolutionFallbacks);
+			if (resamplingsPerStep.num > 0)
+				appendMovingAverage(sb, "Re-sampled AVPPs per time step", resamplingsPerStep);
+			if (temporalCacheHitRates.num > 0)
+				appendMovingAverage(sb, "Temporal abstraction cache hit rate", temporalCacheHitRates);
+			if (meritOrderFallbacks.num > 0)
+				appendMovingAverage(sb, "Merit order dispatches (1 = fallback after failed solve)", meritOrderFallbacks);
+			if (deadlineSlack.num > 0)
+				appendMovingAverage(sb, "Slack of the step deadline (ms)", deadlineSlack);
+			if (pipelineWaits.num > 0)
+				appendMovingAverage(sb, "Waiting for pipelined abstractions per step (ms)", pipelineWaits);
+			if (speculationHits.num > 0)
+				appendMovingAverage(sb, "Reused speculative solutions", speculationHits);
+			if (flattenedAvpps.num > 0)
+				appendMovingAverage(sb, "Flattened AVPPs", flattenedAvpps);
+		}
+
+		if (presolveFixedBinaries.num > 0) { // central and regio central models
+			appendMovingAverage(sb, "Presolve: fixed running variables per model", presolveFixedBinaries);
+			appendMovingAverage(sb, "Presolve: tightened production bounds per model", presolveTightenedBounds);
+			appendMovingAverage(sb, "Presolve: omitted constraints per model", presolveOmittedConstraints);
 		}
 		sb.append("+++++++++++++++++++++++++++++++++++++++++++++++++++++++");
 		return sb.toString();
@@ -386,4 +472,55 @@ public class ExperimentStatistics {
 	public void addAvppAbstractionRuntime(long elapsed) {
 		this.fixedAbstractionTimesPerAVPP.add(elapsed);
 	}
+
+	public void reportTemporalCacheHitRate(double hitRate) {
+		temporalCacheHitRates.add(hitRate);
+	}
+
+	public void reportPresolve(int fixedBinaries, int tightenedBounds, int omittedConstraints) {
+		presolveFixedBinaries.add(fixedBinaries);
+		presolveTightenedBounds.add(tightenedBounds);
+		presolveOmittedConstraints.add(omittedConstraints);
+	}
+
+	public void reportMeritOrderDispatch(boolean fallback) {
+		meritOrderFallbacks.add(fallback ? 1 : 0);
+	}
+
+	public void reportDeadlineSlack(double slack) {
+		deadlineSlack.add(slack);
+	}
+
+	public void reportPipelineWait(long wait) {
+		pipelineWaits.add(wait);
+	}
+
+	public void reportSpeculation(boolean reused) {
+		speculationHits.add(reused ? 1 : 0);
+	}
+
+	public void reportFlattenedAvpps(int count) {
+		flattenedAvpps.add(count);
+	}
+
+	public void reportResamplings(int count) {
+		resamplingsPerStep.add(count);
+	}
+
+	public void reportConvexCostError(double error) {
+		convexCostErrors.add(error);
+	}
+
+	public void reportConvexCostPieces(int pieces) {
+		convexCostPieces.add(pieces);
+	}
+
+	public void reportCostConvolutionFallback(boolean fallback) {
+		costConvolutionFallbacks.add(fallback ? 1 : 0);
+	}
+
+	public void reportSamplingPoints(String avpp, int points) {
+		samplingPointsPerAVPP.add(points);
+		samplingPointsByAvpp.put(avpp, points);
+	}
 }
@@ -0,0 +1,247 @@
+package de.uniaugsburg.isse.experiments;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import de.uniaugsburg.isse.abstraction.AvppGraph;
+import de.uniaugsburg.isse.abstraction.AvppLeafNode;
+import de.uniaugsburg.isse.abstraction.SolveTimeModel;
+
+/**
+ * Chooses per subtree whether an AVPP is solved hierarchically (own model, abstracted in its parent's model) or
+ * flattened into its parent's model, i.e., the parent directly controls the AVPP's children. The hierarchy as created
+ * is kept; a cut is applied by moving children between the nodes of the graph, so the regio-central solving and the
+ * change tracking of AvppGraph work on the result unchanged.
+ *
+ * The decision is bottom-up and greedy: smaller subtrees are flattened first as long as the estimated solve time of the
+ * merged model is below the time of the two separate solves plus the overhead of an additional AVPP (export, temporal
+ * abstraction, solver set-up) and the merged model does not exceed the maximal size. Sizes and solve times are
+ * estimated by a SolveTimeModel that learns from the observed solves. AVPPs whose abstraction misses the requested load
+ * by more than the tolerated error are flattened whenever the size permits, independent of the runtime.
+ */
+public class HybridPlanner {
+	private final AvppGraph root;
+	private final Map<AvppGraph, List<AvppGraph>> originalChildren;
+	private Set<AvppGraph> flattened;
+	// cut found by evaluate, not applied yet
+	private Map<AvppGraph, List<AvppGraph>> plannedTargets;
+	private Set<AvppGraph> plannedFlattened;
+
+	private final SolveTimeModel solveTimeModel;
+	private double solveOverhead = 200.0; // ms per additional AVPP and step
+	private double maxModelSize = 150.0;
+
+	// abstraction error per AVPP, relative to the requested load and smoothed
+	private final Map<String, Double> abstractionErrors;
+	private double maxAbstractionError = 0.05;
+	private double smoothing = 0.3;
+
+	/**
+	 * @param root
+	 *            hierarchy as created, with linked parents
+	 * @param solveTimeModel
+	 */
+	public HybridPlanner(AvppGraph root, SolveTimeModel solveTimeModel) {
+		this.root = root;
+		this.solveTimeModel = solveTimeModel;
+		this.originalChildren = new HashMap<AvppGraph, List<AvppGraph>>();
+		this.flattened = new HashSet<AvppGraph>();
+		this.abstractionErrors = new HashMap<String, Double>();
+		storeStructure(root);
+	}
+
+	private void storeStructure(AvppGraph node) {
+		if (node instanceof AvppLeafNode)
+			return;
+		originalChildren.put(node, new ArrayList<AvppGraph>(node.getChildren()));
+		for (AvppGraph child : node.getChildren()) {
+			storeStructure(child);
+		}
+	}
+
+	/**
+	 * Evaluates the cost model for the current estimates and moves the children accordingly
+	 *
+	 * @return true if the cut changed, then the affected AVPPs are marked dirty and have to be abstracted again
+	 */
+	public boolean plan() {
+		if (!evaluate())
+			return false;
+		apply();
+		return true;
+	}
+
+	/**
+	 * Evaluates the cost model for the current estimates without touching the hierarchy
+	 *
+	 * @return true if the cut differs from the current one, see apply
+	 */
+	public boolean evaluate() {
+		Map<AvppGraph, List<AvppGraph>> targets = new HashMap<AvppGraph, List<AvppGraph>>();
+		Set<AvppGraph> newFlattened = new HashSet<AvppGraph>();
+		cut(root, targets, newFlattened);
+		if (newFlattened.equals(flattened)) {
+			plannedTargets = null;
+			plannedFlattened = null;
+			return false;
+		}
+		plannedTargets = targets;
+		plannedFlattened = newFlattened;
+		return true;
+	}
+
+	/**
+	 * Moves the children according to the cut found by the last evaluate
+	 */
+	public void apply() {
+		if (plannedTargets == null)
+			return;
+		Map<AvppGraph, List<AvppGraph>> targets = plannedTargets;
+		flattened = plannedFlattened;
+		plannedTargets = null;
+		plannedFlattened = null;
+		for (AvppGraph node : originalChildren.keySet()) {
+			if (!targets.containsKey(node))
+				targets.put(node, new ArrayList<AvppGraph>(0)); // flattened, its children moved up
+		}
+		// first detach everything that moves, then attach, so no node has two parents in between
+		for (Entry<AvppGraph, List<AvppGraph>> target : targets.entrySet()) {
+			AvppGraph node = target.getKey();
+			for (AvppGraph child : new ArrayList<AvppGraph>(node.getChildren())) {
+				if (!target.getValue().contains(child))
+					node.removeChild(child);
+			}
+		}
+		for (Entry<AvppGraph, List<AvppGraph>> target : targets.entrySet()) {
+			AvppGraph node = target.getKey();
+			for (AvppGraph child : target.getValue()) {
+				if (!node.getChildren().contains(child))
+					node.addChild(child);
+			}
+		}
+	}
+
+	/**
+	 * Decides for the AVPP children of a node of the original hierarchy, postfix
+	 *
+	 * @param node
+	 * @param targets
+	 *            gets the children of every node that is solved on its own
+	 * @param newFlattened
+	 *            gets the flattened AVPPs
+	 * @return children of the node after flattening
+	 */
+	private List<AvppGraph> cut(AvppGraph node, Map<AvppGraph, List<AvppGraph>> targets, Set<AvppGraph> newFlattened) {
+		List<AvppGraph> children = new ArrayList<AvppGraph>();
+		final Map<AvppGraph, List<AvppGraph>> candidates = new HashMap<AvppGraph, List<AvppGraph>>();
+		final Map<AvppGraph, Double> candidateSizes = new HashMap<AvppGraph, Double>();
+		for (AvppGraph child : originalChildren.get(node)) {
+			children.add(child);
+			if (!(child instanceof AvppLeafNode)) {
+				List<AvppGraph> grandChildren = cut(child, targets, newFlattened);
+				candidates.put(child, grandChildren);
+				candidateSizes.put(child, solveTimeModel.getModelSize(grandChildren));
+			}
+		}
+
+		List<AvppGraph> order = new ArrayList<AvppGraph>(candidates.keySet());
+		Collections.sort(order, new Comparator<AvppGraph>() {
+			@Override
+			public int compare(AvppGraph o1, AvppGraph o2) {
+				return Double.compare(candidateSizes.get(o1), candidateSizes.get(o2));
+			}
+		});
+
+		double size = solveTimeModel.getModelSize(children);
+		for (AvppGraph candidate : order) {
+			double candidateSize = candidateSizes.get(candidate);
+			double mergedSize = size - solveTimeModel.getSize(candidate.getPowerPlant()) + candidateSize;
+			if (mergedSize > maxModelSize)
+				continue;
+			double separate = solveTimeModel.estimate(size) + solveTimeModel.estimate(candidateSize) + solveOverhead;
+			if (solveTimeModel.estimate(mergedSize) < separate || isInaccurate(candidate)) {
+				children.remove(candidate);
+				children.addAll(candidates.get(candidate));
+				newFlattened.add(candidate);
+				size = mergedSize;
+			}
+		}
+		for (AvppGraph candidate : candidates.keySet()) {
+			if (!newFlattened.contains(candidate))
+				targets.put(candidate, candidates.get(candidate));
+		}
+		if (node == root)
+			targets.put(root, children);
+		return children;
+	}
+
+	private boolean isInaccurate(AvppGraph avpp) {
+		Double error = abstractionErrors.get(avpp.getPowerPlant().getName());
+		return error != null && error > maxAbstractionError;
+	}
+
+	/**
+	 * @param node
+	 *            AVPP of the current cut
+	 * @return size of its model in the units of the solve time model
+	 */
+	public double getModelSize(AvppGraph node) {
+		return solveTimeModel.getModelSize(node.getChildren());
+	}
+
+	/**
+	 * Updates the smoothed abstraction errors from the loads requested from and delivered by the AVPPs in one step
+	 *
+	 * @param requested
+	 * @param delivered
+	 */
+	public void observeErrors(Map<String, Double> requested, Map<String, Double> delivered) {
+		for (Entry<String, Double> entry : requested.entrySet()) {
+			Double actual = delivered.get(entry.getKey());
+			if (actual == null)
+				continue;
+			double error = Math.abs(entry.getValue() - actual) / Math.max(1.0, Math.abs(entry.getValue()));
+			Double previous = abstractionErrors.get(entry.getKey());
+			abstractionErrors.put(entry.getKey(), previous == null ? error : smoothing * error + (1.0 - smoothing) * previous);
+		}
+	}
+
+	public int getFlattenedCount() {
+		return flattened.size();
+	}
+
+	public boolean isFlattened(AvppGraph avpp) {
+		return flattened.contains(avpp);
+	}
+
+	public double getSolveOverhead() {
+		return solveOverhead;
+	}
+
+	public void setSolveOverhead(double solveOverhead) {
+		this.solveOverhead = solveOverhead;
+	}
+
+	public double getMaxModelSize() {
+		return maxModelSize;
+	}
+
+	public void setMaxModelSize(double maxModelSize) {
+		this.maxModelSize = maxModelSize;
+	}
+
+	public double getMaxAbstractionError() {
+		return maxAbstractionError;
+	}
+
+	public void setMaxAbstractionError(double maxAbstractionError) {
+		this.maxAbstractionError = maxAbstractionError;
+	}
+}
@@ -1,5 +1,8 @@
 package de.uniaugsburg.isse.experiments;
 
+import java.util.Collection;
+
+import de.uniaugsburg.isse.solver.SolutionMatrix;
 import de.uniaugsburg.isse.solver.SolverFacade;
 
 public class MockupSolver implements SolverFacade {
@@ -44,6 +47,11 @@ public class MockupSolver implements SolverFacade {
 		return 0;
 	}
 
+	@Override
+	public SolutionMatrix getSolution(Collection<String> plants, int timeHorizon) {
+		return SolutionMatrix.read(this, plants, timeHorizon);
+	}
+
 	@Override
 	public void setSettingsFile(String settingsFile) {
 		// TODO Auto-generated method stub
@@ -56,6 +64,11 @@ public class MockupSolver implements SolverFacade {
 		
 	}
 
+	@Override
+	public void setMipGap(double relativeGap) {
+		// the mockup has no gap to close
+	}
+
 	public void cleanup() {
 	}
 
@@ -0,0 +1,102 @@
+package de.uniaugsburg.isse.experiments;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Future;
+
+import de.uniaugsburg.isse.powerplants.PowerPlantData;
+import de.uniaugsburg.isse.powerplants.PowerPlantState;
+import de.uniaugsburg.isse.solver.SolutionSnapshot;
+
+/**
+ * Model of an AVPP for the next time step that is solved ahead of time with the states and loads predicted from the
+ * solution of the current step. The solution may only be used if the actual inputs turn out to match the predicted
+ * ones: the initial production of every child (within a relative tolerance), the residual load (same tolerance) and
+ * the abstractions of the children (by equality).
+ */
+public class Speculation {
+	private final Map<String, Double> predictedPower;
+	private final Double[] predictedLoad;
+	private final Map<String, List<Object>> predictedAbstractions;
+	private Future<SolutionSnapshot> solution;
+
+	/**
+	 * @param predictedStates
+	 *            states of the children the model is solved with
+	 * @param predictedLoad
+	 *            residual load the model is solved with
+	 * @param children
+	 *            children as exported to the model
+	 */
+	public Speculation(Map<String, PowerPlantState> predictedStates, Double[] predictedLoad, Collection<PowerPlantData> children) {
+		this.predictedPower = new HashMap<String, Double>(predictedStates.size() * 2);
+		for (Entry<String, PowerPlantState> entry : predictedStates.entrySet()) {
+			predictedPower.put(entry.getKey(), entry.getValue().getPower().min);
+		}
+		this.predictedLoad = predictedLoad.clone();
+		this.predictedAbstractions = getAbstractions(children);
+	}
+
+	/**
+	 * Everything of a child that enters the model apart from its state: the temporal regions of AVPPs and the
+	 * (possibly re-sampled) functions
+	 */
+	private static Map<String, List<Object>> getAbstractions(Collection<PowerPlantData> children) {
+		Map<String, List<Object>> abstractions = new HashMap<String, List<Object>>(children.size() * 2);
+		for (PowerPlantData child : children) {
+			List<Object> abstraction = new ArrayList<Object>(4);
+			if (child.isAVPP()) {
+				abstraction.add(child.getAllFeasibleRegions());
+				abstraction.add(child.getPositiveDelta());
+				abstraction.add(child.getNegativeDelta());
+			}
+			abstraction.add(child.getCostFunction());
+			abstractions.put(child.getName(), abstraction);
+		}
+		return abstractions;
+	}
+
+	/**
+	 * @param states
+	 *            actual states of the children
+	 * @param load
+	 *            actual residual load
+	 * @param children
+	 * @param tolerance
+	 *            relative deviation of productions and loads
+	 * @return true if the speculative solution is valid for the actual model
+	 */
+	public boolean matches(Map<String, PowerPlantState> states, Double[] load, Collection<PowerPlantData> children, double tolerance) {
+		if (states.size() != predictedPower.size() || load.length != predictedLoad.length)
+			return false;
+		for (Entry<String, PowerPlantState> entry : states.entrySet()) {
+			Double predicted = predictedPower.get(entry.getKey());
+			if (predicted == null || !isClose(entry.getValue().getPower().min, predicted, tolerance))
+				return false;
+			// the model derives the running state from the initial production
+			if ((entry.getValue().getPower().min > 0) != (predicted > 0))
+				return false;
+		}
+		for (int t = 0; t < load.length; ++t) {
+			if (!isClose(load[t], predictedLoad[t], tolerance))
+				return false;
+		}
+		return predictedAbstractions.equals(getAbstractions(children));
+	}
+
+	private static boolean isClose(double actual, double predicted, double tolerance) {
+		return Math.abs(actual - predicted) <= tolerance * Math.max(1.0, Math.abs(predicted));
+	}
+
+	public Future<SolutionSnapshot> getSolution() {
+		return solution;
+	}
+
+	public void setSolution(Future<SolutionSnapshot> solution) {
+		this.solution = solution;
+	}
+}
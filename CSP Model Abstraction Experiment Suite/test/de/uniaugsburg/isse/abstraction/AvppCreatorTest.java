@@ -0,0 +1,108 @@
+package de.uniaugsburg.isse.abstraction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.uniaugsburg.isse.abstraction.types.Interval;
+import de.uniaugsburg.isse.powerplants.PowerPlantData;
+
+/**
+ * Runtime-aware hierarchies with the default solve time model
+ */
+public class AvppCreatorTest {
+
+	private static List<PowerPlantData> createPlants(int number, double min, String prefix) {
+		List<PowerPlantData> plants = new ArrayList<PowerPlantData>(number);
+		for (int i = 0; i < number; ++i) {
+			PowerPlantData pd = new PowerPlantData(prefix + i);
+			pd.setPowerBoundaries(new Interval<Double>(min, 10.0));
+			plants.add(pd);
+		}
+		return plants;
+	}
+
+	private static int countLeaves(AvppGraph node) {
+		if (node instanceof AvppLeafNode)
+			return 1;
+		int leaves = 0;
+		for (AvppGraph child : node.getChildren()) {
+			leaves += countLeaves(child);
+		}
+		return leaves;
+	}
+
+	private static int countOnOff(AvppGraph node) {
+		if (node instanceof AvppLeafNode)
+			return node.getPowerPlant().getPowerBoundaries().min > 0 ? 1 : 0;
+		int onOff = 0;
+		for (AvppGraph child : node.getChildren()) {
+			onOff += countOnOff(child);
+		}
+		return onOff;
+	}
+
+	private static double getPlantSize(AvppGraph node, SolveTimeModel model) {
+		if (node instanceof AvppLeafNode)
+			return model.getSize(node.getPowerPlant());
+		double size = 0.0;
+		for (AvppGraph child : node.getChildren()) {
+			size += getPlantSize(child, model);
+		}
+		return size;
+	}
+
+	@Test
+	public void testSmallSetStaysFlat() {
+		SolveTimeModel model = new SolveTimeModel();
+		AvppGraph root = new AvppCreator().createRuntimeAwareGraph(createPlants(10, 0.0, "p"), model);
+		Assert.assertTrue(root.isRoot());
+		Assert.assertTrue(root.getPowerPlant().isAVPP());
+		Assert.assertEquals(10, root.getChildren().size());
+		for (AvppGraph child : root.getChildren()) {
+			Assert.assertTrue(child instanceof AvppLeafNode);
+		}
+	}
+
+	@Test
+	public void testLargeSetSplitEvenly() {
+		SolveTimeModel model = new SolveTimeModel();
+		AvppGraph root = new AvppCreator().createRuntimeAwareGraph(createPlants(120, 0.0, "p"), model);
+		Assert.assertTrue(root.getChildren().size() > 1);
+		Assert.assertEquals(120, countLeaves(root));
+		int minLeaves = Integer.MAX_VALUE, maxLeaves = 0;
+		for (AvppGraph child : root.getChildren()) {
+			Assert.assertFalse(child instanceof AvppLeafNode);
+			int leaves = countLeaves(child);
+			minLeaves = Math.min(minLeaves, leaves);
+			maxLeaves = Math.max(maxLeaves, leaves);
+		}
+		Assert.assertTrue(maxLeaves - minLeaves <= 1);
+	}
+
+	@Test
+	public void testOnOffPlantsWeighMore() {
+		SolveTimeModel model = new SolveTimeModel();
+		// 20 plants that cannot be switched off fit into one model, 20 that can are split
+		AvppGraph plain = new AvppCreator().createRuntimeAwareGraph(createPlants(20, 0.0, "p"), model);
+		Assert.assertEquals(20, plain.getChildren().size());
+		AvppGraph onOff = new AvppCreator().createRuntimeAwareGraph(createPlants(20, 5.0, "p"), model);
+		Assert.assertEquals(2, onOff.getChildren().size());
+
+		// groups are balanced by size, not by the number of plants: 2 groups of 23.5 and 24
+		List<PowerPlantData> mixed = createPlants(5, 5.0, "onOff");
+		mixed.addAll(createPlants(40, 0.0, "p"));
+		AvppGraph root = new AvppCreator().createRuntimeAwareGraph(mixed, model);
+		Assert.assertEquals(2, root.getChildren().size());
+		AvppGraph first = root.getChildren().iterator().next();
+		AvppGraph second = root.getChildren().toArray(new AvppGraph[2])[1];
+		Assert.assertEquals(getPlantSize(first, model), getPlantSize(second, model), 0.5);
+		// the group with more on/off plants holds fewer plants
+		AvppGraph heavier = countOnOff(first) > countOnOff(second) ? first : second;
+		AvppGraph lighter = heavier == first ? second : first;
+		Assert.assertEquals(3, countOnOff(heavier));
+		Assert.assertTrue(countLeaves(heavier) < countLeaves(lighter));
+	}
+}
@@ -0,0 +1,59 @@
+package de.uniaugsburg.isse.abstraction;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.uniaugsburg.isse.abstraction.types.Interval;
+import de.uniaugsburg.isse.powerplants.PowerPlantData;
+
+public class SolveTimeModelTest {
+
+	/**
+	 * Durations of 2 * size^2 ms are fitted exactly once enough solves were observed
+	 */
+	@Test
+	public void testFit() {
+		SolveTimeModel model = new SolveTimeModel();
+		for (int size = 1; size < model.getMinObservations(); ++size) {
+			model.observe(size, 2.0 * size * size);
+		}
+		// not enough observations yet, defaults are kept
+		Assert.assertEquals(0.5, model.getCoefficient(), 0.0);
+		Assert.assertEquals(1.5, model.getExponent(), 0.0);
+
+		for (int size = model.getMinObservations(); size <= 20; ++size) {
+			model.observe(size, 2.0 * size * size);
+		}
+		Assert.assertEquals(20, model.getObservationCount());
+		Assert.assertEquals(2.0, model.getCoefficient(), 1.0e-6);
+		Assert.assertEquals(2.0, model.getExponent(), 1.0e-6);
+		Assert.assertEquals(2.0 * 30.0 * 30.0, model.estimate(30.0), 1.0e-3);
+	}
+
+	/**
+	 * Equal sizes only determine the level of the solve times
+	 */
+	@Test
+	public void testFitSameSize() {
+		SolveTimeModel model = new SolveTimeModel();
+		for (int i = 0; i < 10; ++i) {
+			model.observe(4.0, 16.0);
+		}
+		Assert.assertEquals(1.5, model.getExponent(), 0.0);
+		Assert.assertEquals(16.0, model.estimate(4.0), 1.0e-6);
+	}
+
+	@Test
+	public void testSize() {
+		SolveTimeModel model = new SolveTimeModel();
+		PowerPlantData concrete = new PowerPlantData("concrete");
+		concrete.setPowerBoundaries(new Interval<Double>(0.0, 10.0));
+		Assert.assertEquals(1.0, model.getSize(concrete), 0.0);
+		concrete.setPowerBoundaries(new Interval<Double>(5.0, 10.0));
+		Assert.assertEquals(1.5, model.getSize(concrete), 0.0);
+
+		PowerPlantData avpp = new PowerPlantData("avpp");
+		avpp.setAVPP(true);
+		Assert.assertEquals(model.getDefaultAvppSize(), model.getSize(avpp), 0.0);
+	}
+}
@@ -0,0 +1,81 @@
+package de.uniaugsburg.isse.experiments;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AbstractionErrorMonitorTest {
+
+	/**
+	 * An AVPP is only flagged after enough observations
+	 */
+	@Test
+	public void testMinObservations() {
+		AbstractionErrorMonitor monitor = new AbstractionErrorMonitor();
+		monitor.record("avpp", 100.0, 80.0, 10.0, 10.0);
+		monitor.record("avpp", 100.0, 80.0, 10.0, 10.0);
+		Assert.assertFalse(monitor.needsResampling("avpp"));
+		monitor.record("avpp", 100.0, 80.0, 10.0, 10.0);
+		Assert.assertTrue(monitor.needsResampling("avpp"));
+		Assert.assertFalse(monitor.needsResampling("other"));
+	}
+
+	/**
+	 * Load and cost errors are compared against the threshold
+	 */
+	@Test
+	public void testThreshold() {
+		AbstractionErrorMonitor monitor = new AbstractionErrorMonitor();
+		monitor.setErrorThreshold(0.1);
+		for (int i = 0; i < 3; ++i) {
+			monitor.record("accurate", 100.0, 95.0, 10.0, 10.0);
+			monitor.record("loads", 100.0, 85.0, 10.0, 10.0);
+			monitor.record("costs", 100.0, 100.0, 100.0, 80.0);
+		}
+		Assert.assertFalse(monitor.needsResampling("accurate"));
+		Assert.assertTrue(monitor.needsResampling("loads"));
+		Assert.assertTrue(monitor.needsResampling("costs"));
+		Assert.assertEquals(0.05, monitor.getLoadError("accurate"), 1.0e-9);
+		Assert.assertEquals(0.25, monitor.getCostError("costs"), 1.0e-9);
+	}
+
+	/**
+	 * Errors are smoothed exponentially, the first observation is taken as is
+	 */
+	@Test
+	public void testDecay() {
+		AbstractionErrorMonitor monitor = new AbstractionErrorMonitor();
+		monitor.record("avpp", 100.0, 80.0, 10.0, 10.0);
+		Assert.assertEquals(0.2, monitor.getLoadError("avpp"), 1.0e-9);
+		monitor.record("avpp", 100.0, 100.0, 10.0, 10.0);
+		Assert.assertEquals(0.14, monitor.getLoadError("avpp"), 1.0e-9);
+		monitor.record("avpp", 100.0, 100.0, 10.0, 10.0);
+		Assert.assertEquals(0.098, monitor.getLoadError("avpp"), 1.0e-9);
+		Assert.assertTrue(monitor.needsResampling("avpp"));
+
+		// an accurate abstraction decays below the threshold again
+		for (int i = 0; i < 3; ++i) {
+			monitor.record("avpp", 100.0, 100.0, 10.0, 10.0);
+		}
+		Assert.assertEquals(0.098 * 0.343, monitor.getLoadError("avpp"), 1.0e-9);
+		Assert.assertFalse(monitor.needsResampling("avpp"));
+	}
+
+	/**
+	 * A reset drops the history including the operating range
+	 */
+	@Test
+	public void testReset() {
+		AbstractionErrorMonitor monitor = new AbstractionErrorMonitor();
+		for (int i = 0; i < 3; ++i) {
+			monitor.record("avpp", 50.0 + i * 10.0, 40.0, 10.0, 10.0);
+		}
+		Assert.assertTrue(monitor.needsResampling("avpp"));
+		Assert.assertEquals(40.0, monitor.getMinOperatingLoad("avpp"), 1.0e-9);
+		Assert.assertEquals(70.0, monitor.getMaxOperatingLoad("avpp"), 1.0e-9);
+
+		monitor.reset("avpp");
+		Assert.assertFalse(monitor.needsResampling("avpp"));
+		Assert.assertEquals(0.0, monitor.getLoadError("avpp"), 0.0);
+		Assert.assertTrue(Double.isNaN(monitor.getMinOperatingLoad("avpp")));
+	}
+}
@@ -0,0 +1,107 @@
+package de.uniaugsburg.isse.experiments;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.uniaugsburg.isse.abstraction.AvppGraph;
+import de.uniaugsburg.isse.abstraction.AvppLeafNode;
+import de.uniaugsburg.isse.abstraction.types.Interval;
+import de.uniaugsburg.isse.experiments.DeadlineScheduler.Allocation;
+import de.uniaugsburg.isse.powerplants.PowerPlantData;
+
+public class DeadlineSchedulerTest {
+
+	private static AvppGraph createAvpp(String name, AvppGraph child) {
+		AvppGraph avpp = new AvppGraph();
+		PowerPlantData pd = new PowerPlantData(name);
+		pd.setAVPP(true);
+		avpp.setPowerPlant(pd);
+		avpp.addChild(child);
+		return avpp;
+	}
+
+	/**
+	 * root -> (a -> leaf), i.e., two AVPPs to be solved per step
+	 */
+	private static AvppGraph createHierarchy() {
+		PowerPlantData leaf = new PowerPlantData("leaf");
+		leaf.setPowerBoundaries(new Interval<Double>(0.0, 10.0));
+		return createAvpp("root", createAvpp("a", new AvppLeafNode(leaf)));
+	}
+
+	/**
+	 * Budgets are chosen with half a second to spare so that the time passing in the test does not change the limits
+	 */
+	@Test
+	public void testProportionalShare() {
+		DeadlineScheduler scheduler = new DeadlineScheduler(40500);
+		scheduler.setReserve(0.0);
+		scheduler.report("a", 3000.0);
+		scheduler.report("root", 1000.0);
+		scheduler.startStep(createHierarchy());
+
+		// a expects 3 of 4 seconds, hence 3/4 of the budget
+		Allocation a = scheduler.allocate("a");
+		Assert.assertFalse(a.isGreedy());
+		Assert.assertEquals(30, a.getTimeLimit());
+		Assert.assertEquals(0.0, a.getMipGap(), 0.0);
+
+		// the remaining budget is the root's alone
+		Allocation root = scheduler.allocate("root");
+		Assert.assertEquals(40, root.getTimeLimit());
+	}
+
+	@Test
+	public void testSmoothedDuration() {
+		DeadlineScheduler scheduler = new DeadlineScheduler(10000);
+		Assert.assertEquals(1000.0, scheduler.getExpectedDuration("a"), 0.0);
+		scheduler.report("a", 2000.0);
+		Assert.assertEquals(2000.0, scheduler.getExpectedDuration("a"), 1.0e-9);
+		scheduler.report("a", 1000.0);
+		Assert.assertEquals(1700.0, scheduler.getExpectedDuration("a"), 1.0e-9);
+	}
+
+	@Test
+	public void testGreedyBelowMinTimeLimit() {
+		// 90 % of 2 s shared by two AVPPs of 1 s each
+		DeadlineScheduler scheduler = new DeadlineScheduler(2000);
+		scheduler.startStep(createHierarchy());
+		Allocation a = scheduler.allocate("a");
+		Assert.assertTrue(a.isGreedy());
+		Assert.assertEquals(0, a.getTimeLimit());
+		Assert.assertEquals(scheduler.getMaxMipGap(), a.getMipGap(), 0.0);
+
+		// the root alone gets 1.8 s
+		Assert.assertEquals(1, scheduler.allocate("root").getTimeLimit());
+	}
+
+	@Test
+	public void testMaxTimeLimit() {
+		DeadlineScheduler scheduler = new DeadlineScheduler(3600 * 1000);
+		scheduler.startStep(createHierarchy());
+		Assert.assertEquals(60, scheduler.allocate("a").getTimeLimit());
+		scheduler.setMaxTimeLimit(120);
+		Assert.assertEquals(120, scheduler.allocate("root").getTimeLimit());
+	}
+
+	@Test
+	public void testMipGapGrowsWithOverload() {
+		double[] gaps = new double[3];
+		double[] durations = { 10000.0, 20000.0, 60000.0 };
+		for (int i = 0; i < durations.length; ++i) {
+			// both AVPPs expect the same, hence a gets half the budget, i.e., 5.25 s
+			DeadlineScheduler scheduler = new DeadlineScheduler(10500);
+			scheduler.setReserve(0.0);
+			scheduler.report("a", durations[i]);
+			scheduler.report("root", durations[i]);
+			scheduler.startStep(createHierarchy());
+			Allocation a = scheduler.allocate("a");
+			Assert.assertEquals(5, a.getTimeLimit());
+			gaps[i] = a.getMipGap();
+		}
+		Assert.assertEquals(0.01 * 10000.0 / 5250.0, gaps[0], 1.0e-4);
+		Assert.assertEquals(0.01 * 20000.0 / 5250.0, gaps[1], 1.0e-4);
+		Assert.assertTrue(gaps[0] < gaps[1]);
+		Assert.assertEquals(0.05, gaps[2], 0.0);
+	}
+}
@@ -0,0 +1,146 @@
+package de.uniaugsburg.isse.experiments;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.uniaugsburg.isse.abstraction.AvppGraph;
+import de.uniaugsburg.isse.abstraction.AvppLeafNode;
+import de.uniaugsburg.isse.abstraction.SolveTimeModel;
+import de.uniaugsburg.isse.abstraction.types.Interval;
+import de.uniaugsburg.isse.powerplants.PowerPlantData;
+
+public class HybridPlannerTest {
+
+	private static AvppGraph createAvpp(String name, int leaves) {
+		AvppGraph avpp = new AvppGraph();
+		PowerPlantData pd = new PowerPlantData(name);
+		pd.setAVPP(true);
+		avpp.setPowerPlant(pd);
+		for (int i = 0; i < leaves; ++i) {
+			avpp.getChildren().add(createLeaf(name + "_" + i));
+		}
+		return avpp;
+	}
+
+	private static AvppGraph createLeaf(String name) {
+		PowerPlantData pd = new PowerPlantData(name);
+		pd.setPowerBoundaries(new Interval<Double>(0.0, 10.0));
+		return new AvppLeafNode(pd);
+	}
+
+	private static void markClean(AvppGraph node) {
+		node.markClean();
+		for (AvppGraph child : node.getChildren()) {
+			markClean(child);
+		}
+	}
+
+	/**
+	 * root -> (small (3 leaves), large (12 leaves), leaf); with the default model, the root's model has size 2 * 8.5 +
+	 * 1 = 18 (AVPPs not sampled yet)
+	 */
+	private AvppGraph root, small, large;
+
+	private void createHierarchy() {
+		root = createAvpp("root", 0);
+		small = createAvpp("small", 3);
+		large = createAvpp("large", 12);
+		root.getChildren().add(small);
+		root.getChildren().add(large);
+		root.getChildren().add(createLeaf("leaf"));
+		root.linkParents();
+	}
+
+	@Test
+	public void testSmallSubtreesFlattened() {
+		createHierarchy();
+		HybridPlanner planner = new HybridPlanner(root, new SolveTimeModel());
+		Assert.assertTrue(planner.plan());
+		Assert.assertTrue(planner.isFlattened(small));
+		Assert.assertTrue(planner.isFlattened(large));
+		Assert.assertEquals(2, planner.getFlattenedCount());
+		Assert.assertEquals(16, root.getChildren().size());
+
+		// same estimates, same cut
+		Assert.assertFalse(planner.plan());
+	}
+
+	@Test
+	public void testMaxModelSize() {
+		createHierarchy();
+		HybridPlanner planner = new HybridPlanner(root, new SolveTimeModel());
+		// small first: 18 - 8.5 + 3 = 12.5, then large would give 12.5 - 8.5 + 12 = 16
+		planner.setMaxModelSize(13.0);
+		Assert.assertTrue(planner.plan());
+		Assert.assertTrue(planner.isFlattened(small));
+		Assert.assertFalse(planner.isFlattened(large));
+		Assert.assertTrue(planner.getModelSize(root) <= 13.0);
+
+		planner.setMaxModelSize(10.0);
+		Assert.assertTrue(planner.plan());
+		Assert.assertEquals(0, planner.getFlattenedCount());
+	}
+
+	@Test
+	public void testInaccurateAvppFlattened() {
+		createHierarchy();
+		// steep solve times without overhead: merging large (18 - 8.5 + 12) does not pay off
+		SolveTimeModel model = new SolveTimeModel();
+		model.setExponent(4.0);
+		HybridPlanner planner = new HybridPlanner(root, model);
+		planner.setSolveOverhead(0.0);
+		planner.plan();
+		Assert.assertFalse(planner.isFlattened(large));
+
+		// large delivers half of what it is asked for
+		planner.observeErrors(Collections.singletonMap("large", 100.0), Collections.singletonMap("large", 50.0));
+		Assert.assertTrue(planner.plan());
+		Assert.assertTrue(planner.isFlattened(large));
+
+		// small errors are tolerated, the smoothed error decays below the threshold
+		for (int i = 0; i < 20; ++i) {
+			planner.observeErrors(Collections.singletonMap("large", 100.0), Collections.singletonMap("large", 100.0));
+		}
+		Assert.assertTrue(planner.plan());
+		Assert.assertFalse(planner.isFlattened(large));
+	}
+
+	@Test
+	public void testApplyMovesChildren() {
+		createHierarchy();
+		HybridPlanner planner = new HybridPlanner(root, new SolveTimeModel());
+		planner.setMaxModelSize(13.0);
+		markClean(root);
+
+		Assert.assertTrue(planner.evaluate());
+		// evaluating does not touch the hierarchy
+		Assert.assertTrue(root.getChildren().contains(small));
+		Assert.assertEquals(3, small.getChildren().size());
+		Assert.assertFalse(root.isDirty());
+
+		planner.apply();
+		Assert.assertFalse(root.getChildren().contains(small));
+		Assert.assertTrue(root.getChildren().contains(large));
+		Assert.assertEquals(5, root.getChildren().size());
+		Assert.assertTrue(small.getChildren().isEmpty());
+		for (AvppGraph child : root.getChildren()) {
+			Assert.assertSame(root, child.getParent());
+		}
+		Assert.assertTrue(root.isDirty());
+		Assert.assertTrue(small.isDirty());
+		Assert.assertFalse(large.isDirty());
+
+		// undo: the original children are restored
+		markClean(root);
+		planner.setMaxModelSize(10.0);
+		Assert.assertTrue(planner.plan());
+		Assert.assertTrue(root.getChildren().contains(small));
+		Assert.assertEquals(3, small.getChildren().size());
+		Assert.assertSame(small, small.getChildren().iterator().next().getParent());
+		Assert.assertTrue(root.isDirty());
+		Assert.assertTrue(small.isDirty());
+		Assert.assertFalse(large.isDirty());
+	}
+}
@@ -0,0 +1,131 @@
+package de.uniaugsburg.isse.experiments;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uniaugsburg.isse.abstraction.AvppGraph;
+import de.uniaugsburg.isse.abstraction.AvppLeafNode;
+import de.uniaugsburg.isse.abstraction.GeneralAbstraction;
+import de.uniaugsburg.isse.abstraction.types.Interval;
+import de.uniaugsburg.isse.powerplants.PowerPlantData;
+import de.uniaugsburg.isse.timer.Timer;
+
+/**
+ * Dirty flags of AvppGraph: a change below an AVPP re-abstracts exactly the AVPPs on the path to the root
+ */
+public class IncrementalAbstractionTest {
+	private Experiment experiment;
+	private AvppGraph root, a, a1, b;
+	private AvppGraph leafA1, leafA, leafB;
+	private List<AvppGraph> avpps;
+
+	@Before
+	public void setUp() {
+		experiment = new Experiment();
+		experiment.setStatistics(new ExperimentStatistics());
+		experiment.setUseSamplingAbstraction(false);
+		experiment.timer = new Timer();
+
+		// root -> (a -> (a1 -> leafA1, leafA), b -> leafB)
+		leafA1 = new AvppLeafNode(createPlant("leafA1", 10.0, 20.0));
+		leafA = new AvppLeafNode(createPlant("leafA", 5.0, 10.0));
+		leafB = new AvppLeafNode(createPlant("leafB", 30.0, 40.0));
+		a1 = createAvpp("a1", leafA1);
+		a = createAvpp("a", a1, leafA);
+		b = createAvpp("b", leafB);
+		root = createAvpp("root", a, b);
+		root.linkParents();
+		avpps = Arrays.asList(root, a, a1, b);
+	}
+
+	private static PowerPlantData createPlant(String name, double min, double max) {
+		PowerPlantData pd = new PowerPlantData(name);
+		pd.setPowerBoundaries(new Interval<Double>(min, max));
+		return pd;
+	}
+
+	private static AvppGraph createAvpp(String name, AvppGraph... children) {
+		AvppGraph avpp = new AvppGraph();
+		PowerPlantData pd = new PowerPlantData(name);
+		pd.setAVPP(true);
+		avpp.setPowerPlant(pd);
+		avpp.getChildren().addAll(Arrays.asList(children));
+		return avpp;
+	}
+
+	private Map<AvppGraph, GeneralAbstraction> abstractions() {
+		Map<AvppGraph, GeneralAbstraction> abstractions = new HashMap<AvppGraph, GeneralAbstraction>();
+		for (AvppGraph avpp : avpps) {
+			abstractions.put(avpp, avpp.getGeneralAbstraction());
+		}
+		return abstractions;
+	}
+
+	private void assertReabstracted(Map<AvppGraph, GeneralAbstraction> before, AvppGraph... expected) {
+		List<AvppGraph> reabstracted = Arrays.asList(expected);
+		for (AvppGraph avpp : avpps) {
+			String name = avpp.getPowerPlant().getName();
+			Assert.assertEquals(name, reabstracted.contains(avpp), before.get(avpp) != avpp.getGeneralAbstraction());
+			Assert.assertFalse(name, avpp.isDirty());
+		}
+	}
+
+	@Test
+	public void testInitialAbstraction() {
+		for (AvppGraph avpp : avpps) {
+			Assert.assertTrue(avpp.isDirty());
+		}
+		Map<AvppGraph, GeneralAbstraction> before = abstractions();
+		experiment.performAbstraction(root);
+		assertReabstracted(before, root, a, a1, b);
+		Assert.assertFalse(leafA1.isDirty());
+	}
+
+	@Test
+	public void testDirtyLeafPropagatesToAncestors() {
+		experiment.performAbstraction(root);
+		long versionB = b.getVersion();
+		long versionRoot = root.getVersion();
+
+		leafA1.markDirty();
+		Assert.assertTrue(leafA1.isDirty());
+		Assert.assertTrue(a1.isDirty());
+		Assert.assertTrue(a.isDirty());
+		Assert.assertTrue(root.isDirty());
+		Assert.assertFalse(b.isDirty());
+		Assert.assertFalse(leafA.isDirty());
+		Assert.assertFalse(leafB.isDirty());
+		Assert.assertEquals(versionB, b.getVersion());
+		Assert.assertEquals(versionRoot + 1, root.getVersion());
+
+		Map<AvppGraph, GeneralAbstraction> before = abstractions();
+		experiment.performAbstraction(root);
+		assertReabstracted(before, a1, a, root);
+		Assert.assertFalse(leafA1.isDirty());
+
+		// nothing changed since
+		before = abstractions();
+		experiment.performAbstraction(root);
+		assertReabstracted(before);
+	}
+
+	@Test
+	public void testMovedChild() {
+		experiment.performAbstraction(root);
+
+		// leafA moves from a to b: both AVPPs and the root change, a1 does not
+		a.removeChild(leafA);
+		b.addChild(leafA);
+		Map<AvppGraph, GeneralAbstraction> before = abstractions();
+		experiment.performAbstraction(root);
+		assertReabstracted(before, a, b, root);
+		Assert.assertEquals(50.0, b.getPowerPlant().getFeasibleRegions().last().max, 0.0001);
+		Assert.assertEquals(20.0, a.getPowerPlant().getFeasibleRegions().last().max, 0.0001);
+	}
+}
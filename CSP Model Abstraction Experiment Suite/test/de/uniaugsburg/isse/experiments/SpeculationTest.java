@@ -0,0 +1,106 @@
+package de.uniaugsburg.isse.experiments;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uniaugsburg.isse.abstraction.types.Interval;
+import de.uniaugsburg.isse.powerplants.PowerPlantData;
+import de.uniaugsburg.isse.powerplants.PowerPlantState;
+
+public class SpeculationTest {
+	private static final double TOLERANCE = 0.01;
+
+	private PowerPlantData plant, avpp;
+	private List<PowerPlantData> children;
+	private Double[] load;
+	private Speculation speculation;
+
+	private static SortedSet<Interval<Double>> regions(double min, double max) {
+		SortedSet<Interval<Double>> regions = new TreeSet<Interval<Double>>();
+		regions.add(new Interval<Double>(min, max));
+		return regions;
+	}
+
+	private Map<String, PowerPlantState> states(double plantPower, double avppPower) {
+		Map<String, PowerPlantState> states = new HashMap<String, PowerPlantState>();
+		PowerPlantState plantState = new PowerPlantState();
+		plantState.setData(plant);
+		plantState.setPower(new Interval<Double>(plantPower));
+		states.put(plant.getName(), plantState);
+		PowerPlantState avppState = new PowerPlantState();
+		avppState.setData(avpp);
+		avppState.setPower(new Interval<Double>(avppPower));
+		states.put(avpp.getName(), avppState);
+		return states;
+	}
+
+	@Before
+	public void setUp() {
+		plant = new PowerPlantData("plant");
+		plant.setPowerBoundaries(new Interval<Double>(0.0, 100.0));
+		avpp = new PowerPlantData("avpp");
+		avpp.setAVPP(true);
+		List<SortedSet<Interval<Double>>> allRegions = new ArrayList<SortedSet<Interval<Double>>>();
+		allRegions.add(regions(10.0, 50.0));
+		allRegions.add(regions(5.0, 60.0));
+		avpp.setAllFeasibleRegions(allRegions);
+		children = Arrays.asList(plant, avpp);
+		load = new Double[] { 100.0, 110.0, 120.0 };
+		speculation = new Speculation(states(50.0, 0.005), load, children);
+	}
+
+	@Test
+	public void testMatches() {
+		Assert.assertTrue(speculation.matches(states(50.0, 0.005), load, children, TOLERANCE));
+		// within the tolerance
+		Assert.assertTrue(speculation.matches(states(50.4, 0.005), new Double[] { 100.5, 110.0, 119.0 }, children, TOLERANCE));
+		// the prediction is not affected by later changes of the inputs it was created from
+		load[0] = 200.0;
+		Assert.assertTrue(speculation.matches(states(50.0, 0.005), new Double[] { 100.0, 110.0, 120.0 }, children, TOLERANCE));
+	}
+
+	@Test
+	public void testRunningSignChanged() {
+		// 0.005 and 0 are close, but the AVPP would be off instead of running
+		Assert.assertFalse(speculation.matches(states(50.0, 0.0), load, children, TOLERANCE));
+	}
+
+	@Test
+	public void testStatesOutsideTolerance() {
+		Assert.assertFalse(speculation.matches(states(51.0, 0.005), load, children, TOLERANCE));
+		Map<String, PowerPlantState> fewer = states(50.0, 0.005);
+		fewer.remove(avpp.getName());
+		Assert.assertFalse(speculation.matches(fewer, load, children, TOLERANCE));
+	}
+
+	@Test
+	public void testLoadOutsideTolerance() {
+		Assert.assertFalse(speculation.matches(states(50.0, 0.005), new Double[] { 100.0, 112.0, 120.0 }, children, TOLERANCE));
+		Assert.assertFalse(speculation.matches(states(50.0, 0.005), new Double[] { 100.0, 110.0 }, children, TOLERANCE));
+	}
+
+	@Test
+	public void testChildAbstractionChanged() {
+		List<SortedSet<Interval<Double>>> allRegions = new ArrayList<SortedSet<Interval<Double>>>();
+		allRegions.add(regions(10.0, 50.0));
+		allRegions.add(regions(70.0, 80.0));
+		avpp.setAllFeasibleRegions(allRegions);
+		Assert.assertFalse(speculation.matches(states(50.0, 0.005), load, children, TOLERANCE));
+
+		// equal regions in a new list still match
+		allRegions = new ArrayList<SortedSet<Interval<Double>>>();
+		allRegions.add(regions(10.0, 50.0));
+		allRegions.add(regions(5.0, 60.0));
+		avpp.setAllFeasibleRegions(allRegions);
+		Assert.assertTrue(speculation.matches(states(50.0, 0.005), load, children, TOLERANCE));
+	}
+}
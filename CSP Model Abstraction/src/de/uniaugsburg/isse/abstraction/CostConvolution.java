@@ -0,0 +1,355 @@
+package de.uniaugsburg.isse.abstraction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import de.uniaugsburg.isse.abstraction.types.Interval;
+import de.uniaugsburg.isse.abstraction.types.PiecewiseLinearFunction;
+import de.uniaugsburg.isse.powerplants.PowerPlantData;
+import de.uniaugsburg.isse.util.PowerPlantUtil;
+
+/**
+ * Analytic cost abstraction of an AVPP: the minimal costs for a total output P are the infimal convolution of the
+ * children's cost functions restricted to their feasible regions, C(P) = min { sum f_i(x_i) | sum x_i = P, x_i in F_i }.
+ *
+ * Every child's costs are split into convex pieces (one per feasible region, more if the function is concave
+ * somewhere). Two convex pieces are convolved exactly by merging their segments in order of increasing slope, the
+ * non-convexities (on/off, holes, concave parts) are handled by enumerating all pairs of pieces and keeping the lower
+ * envelope. Children are added one after another; if the number of pairs exceeds the bound, the caller has to sample
+ * instead.
+ *
+ * The resulting function is exact at its breakpoints; where the minimum jumps down (e.g., a cheaper child can start),
+ * it is bridged linearly just like sampled functions are.
+ */
+public class CostConvolution {
+	private static final double EPSILON = 1.0e-6;
+
+	/**
+	 * Convex piece of a cost function on [x[0], x[n-1]] with non-decreasing slopes, possibly a single point
+	 */
+	private static class Piece {
+		private final double[] x;
+		private final double[] y;
+
+		public Piece(double[] x, double[] y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		public double getMin() {
+			return x[0];
+		}
+
+		public double getMax() {
+			return x[x.length - 1];
+		}
+
+		public boolean covers(double from, double to) {
+			return x[0] <= from + EPSILON && x[x.length - 1] >= to - EPSILON;
+		}
+
+		public double evaluate(double in) {
+			if (x.length == 1 || in <= x[0])
+				return y[0];
+			for (int i = 1; i < x.length; ++i) {
+				if (in <= x[i])
+					return y[i - 1] + (y[i] - y[i - 1]) * (in - x[i - 1]) / (x[i] - x[i - 1]);
+			}
+			return y[y.length - 1];
+		}
+	}
+
+	private final int maxCombinations;
+	private PiecewiseLinearFunction costFunction;
+	private int convexPieces;
+
+	/**
+	 * @param maxCombinations
+	 *            maximal number of pairs of convex pieces convolved when adding a child
+	 */
+	public CostConvolution(int maxCombinations) {
+		this.maxCombinations = maxCombinations;
+	}
+
+	/**
+	 * Convolves the costs of all children
+	 *
+	 * @param children
+	 * @return false if a child has no costs or the bound was exceeded, then there is no cost function
+	 */
+	public boolean perform(Collection<PowerPlantData> children) {
+		costFunction = null;
+		convexPieces = 0;
+
+		List<Piece> result = null;
+		Iterator<Collection<Interval<Double>>> regions = PowerPlantUtil.extractFromPlants(children).iterator();
+		for (PowerPlantData child : children) {
+			Collection<Interval<Double>> childRegions = regions.next();
+			PiecewiseLinearFunction childCosts = child.getCostFunction();
+			if (childCosts == null || childCosts.isEmpty())
+				return false;
+
+			List<Piece> pieces = getPieces(childCosts, childRegions);
+			if (result == null) {
+				result = pieces;
+				continue;
+			}
+			if ((long) result.size() * pieces.size() > maxCombinations)
+				return false;
+
+			List<Piece> candidates = new ArrayList<Piece>(result.size() * pieces.size());
+			for (Piece a : result) {
+				for (Piece b : pieces) {
+					candidates.add(convolve(a, b));
+				}
+			}
+			result = getLowerEnvelope(candidates);
+		}
+		if (result == null || result.isEmpty())
+			return false;
+
+		convexPieces = result.size();
+		return createCostFunction(result);
+	}
+
+	/**
+	 * Splits the costs on every feasible region into convex pieces
+	 *
+	 * @param costs
+	 * @param regions
+	 * @return
+	 */
+	private List<Piece> getPieces(PiecewiseLinearFunction costs, Collection<Interval<Double>> regions) {
+		List<Piece> pieces = new ArrayList<Piece>();
+		double[] breakpoints = costs.getBreakpoints(costs.getBPs());
+		for (Interval<Double> region : regions) {
+			List<Double> xs = new ArrayList<Double>();
+			List<Double> ys = new ArrayList<Double>();
+			xs.add(region.min);
+			for (double breakpoint : breakpoints) {
+				if (breakpoint > region.min + EPSILON && breakpoint < region.max - EPSILON)
+					xs.add(breakpoint);
+			}
+			if (region.max > region.min + EPSILON)
+				xs.add(region.max);
+			for (Double x : xs)
+				ys.add(costs.evaluate(x));
+			splitConvex(xs, ys, pieces);
+		}
+		return pieces;
+	}
+
+	/**
+	 * Starts a new piece at every point where the slope decreases
+	 *
+	 * @param xs
+	 * @param ys
+	 * @param pieces
+	 *            gets the convex pieces
+	 */
+	private void splitConvex(List<Double> xs, List<Double> ys, List<Piece> pieces) {
+		int start = 0;
+		for (int i = 2; i <= xs.size(); ++i) {
+			boolean split = i == xs.size();
+			if (!split) {
+				double previousSlope = (ys.get(i - 1) - ys.get(i - 2)) / (xs.get(i - 1) - xs.get(i - 2));
+				double slope = (ys.get(i) - ys.get(i - 1)) / (xs.get(i) - xs.get(i - 1));
+				split = slope < previousSlope - EPSILON;
+			}
+			if (split) {
+				pieces.add(toPiece(xs.subList(start, i), ys.subList(start, i)));
+				start = i - 1;
+			}
+		}
+		if (xs.size() == 1)
+			pieces.add(toPiece(xs, ys));
+	}
+
+	private Piece toPiece(List<Double> xs, List<Double> ys) {
+		double[] x = new double[xs.size()];
+		double[] y = new double[ys.size()];
+		for (int i = 0; i < x.length; ++i) {
+			x[i] = xs.get(i);
+			y[i] = ys.get(i);
+		}
+		return new Piece(x, y);
+	}
+
+	/**
+	 * Exact infimal convolution of two convex pieces: starting from both minima, take the segments in order of
+	 * increasing slope
+	 *
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	private Piece convolve(Piece a, Piece b) {
+		int n = a.x.length + b.x.length - 1;
+		double[] x = new double[n];
+		double[] y = new double[n];
+		x[0] = a.x[0] + b.x[0];
+		y[0] = a.y[0] + b.y[0];
+		int i = 1;
+		int j = 1;
+		for (int k = 1; k < n; ++k) {
+			boolean takeA;
+			if (i >= a.x.length)
+				takeA = false;
+			else if (j >= b.x.length)
+				takeA = true;
+			else
+				takeA = (a.y[i] - a.y[i - 1]) / (a.x[i] - a.x[i - 1]) <= (b.y[j] - b.y[j - 1]) / (b.x[j] - b.x[j - 1]);
+
+			if (takeA) {
+				x[k] = x[k - 1] + a.x[i] - a.x[i - 1];
+				y[k] = y[k - 1] + a.y[i] - a.y[i - 1];
+				++i;
+			} else {
+				x[k] = x[k - 1] + b.x[j] - b.x[j - 1];
+				y[k] = y[k - 1] + b.y[j] - b.y[j - 1];
+				++j;
+			}
+		}
+		return new Piece(x, y);
+	}
+
+	/**
+	 * Pointwise minimum of the candidates, split into convex pieces again. Between two consecutive breakpoints of all
+	 * candidates every candidate is linear, hence the minimum can only bend where two of them intersect.
+	 *
+	 * @param candidates
+	 * @return
+	 */
+	private List<Piece> getLowerEnvelope(List<Piece> candidates) {
+		TreeSet<Double> coordinates = new TreeSet<Double>();
+		for (Piece candidate : candidates) {
+			for (double x : candidate.x)
+				coordinates.add(x);
+		}
+		List<Double> points = new ArrayList<Double>(coordinates.size());
+		for (Double x : coordinates) {
+			if (points.isEmpty() || x > points.get(points.size() - 1) + EPSILON)
+				points.add(x);
+		}
+
+		List<Piece> envelope = new ArrayList<Piece>();
+		List<Double> xs = new ArrayList<Double>();
+		List<Double> ys = new ArrayList<Double>();
+		for (int p = 0; p < points.size(); ++p) {
+			double from = points.get(p);
+			addPoint(xs, ys, from, getMinimum(candidates, from));
+			if (p + 1 == points.size())
+				break;
+
+			double to = points.get(p + 1);
+			List<Piece> active = new ArrayList<Piece>();
+			for (Piece candidate : candidates) {
+				if (candidate.covers(from, to))
+					active.add(candidate);
+			}
+			if (active.isEmpty()) { // hole
+				splitConvex(xs, ys, envelope);
+				xs = new ArrayList<Double>();
+				ys = new ArrayList<Double>();
+				continue;
+			}
+
+			TreeSet<Double> crossings = new TreeSet<Double>();
+			for (int i = 0; i < active.size(); ++i) {
+				for (int j = i + 1; j < active.size(); ++j) {
+					double diffFrom = active.get(i).evaluate(from) - active.get(j).evaluate(from);
+					double diffTo = active.get(i).evaluate(to) - active.get(j).evaluate(to);
+					if (diffFrom * diffTo < 0)
+						crossings.add(from + (to - from) * diffFrom / (diffFrom - diffTo));
+				}
+			}
+			for (Double crossing : crossings) {
+				if (crossing > from + EPSILON && crossing < to - EPSILON)
+					addPoint(xs, ys, crossing, getMinimum(active, crossing));
+			}
+		}
+		splitConvex(xs, ys, envelope);
+		return envelope;
+	}
+
+	private double getMinimum(List<Piece> candidates, double x) {
+		double minimum = Double.POSITIVE_INFINITY;
+		for (Piece candidate : candidates) {
+			if (candidate.covers(x, x))
+				minimum = Math.min(minimum, candidate.evaluate(x));
+		}
+		return minimum;
+	}
+
+	/**
+	 * Appends a point to the current segment of the envelope, dropping the previous one if it is collinear
+	 */
+	private void addPoint(List<Double> xs, List<Double> ys, double x, double y) {
+		int n = xs.size();
+		if (n >= 2) {
+			double slope = (ys.get(n - 1) - ys.get(n - 2)) / (xs.get(n - 1) - xs.get(n - 2));
+			double nextSlope = (y - ys.get(n - 1)) / (x - xs.get(n - 1));
+			if (Math.abs(slope - nextSlope) < EPSILON) {
+				xs.remove(n - 1);
+				ys.remove(n - 1);
+			}
+		}
+		xs.add(x);
+		ys.add(y);
+	}
+
+	/**
+	 * Joins the pieces into one function, linear over holes just like the sampled functions
+	 *
+	 * @param pieces
+	 * @return
+	 */
+	private boolean createCostFunction(List<Piece> pieces) {
+		List<Double> xs = new ArrayList<Double>();
+		List<Double> ys = new ArrayList<Double>();
+		for (Piece piece : pieces) {
+			for (int i = 0; i < piece.x.length; ++i) {
+				int last = xs.size() - 1;
+				if (last >= 0 && piece.x[i] <= xs.get(last) + EPSILON) {
+					ys.set(last, Math.min(ys.get(last), piece.y[i])); // shared point of two pieces
+				} else {
+					xs.add(piece.x[i]);
+					ys.add(piece.y[i]);
+				}
+			}
+		}
+		if (xs.size() < 2)
+			return false;
+
+		double[] in = new double[xs.size()];
+		double[] out = new double[ys.size()];
+		for (int i = 0; i < in.length; ++i) {
+			in[i] = xs.get(i);
+			out[i] = ys.get(i);
+		}
+		costFunction = new PiecewiseLinearFunction();
+		costFunction.convert(in, out);
+		return true;
+	}
+
+	/**
+	 * @return the minimal costs of the AVPP depending on its total output, null if perform failed
+	 */
+	public PiecewiseLinearFunction getCostFunction() {
+		return costFunction;
+	}
+
+	/**
+	 * @return number of convex pieces of the resulting costs
+	 */
+	public int getConvexPieces() {
+		return convexPieces;
+	}
+
+	public int getMaxCombinations() {
+		return maxCombinations;
+	}
+}
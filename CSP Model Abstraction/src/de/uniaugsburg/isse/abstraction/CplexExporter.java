@@ -10,7 +10,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedSet;
 
+import de.uniaugsburg.isse.abstraction.types.ImmutableIntervalSet;
 import de.uniaugsburg.isse.abstraction.types.Interval;
+import de.uniaugsburg.isse.abstraction.types.TimeGrid;
 import de.uniaugsburg.isse.constraints.BoundsConstraint;
 import de.uniaugsburg.isse.constraints.Constraint;
 import de.uniaugsburg.isse.constraints.FixedChangeConstraint;
@@ -62,6 +64,9 @@ public class CplexExporter {
 	private int marketPrice = 9999; // costs per violation unit
 	private boolean useCostsInCents = true; // multiply cost slopes by 100 to use cents rather than euros for numerical
 											// precision
+	private boolean useWarmStart; // declares warmProduction/warmRunning as MIP start for rolling horizon solving
+	private TimeGrid timeGrid; // variable step lengths, null for uniform steps
+	private boolean usePresolve; // declares bounds and running states found by Presolve, needs initial state constraints
 
 	// use 1 for load assignment problem as transition from t=0 to t=1 is
 	// correctly done by temporal abstraction
@@ -83,6 +88,16 @@ public class CplexExporter {
 		sb.append("/* Generated CPLEX model */\n\n");
 		sb.append("// Prediction horizon\nint timeHorizon = " + getTimeHorizon() + ";\nrange TIMERANGE = 1 .. timeHorizon;\n");
 		sb.append("range COMPLETE_TIMERANGE = 0 .. timeHorizon;\nrange DEF_TIMERANGE = 0 .. timeHorizon+1;\n\n");
+		if (timeGrid != null) {
+			// stepLength[t] is the duration from t-1 to t
+			Collection<String> lengths = new ArrayList<String>(timeHorizon + 2);
+			for (int t = 0; t <= timeHorizon + 1; ++t) {
+				lengths.add(Double.toString(timeGrid.getStepLength(t)));
+			}
+			sb.append("float baseStepLength = " + timeGrid.getBaseLength() + ";\n");
+			sb.append("float stepLength[DEF_TIMERANGE] = [" + Utils.getSeparatedListOfStrings(lengths, ", ") + "];\n");
+			sb.append("float stepWeight[t in DEF_TIMERANGE] = stepLength[t] / baseStepLength;\n\n");
+		}
 	}
 
 	public String createModel(Collection<PowerPlantData> plants) {
@@ -131,8 +146,10 @@ public class CplexExporter {
 			if (useResidualLoad) {
 				sb.append("dexpr float violation[t in TIMERANGE] =  abs(totalProduction[t] - energyConsumption[t]);\n");
 				sb.append("float violationPrice = " + marketPrice + ";\n");
-				sb.append("dexpr float violationCosts = sum(t in TIMERANGE) violationPrice * violation[t];\n");
-				sb.append("dexpr float totalCosts = sum(t in TIMERANGE) totalCost[t];\n");
+				// coarse steps stand for several base steps
+				String weight = timeGrid != null ? "stepWeight[t] * " : "";
+				sb.append("dexpr float violationCosts = sum(t in TIMERANGE) " + weight + "violationPrice * violation[t];\n");
+				sb.append("dexpr float totalCosts = sum(t in TIMERANGE) " + weight + "totalCost[t];\n");
 				sb.append("dexpr float overallCosts = totalCosts + violationCosts;\n");
 			}
 		}
@@ -146,6 +163,15 @@ public class CplexExporter {
 			sb.append("PowerPlantState initialData[ControllablePlants] = ...;\n");
 			sb.append("float initProduction[p in ControllablePlants][DEF_TIMERANGE] = initialData[p].pInit;\n");
 			sb.append("int initRunning[p in ControllablePlants][DEF_TIMERANGE] = initialData[p].runningInit;\n");
+			if (useWarmStart) {
+				sb.append("float warmProduction[ControllablePlants][DEF_TIMERANGE] = ...;\n");
+				sb.append("int warmRunning[ControllablePlants][DEF_TIMERANGE] = ...;\n");
+			}
+			if (usePresolve) {
+				sb.append("float presolvedLower[ControllablePlants][COMPLETE_TIMERANGE] = ...;\n");
+				sb.append("float presolvedUpper[ControllablePlants][COMPLETE_TIMERANGE] = ...;\n");
+				sb.append("int presolvedRunning[ControllablePlants][COMPLETE_TIMERANGE] = ...; // 1 on, 0 off, -1 free\n");
+			}
 		}
 
 		if (anyAvpp(plants)) {
@@ -193,12 +219,219 @@ public class CplexExporter {
 			writeTotalUpperBound(sb);
 		}
 
-		if (useInitialStateConstraints)
+		if (useInitialStateConstraints) {
 			writeInitConstraints(sb);
+			if (usePresolve)
+				writePresolveConstraints(sb);
+		}
 		sb.append("\n}\n");
 		return sb.toString();
 	}
 
+	/**
+	 * Central model over classes of interchangeable plants: per class and step an integer number of running plants and
+	 * the total production instead of one binary and one production variable per plant. Costs are modelled by filling
+	 * the segments of the members' cost function (exact for convex costs), ramping uses the usual clustered bounds that
+	 * distinguish continuing, starting and stopping plants. Names of sets and variables follow createModel such that the
+	 * solver facade can read the solution; running holds the number of running plants.
+	 * 
+	 * @param classes
+	 * @return
+	 */
+	public String createAggregatedModel(List<PlantClass> classes) {
+		if (useSoftConstraints)
+			throw new RuntimeException("Soft constraints are not supported by the aggregated model");
+		StringBuilder sb = new StringBuilder();
+		writePreamble(sb);
+
+		sb.append("tuple PowerPlantState {	float pInit; int runningInit; };\n");
+
+		Collection<String> names = new ArrayList<String>(classes.size());
+		Collection<String> sizes = new ArrayList<String>(classes.size());
+		Collection<String> minPowers = new ArrayList<String>(classes.size());
+		int maxSegments = 1;
+		for (PlantClass plantClass : classes) {
+			names.add(plantClass.getName());
+			sizes.add(Integer.toString(plantClass.size()));
+			minPowers.add(Double.toString(plantClass.getMinPower()));
+			maxSegments = Math.max(maxSegments, plantClass.getCostSupportPoints().length - 1);
+		}
+
+		// segments of [minPower, maxPower] with linear costs per member
+		Collection<String> widths = new ArrayList<String>(classes.size());
+		Collection<String> slopes = new ArrayList<String>(classes.size());
+		Collection<String> costsAtMin = new ArrayList<String>(classes.size());
+		Collection<String> costsAtZero = new ArrayList<String>(classes.size());
+		double costFactor = useCostsInCents ? 100.0 : 1.0;
+		for (PlantClass plantClass : classes) {
+			double[] points = plantClass.getCostSupportPoints();
+			Collection<String> classWidths = new ArrayList<String>(maxSegments);
+			Collection<String> classSlopes = new ArrayList<String>(maxSegments);
+			for (int k = 0; k < maxSegments; ++k) {
+				if (k + 1 < points.length) {
+					double width = points[k + 1] - points[k];
+					classWidths.add(Double.toString(width));
+					if (useCosts)
+						classSlopes.add(Double.toString(costFactor * (plantClass.getCosts(points[k + 1]) - plantClass.getCosts(points[k])) / width));
+				} else {
+					classWidths.add("0.0");
+					classSlopes.add("0.0");
+				}
+			}
+			widths.add("[" + Utils.getSeparatedListOfStrings(classWidths, ", ") + "]");
+			if (useCosts) {
+				slopes.add("[" + Utils.getSeparatedListOfStrings(classSlopes, ", ") + "]");
+				costsAtMin.add(Double.toString(costFactor * plantClass.getCosts(plantClass.getMinPower())));
+				costsAtZero.add(Double.toString(costFactor * plantClass.getCosts(0.0)));
+			}
+		}
+
+		sb.append("{string} ControllablePlants = " + getStringSet(names) + "; // classes of interchangeable plants\n");
+		sb.append("int classSize[ControllablePlants] = [" + Utils.getSeparatedListOfStrings(sizes, ", ") + "];\n");
+		sb.append("float minPower[ControllablePlants] = [" + Utils.getSeparatedListOfStrings(minPowers, ", ") + "];\n");
+		sb.append("range SEGMENTS = 1 .. " + maxSegments + ";\n");
+		sb.append("float segmentWidth[ControllablePlants][SEGMENTS] = [" + Utils.getSeparatedListOfStrings(widths, ", ") + "];\n");
+
+		sb.append("dvar int+ " + runningVar + "[ControllablePlants][DEF_TIMERANGE]; // number of running plants\n");
+		sb.append("dvar float+ runningUnits[ControllablePlants][DEF_TIMERANGE]; // same as running, readable as numerical variable\n");
+		sb.append("dvar int+ startUps[ControllablePlants][DEF_TIMERANGE];\n");
+		sb.append("dvar int+ shutDowns[ControllablePlants][DEF_TIMERANGE];\n");
+		sb.append("dvar float+ " + powerVar + "[ControllablePlants][DEF_TIMERANGE];\n");
+		sb.append("dvar float+ segmentProduction[ControllablePlants][DEF_TIMERANGE][SEGMENTS];\n");
+		sb.append("dexpr float totalProduction[t in DEF_TIMERANGE] = sum(p in ControllablePlants) " + powerVar + "[p][t] ;\n");
+
+		if (useResidualLoad)
+			sb.append("\nfloat energyConsumption[TIMERANGE] = ...;\n\n");
+
+		if (useCosts) {
+			sb.append("float segmentSlope[ControllablePlants][SEGMENTS] = [" + Utils.getSeparatedListOfStrings(slopes, ", ") + "];\n");
+			sb.append("float costAtMin[ControllablePlants] = [" + Utils.getSeparatedListOfStrings(costsAtMin, ", ") + "];\n");
+			sb.append("float costAtZero[ControllablePlants] = [" + Utils.getSeparatedListOfStrings(costsAtZero, ", ") + "];\n");
+			sb.append("dexpr float totalCost[t in DEF_TIMERANGE] = sum(p in ControllablePlants) (costAtZero[p] * (classSize[p] - " + runningVar
+					+ "[p][t]) + costAtMin[p] * " + runningVar + "[p][t] + sum(k in SEGMENTS) segmentSlope[p][k] * segmentProduction[p][t][k]);\n\n");
+
+			if (useResidualLoad) {
+				sb.append("dexpr float violation[t in TIMERANGE] =  abs(totalProduction[t] - energyConsumption[t]);\n");
+				sb.append("float violationPrice = " + marketPrice + ";\n");
+				String weight = timeGrid != null ? "stepWeight[t] * " : "";
+				sb.append("dexpr float violationCosts = sum(t in TIMERANGE) " + weight + "violationPrice * violation[t];\n");
+				sb.append("dexpr float totalCosts = sum(t in TIMERANGE) " + weight + "totalCost[t];\n");
+				sb.append("dexpr float overallCosts = totalCosts + violationCosts;\n");
+			}
+		}
+
+		if (!additionalDecExprs.isEmpty()) {
+			for (String dexpr : additionalDecExprs) {
+				sb.append("dexpr float " + dexpr + ";\n");
+			}
+		}
+		if (useInitialStateConstraints) {
+			sb.append("PowerPlantState initialData[ControllablePlants] = ...;\n");
+			sb.append("float initProduction[p in ControllablePlants][DEF_TIMERANGE] = initialData[p].pInit;\n");
+			sb.append("int initRunning[p in ControllablePlants][DEF_TIMERANGE] = initialData[p].runningInit;\n");
+		}
+
+		sb.append(optimizationFunction + "\n");
+		sb.append("\nsubject to {\n");
+
+		sb.append("forall(p in ControllablePlants, t in DEF_TIMERANGE) {\n");
+		sb.append("  " + runningVar + "[p][t] <= classSize[p];\n");
+		sb.append("  runningUnits[p][t] == " + runningVar + "[p][t];\n");
+		sb.append("  " + powerVar + "[p][t] == minPower[p] * " + runningVar + "[p][t] + sum(k in SEGMENTS) segmentProduction[p][t][k];\n");
+		sb.append("  forall(k in SEGMENTS) segmentProduction[p][t][k] <= segmentWidth[p][k] * " + runningVar + "[p][t];\n");
+		sb.append("}\n");
+		// plants continuing from t to t+1: running[t+1] - startUps[t+1] == running[t] - shutDowns[t+1]
+		sb.append("forall(p in ControllablePlants, t in COMPLETE_TIMERANGE) {\n");
+		sb.append("  " + runningVar + "[p][t+1] - startUps[p][t+1] == " + runningVar + "[p][t] - shutDowns[p][t+1];\n");
+		sb.append("  startUps[p][t+1] <= classSize[p] - " + runningVar + "[p][t];\n");
+		sb.append("  shutDowns[p][t+1] <= " + runningVar + "[p][t];\n");
+		sb.append("}\n");
+
+		sb.append("forall(t in COMPLETE_TIMERANGE) {\n");
+		for (PlantClass plantClass : classes) {
+			appendAggregatedConstraints(plantClass, sb);
+		}
+		sb.append("}\n");
+
+		if (!constraints.isEmpty()) {
+			for (String constraint : constraints) {
+				sb.append(constraint + "\n");
+			}
+		}
+
+		if (maxProduction > 0.0) {
+			writeTotalUpperBound(sb);
+		}
+
+		if (useInitialStateConstraints) {
+			sb.append("forall(p in ControllablePlants) {\n");
+			sb.append("  " + powerVar + "[p][0] == initialData[p].pInit;\n");
+			sb.append("  " + runningVar + "[p][0] == initialData[p].runningInit;\n");
+			sb.append("}\n");
+		}
+		sb.append("\n}\n");
+		return sb.toString();
+	}
+
+	private void appendAggregatedConstraints(PlantClass plantClass, StringBuilder sb) {
+		String ident = "[\"" + plantClass.getName() + "\"]";
+		String pred = powerVar + ident + "[t]";
+		String succ = powerVar + ident + "[t+1]";
+		String continuing = "(" + runningVar + ident + "[t] - shutDowns" + ident + "[t+1])";
+		String started = "startUps" + ident + "[t+1]";
+		String stopped = "shutDowns" + ident + "[t+1]";
+		double minPower = plantClass.getMinPower();
+		double maxPower = plantClass.getMaxPower();
+		// what a starting plant can produce after and a stopping plant before the switch
+		double startPower = plantClass.isStartWithMin() ? minPower : maxPower;
+		double stopPower = plantClass.isGraduallyOff() ? minPower : maxPower;
+
+		if (plantClass.isForceOn())
+			sb.append("  " + runningVar + ident + "[t] == classSize" + ident + ";\n");
+		if (plantClass.isStartWithMin())
+			sb.append("  " + succ + " <= (" + runningVar + ident + "[t+1] - " + started + ") * " + maxPower + " + " + started + " * " + minPower + ";\n");
+		if (plantClass.isGraduallyOff())
+			sb.append("  " + pred + " <= " + continuing + " * " + maxPower + " + " + stopped + " * " + minPower + ";\n");
+
+		// continuing plants change by at most their limit, starting and stopping ones by their output
+		Collection<String> changeLimits = new ArrayList<String>(2);
+		if (!Double.isNaN(plantClass.getMaxChange())) {
+			String maxChange = Double.toString(plantClass.getMaxChange());
+			if (timeGrid != null)
+				maxChange = "stepWeight[t+1] * " + maxChange;
+			changeLimits.add(continuing + " * " + maxChange);
+		}
+		if (!Double.isNaN(plantClass.getRateOfChange()))
+			changeLimits.add(plantClass.getRateOfChange() + " * " + pred);
+
+		for (String changeLimit : changeLimits) {
+			sb.append("  " + succ + " - " + pred + " <= " + changeLimit + " + " + started + " * " + startPower + " - " + stopped + " * " + minPower + ";\n");
+			sb.append("  " + pred + " - " + succ + " <= " + changeLimit + " + " + stopped + " * " + stopPower + " - " + started + " * " + minPower + ";\n");
+		}
+	}
+
+	/**
+	 * Initial state of the aggregated model: number of running members and their total production per class
+	 * 
+	 * @param classes
+	 * @param states
+	 * @return
+	 */
+	public String createAggregatedInitStateData(List<PlantClass> classes, Map<String, PowerPlantState> states) {
+		StringBuilder sb = new StringBuilder("initialData = #[\n");
+		boolean first = true;
+		for (PlantClass plantClass : classes) {
+			if (!first)
+				sb.append(",\n");
+			else
+				first = false;
+			sb.append("\"" + plantClass.getName() + "\" : #< pInit : " + plantClass.getProduction(states) + ",\n");
+			sb.append("runningInit: " + plantClass.getRunningMembers(states) + ">#");
+		}
+		sb.append("]#;\n");
+		return sb.toString();
+	}
+
 	private Collection<Constraint> getAllSoftConstraints(Collection<PowerPlantData> plants) {
 		Collection<Constraint> allSoftConstraints = new ArrayList<Constraint>(plants.size() * 3);
 		for (PowerPlantData pd : plants) {
@@ -284,7 +517,9 @@ public class CplexExporter {
 		}
 		if (useSamplingAbstraction) {
 			String usedRange = useCompleteRange ? "COMPLETE_TIMERANGE" : "CONSTRAINED_TIMERANGE";
-			sb.append("forall(p in Avpps, t in " + usedRange + ") {\n");
+			// sampled delta functions describe a single base step, coarser steps are bounded by temporal abstraction
+			String fineSteps = timeGrid != null ? " : stepLength[t+1] <= baseStepLength" : "";
+			sb.append("forall(p in Avpps, t in " + usedRange + fineSteps + ") {\n");
 			sb.append("  energyProduction[p][t+1] >= energyProduction[p][t] => (energyProduction[p][t+1] <= deltaPlus[p](energyProduction[p][t]));\n");
 			sb.append("  energyProduction[p][t+1] <= energyProduction[p][t] => (energyProduction[p][t+1] >= deltaNeg[p](energyProduction[p][t]));\n");
 			sb.append("}\n");
@@ -298,6 +533,32 @@ public class CplexExporter {
 		sb.append("}\n");
 	}
 
+	private void writePresolveConstraints(StringBuilder sb) {
+		sb.append("forall(p in ControllablePlants, t in COMPLETE_TIMERANGE) {\n");
+		sb.append("  " + powerVar + "[p][t] >= presolvedLower[p][t];\n");
+		sb.append("  " + powerVar + "[p][t] <= presolvedUpper[p][t];\n");
+		sb.append("}\n");
+		sb.append("forall(p in ControllablePlants, t in COMPLETE_TIMERANGE : presolvedRunning[p][t] != " + Presolve.FREE + ") {\n");
+		sb.append("  " + runningVar + "[p][t] == (presolvedRunning[p][t] == " + Presolve.ON + ");\n");
+		sb.append("}\n");
+	}
+
+	/**
+	 * Condition under which a hard constraint is still needed at step t, empty if it always is
+	 * 
+	 * @param c
+	 * @param pd
+	 * @return
+	 */
+	private String getPresolveGuard(Constraint c, PowerPlantData pd) {
+		if (!usePresolve || !useInitialStateConstraints)
+			return "";
+		int redundantStatus = Presolve.getRedundantStatus(c);
+		if (redundantStatus == Presolve.FREE)
+			return "";
+		return "if (presolvedRunning[\"" + pd.getName() + "\"][t] != " + redundantStatus + ") ";
+	}
+
 	private void writeAbstractionVariables(StringBuilder sb) {
 		// General and temporal abstraction
 		sb.append("range CONSTRAINED_TIMERANGE = 1 .. timeHorizon;\n");
@@ -388,11 +649,19 @@ public class CplexExporter {
 			String energyPred = "energyProduction[\"" + pd.getName() + "\"][t]";
 			String energySucc = "energyProduction[\"" + pd.getName() + "\"][t+1]";
 
+			// the maximal change is given per base step
+			String maxChange = Double.toString(fcc.getMaxProductionChange());
+			if (timeGrid != null)
+				maxChange = "stepWeight[t+1] * " + maxChange;
 			String fixedChangeString = "running[\"" + pd.getName() + "\"][t] == true && running[\"" + pd.getName() + "\"][t+1] == true => abs(" + energySucc
-					+ " - " + energyPred + ") <= " + fcc.getMaxProductionChange();
+					+ " - " + energyPred + ") <= " + maxChange;
 			constraintString = fixedChangeString;
 		} else if (c instanceof ForceOnConstraint) {
-			sb.append("running[\"" + pd.getName() + "\"][t] == true;\n");
+			String guard = getPresolveGuard(c, pd);
+			if (guard.isEmpty())
+				sb.append("running[\"" + pd.getName() + "\"][t] == true;\n");
+			else
+				sb.append(guard + "{ running[\"" + pd.getName() + "\"][t] == true; }\n");
 		} else if (c instanceof StopTimeConstraint) {
 
 		} else if (c instanceof StartWithMinConstraint) {
@@ -413,7 +682,12 @@ public class CplexExporter {
 					+ "));\n";
 			sb.append(s);
 		} else {
-			sb.append(constraintString + ";\n");
+			// skipped where presolve fixed the running state such that the constraint cannot become active
+			String guard = getPresolveGuard(c, pd);
+			if (guard.isEmpty())
+				sb.append(constraintString + ";\n");
+			else
+				sb.append(guard + "{ " + constraintString + "; }\n");
 		}
 	}
 
@@ -447,6 +721,20 @@ public class CplexExporter {
 		return sb.toString();
 	}
 
+	public TimeGrid getTimeGrid() {
+		return timeGrid;
+	}
+
+	/**
+	 * Exports a model with variable step lengths; the grid has to have timeHorizon steps
+	 * 
+	 * @param timeGrid
+	 *            null for uniform steps
+	 */
+	public void setTimeGrid(TimeGrid timeGrid) {
+		this.timeGrid = timeGrid;
+	}
+
 	public int getTimeHorizon() {
 		return timeHorizon;
 	}
@@ -544,21 +832,84 @@ public class CplexExporter {
 		return sb.toString();
 	}
 
+	/**
+	 * Writes the MIP start for a rolling horizon step; plants without a stored (shifted) solution keep their initial
+	 * state over the whole horizon
+	 * 
+	 * @param states
+	 *            current states of all plants in the model
+	 * @param production
+	 *            shifted production values indexed by DEF_TIMERANGE
+	 * @param running
+	 *            shifted running values indexed by DEF_TIMERANGE
+	 * @return
+	 */
+	public String createWarmStartData(Map<String, PowerPlantState> states, Map<String, double[]> production, Map<String, boolean[]> running) {
+		Map<String, String> productionItems = new HashMap<String, String>(states.size() * 2);
+		Map<String, String> runningItems = new HashMap<String, String>(states.size() * 2);
+		int length = timeHorizon + 2;
+
+		for (Entry<String, PowerPlantState> entry : states.entrySet()) {
+			double[] productionValues = production.get(entry.getKey());
+			boolean[] runningValues = running.get(entry.getKey());
+			double initProduction = entry.getValue().getPower().min;
+
+			Collection<String> productionStrings = new ArrayList<String>(length);
+			Collection<String> runningStrings = new ArrayList<String>(length);
+			for (int t = 0; t < length; ++t) {
+				if (productionValues != null && runningValues != null && t < productionValues.length && t < runningValues.length) {
+					productionStrings.add(Double.toString(productionValues[t]));
+					runningStrings.add(runningValues[t] ? "1" : "0");
+				} else {
+					productionStrings.add(Double.toString(initProduction));
+					runningStrings.add(initProduction > 0 ? "1" : "0");
+				}
+			}
+			productionItems.put(entry.getKey(), "[" + Utils.getSeparatedListOfStrings(productionStrings, ", ") + "]");
+			runningItems.put(entry.getKey(), "[" + Utils.getSeparatedListOfStrings(runningStrings, ", ") + "]");
+		}
+		return writeMap("warmProduction", productionItems) + writeMap("warmRunning", runningItems);
+	}
+
+	/**
+	 * Writes the bounds and running states found by presolve for steps 0 .. T
+	 * 
+	 * @param presolve
+	 *            performed on the states of all plants in the model
+	 * @return
+	 */
+	public String createPresolveData(Presolve presolve) {
+		Map<String, String> lowerItems = new HashMap<String, String>(presolve.getLowerBounds().size() * 2);
+		Map<String, String> upperItems = new HashMap<String, String>(presolve.getLowerBounds().size() * 2);
+		Map<String, String> runningItems = new HashMap<String, String>(presolve.getLowerBounds().size() * 2);
+
+		for (Entry<String, double[]> entry : presolve.getLowerBounds().entrySet()) {
+			double[] upper = presolve.getUpperBounds().get(entry.getKey());
+			int[] running = presolve.getRunningStatus().get(entry.getKey());
+			Collection<String> lowerStrings = new ArrayList<String>(timeHorizon + 1);
+			Collection<String> upperStrings = new ArrayList<String>(timeHorizon + 1);
+			Collection<String> runningStrings = new ArrayList<String>(timeHorizon + 1);
+			for (int t = 0; t <= timeHorizon; ++t) {
+				lowerStrings.add(Double.toString(entry.getValue()[t]));
+				upperStrings.add(Double.toString(upper[t]));
+				runningStrings.add(Integer.toString(running[t]));
+			}
+			lowerItems.put(entry.getKey(), "[" + Utils.getSeparatedListOfStrings(lowerStrings, ", ") + "]");
+			upperItems.put(entry.getKey(), "[" + Utils.getSeparatedListOfStrings(upperStrings, ", ") + "]");
+			runningItems.put(entry.getKey(), "[" + Utils.getSeparatedListOfStrings(runningStrings, ", ") + "]");
+		}
+		return writeMap("presolvedLower", lowerItems) + writeMap("presolvedUpper", upperItems) + writeMap("presolvedRunning", runningItems);
+	}
+
 	public String createResidualLoad(Double[] residualLoadParam) {
 		String export = "energyConsumption = " + exportLoads(residualLoadParam) + ";\n";
 		return export;
 	}
 
 	private String writeIntervalSet(Collection<Interval<Double>> intervalSet) {
-		StringBuilder newEntry = new StringBuilder();
-		newEntry.append("{\n");
-		Collection<String> intervalStrings = new ArrayList<String>(intervalSet.size());
-		for (Interval<Double> interval : intervalSet) {
-			intervalStrings.add(" <" + interval.min + "," + interval.max + ">");
-		}
-		newEntry.append(Utils.getSeparatedListOfStrings(intervalStrings, ",\n"));
-		newEntry.append(" \n}\n");
-		return newEntry.toString();
+		if (intervalSet instanceof ImmutableIntervalSet)
+			return ((ImmutableIntervalSet) intervalSet).getDataText();
+		return ImmutableIntervalSet.renderDataText(intervalSet);
 	}
 
 	public String writeIntervalSets(String name, Map<String, Collection<Interval<Double>>> holesMap) {
@@ -699,7 +1050,7 @@ public class CplexExporter {
 						Interval<Double> avppBounds = new Interval<Double>(feasRegion.first().min, feasRegion.last().max);
 						Collection<Interval<Double>> singletonSet = new ArrayList<Interval<Double>>(1);
 						singletonSet.add(avppBounds);
-						singletons.add(singletonSet);
+						singletons.add(ImmutableIntervalSet.valueOf(singletonSet));
 
 					}
 					allRegions.put(child.getName(), singletons);
@@ -865,4 +1216,20 @@ public class CplexExporter {
 	public void setUseCostsInCents(boolean useCostsInCents) {
 		this.useCostsInCents = useCostsInCents;
 	}
+
+	public boolean isUsePresolve() {
+		return usePresolve;
+	}
+
+	public void setUsePresolve(boolean usePresolve) {
+		this.usePresolve = usePresolve;
+	}
+
+	public boolean isUseWarmStart() {
+		return useWarmStart;
+	}
+
+	public void setUseWarmStart(boolean useWarmStart) {
+		this.useWarmStart = useWarmStart;
+	}
 }
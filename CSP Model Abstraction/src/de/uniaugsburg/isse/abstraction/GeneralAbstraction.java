@@ -3,7 +3,9 @@ package de.uniaugsburg.isse.abstraction;
 import java.util.Collection;
 import java.util.SortedSet;
 
+import de.uniaugsburg.isse.abstraction.merging.HoleCoarsening;
 import de.uniaugsburg.isse.abstraction.merging.HoleDetection;
+import de.uniaugsburg.isse.abstraction.types.ImmutableIntervalSet;
 import de.uniaugsburg.isse.abstraction.types.Interval;
 import de.uniaugsburg.isse.powerplants.PowerPlantData;
 import de.uniaugsburg.isse.util.PowerPlantUtil;
@@ -18,6 +20,8 @@ public class GeneralAbstraction {
 	protected Collection<PowerPlantData> powerPlants;
 	protected SortedSet<Interval<Double>> generalFeasibleRegions;
 	protected Collection<Interval<Double>> generalHoles;
+	protected HoleCoarsening coarsening; // null keeps the exact regions
+	protected HoleCoarsening.Approximation approximation; // null if the regions are exact
 
 	public final void perform() {
 		performNew();
@@ -30,6 +34,16 @@ public class GeneralAbstraction {
 		// generalHoles = hd.detectSupplyHoles(plantsFeasibleRegions);
 		generalHoles = hd.detectSupplyHolesNew(plantsFeasibleRegions);
 		generalFeasibleRegions = hd.getIntervalList();
+
+		if (coarsening != null) {
+			generalFeasibleRegions = coarsening.coarsen(generalFeasibleRegions);
+			if (coarsening.isCoarsened()) {
+				generalHoles = HoleCoarsening.getHoles(generalFeasibleRegions);
+				approximation = coarsening.getApproximation();
+			}
+		}
+		generalFeasibleRegions = ImmutableIntervalSet.valueOf(generalFeasibleRegions);
+		generalHoles = ImmutableIntervalSet.valueOf(generalHoles);
 	}
 
 	public SortedSet<Interval<Double>> getFeasibleRegions() {
@@ -40,6 +54,22 @@ public class GeneralAbstraction {
 		return generalHoles;
 	}
 
+	public HoleCoarsening getCoarsening() {
+		return coarsening;
+	}
+
+	public void setCoarsening(HoleCoarsening coarsening) {
+		this.coarsening = coarsening;
+	}
+
+	/**
+	 * @return whether coarsening made the regions a superset (optimistic) or subset (conservative) of the exact ones,
+	 *         null if they are exact
+	 */
+	public HoleCoarsening.Approximation getApproximation() {
+		return approximation;
+	}
+
 	public Collection<PowerPlantData> getPowerPlants() {
 		return powerPlants;
 	}
@@ -0,0 +1,298 @@
+package de.uniaugsburg.isse.abstraction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import de.uniaugsburg.isse.abstraction.types.Interval;
+import de.uniaugsburg.isse.abstraction.types.PiecewiseLinearFunction;
+import de.uniaugsburg.isse.constraints.BoundsConstraint;
+import de.uniaugsburg.isse.constraints.Constraint;
+import de.uniaugsburg.isse.constraints.FixedChangeConstraint;
+import de.uniaugsburg.isse.constraints.ForceOnConstraint;
+import de.uniaugsburg.isse.constraints.GraduallyOffConstraint;
+import de.uniaugsburg.isse.constraints.RateOfChangeConstraint;
+import de.uniaugsburg.isse.constraints.StartWithMinConstraint;
+import de.uniaugsburg.isse.powerplants.PowerPlantData;
+import de.uniaugsburg.isse.powerplants.PowerPlantState;
+
+/**
+ * A class of interchangeable plants, i.e., plants with the same constraints, parameters and cost function that only
+ * differ in their state. The aggregated central model (see CplexExporter.createAggregatedModel) uses one integer
+ * variable for the number of running plants and one for the production of the whole class instead of a binary and a
+ * continuous variable per plant, which removes the symmetry between the members. After solving, disaggregate
+ * distributes the decision among the members again.
+ */
+public class PlantClass {
+	private final String name;
+	private final PowerPlantData representative;
+	private final List<PowerPlantData> members;
+
+	// properties of the representative relevant for the aggregated model
+	private double minPower;
+	private double maxPower;
+	private double maxChange = Double.NaN; // per base step, NaN if unrestricted
+	private double rateOfChange = Double.NaN; // NaN if unrestricted
+	private boolean forceOn;
+	private boolean startWithMin;
+	private boolean graduallyOff;
+
+	public PlantClass(String name, PowerPlantData representative) {
+		this.name = name;
+		this.representative = representative;
+		this.members = new ArrayList<PowerPlantData>();
+		this.members.add(representative);
+
+		this.minPower = representative.getPowerBoundaries().min;
+		this.maxPower = representative.getPowerBoundaries().max;
+		for (Constraint c : representative.getAssociatedConstraints()) {
+			if (c instanceof BoundsConstraint) {
+				Interval<Double> boundaries = ((BoundsConstraint) c).getBoundaries();
+				minPower = Math.max(minPower, boundaries.min);
+				maxPower = Math.min(maxPower, boundaries.max);
+			} else if (c instanceof FixedChangeConstraint) {
+				maxChange = ((FixedChangeConstraint) c).getMaxProductionChange();
+			} else if (c instanceof RateOfChangeConstraint) {
+				rateOfChange = ((RateOfChangeConstraint) c).getRateOfChange();
+			} else if (c instanceof ForceOnConstraint) {
+				forceOn = true;
+			} else if (c instanceof StartWithMinConstraint) {
+				startWithMin = true;
+			} else if (c instanceof GraduallyOffConstraint) {
+				graduallyOff = true;
+			}
+		}
+	}
+
+	/**
+	 * Partitions concrete plants into classes of interchangeable plants, keeping the order of first occurrence
+	 *
+	 * @param plants
+	 * @return
+	 */
+	public static List<PlantClass> group(Collection<PowerPlantData> plants) {
+		Map<List<Object>, PlantClass> classes = new LinkedHashMap<List<Object>, PlantClass>();
+		for (PowerPlantData pd : plants) {
+			if (pd.isAVPP())
+				throw new RuntimeException("Only concrete plants can be aggregated, " + pd.getName() + " is an AVPP");
+
+			List<Object> key = signature(pd);
+			PlantClass plantClass = classes.get(key);
+			if (plantClass == null)
+				classes.put(key, new PlantClass("class_" + pd.getName(), pd));
+			else
+				plantClass.members.add(pd);
+		}
+		return new ArrayList<PlantClass>(classes.values());
+	}
+
+	/**
+	 * Everything but the name and the state of a plant
+	 *
+	 * @param pd
+	 * @return
+	 */
+	private static List<Object> signature(PowerPlantData pd) {
+		List<Object> key = new ArrayList<Object>();
+		key.add(pd.getPowerBoundaries().min);
+		key.add(pd.getPowerBoundaries().max);
+
+		Map<String, String> parameters = new TreeMap<String, String>();
+		for (Entry<String, String> entry : pd.getMap().entrySet()) {
+			if (!entry.getKey().contains("Init")) // state variables
+				parameters.put(entry.getKey(), entry.getValue());
+		}
+		key.add(parameters);
+
+		for (Constraint c : pd.getAssociatedConstraints()) {
+			key.add(c.getClass());
+			key.add(c.isSoft());
+			key.add(c.getWeight());
+			if (c instanceof BoundsConstraint) {
+				key.add(((BoundsConstraint) c).getBoundaries().min);
+				key.add(((BoundsConstraint) c).getBoundaries().max);
+			} else if (c instanceof FixedChangeConstraint) {
+				key.add(((FixedChangeConstraint) c).getMaxProductionChange());
+			} else if (c instanceof RateOfChangeConstraint) {
+				key.add(((RateOfChangeConstraint) c).getRateOfChange());
+			}
+		}
+
+		PiecewiseLinearFunction costs = pd.getCostFunction();
+		if (costs != null && !costs.isEmpty()) {
+			key.add(Arrays.toString(costs.getSlopes(costs.getBPs())));
+			key.add(Arrays.toString(costs.getBreakpoints(costs.getBPs())));
+			key.add(costs.getFirstInput());
+			key.add(costs.getFirstOutput());
+		}
+		return key;
+	}
+
+	/**
+	 * Production levels at which the costs of a single running member change their slope, from minPower to maxPower
+	 *
+	 * @return
+	 */
+	public double[] getCostSupportPoints() {
+		TreeSet<Double> points = new TreeSet<Double>();
+		points.add(minPower);
+		points.add(maxPower);
+		PiecewiseLinearFunction costs = representative.getCostFunction();
+		if (costs != null && !costs.isEmpty()) {
+			for (double breakpoint : costs.getBreakpoints(costs.getBPs())) {
+				if (breakpoint > minPower && breakpoint < maxPower)
+					points.add(breakpoint);
+			}
+		}
+		double[] supportPoints = new double[points.size()];
+		int i = 0;
+		for (Double point : points) {
+			supportPoints[i++] = point;
+		}
+		return supportPoints;
+	}
+
+	public double getCosts(double production) {
+		return representative.getCostFunction().evaluate(production);
+	}
+
+	/**
+	 * @param states
+	 * @return number of members currently running, same convention as the exported initial state
+	 */
+	public int getRunningMembers(Map<String, PowerPlantState> states) {
+		int running = 0;
+		for (PowerPlantData member : members) {
+			if (states.get(member.getName()).getPower().min > 0)
+				++running;
+		}
+		return running;
+	}
+
+	/**
+	 * @param states
+	 * @return current production of all members
+	 */
+	public double getProduction(Map<String, PowerPlantState> states) {
+		double production = 0.0;
+		for (PowerPlantData member : members) {
+			production += states.get(member.getName()).getPower().min;
+		}
+		return production;
+	}
+
+	/**
+	 * Distributes the decision for the class among its members: plants that produce most keep running (no start-ups,
+	 * close to their current output), the production is split within the range each of them can reach from its own
+	 * state. The aggregated model relaxes these individual ranges, hence the split may deviate slightly from the total.
+	 *
+	 * @param runningUnits
+	 *            number of running members at the next step
+	 * @param production
+	 *            production of the class at the next step
+	 * @param states
+	 *            current states, updated to the next step
+	 * @param stepWeight
+	 *            length of the next step in base steps
+	 */
+	public void disaggregate(int runningUnits, double production, final Map<String, PowerPlantState> states, double stepWeight) {
+		List<PowerPlantData> order = new ArrayList<PowerPlantData>(members);
+		Collections.sort(order, new Comparator<PowerPlantData>() {
+			@Override
+			public int compare(PowerPlantData o1, PowerPlantData o2) {
+				return Double.compare(states.get(o2.getName()).getPower().min, states.get(o1.getName()).getPower().min);
+			}
+		});
+		runningUnits = Math.max(0, Math.min(runningUnits, members.size()));
+
+		double[] lower = new double[runningUnits];
+		double[] upper = new double[runningUnits];
+		double sumLower = 0.0;
+		double sumUpper = 0.0;
+		for (int i = 0; i < runningUnits; ++i) {
+			double previous = states.get(order.get(i).getName()).getPower().min;
+			lower[i] = minPower;
+			upper[i] = maxPower;
+			if (previous > 0) {
+				if (!Double.isNaN(maxChange)) {
+					lower[i] = Math.max(lower[i], previous - stepWeight * maxChange);
+					upper[i] = Math.min(upper[i], previous + stepWeight * maxChange);
+				}
+				if (!Double.isNaN(rateOfChange)) {
+					lower[i] = Math.max(lower[i], previous * (1.0 - rateOfChange));
+					upper[i] = Math.min(upper[i], previous * (1.0 + rateOfChange));
+				}
+			} else if (startWithMin) {
+				upper[i] = minPower;
+			}
+			upper[i] = Math.max(lower[i], upper[i]);
+			sumLower += lower[i];
+			sumUpper += upper[i];
+		}
+
+		double target = Math.max(sumLower, Math.min(sumUpper, production));
+		double share = sumUpper > sumLower ? (target - sumLower) / (sumUpper - sumLower) : 0.0;
+		for (int i = 0; i < order.size(); ++i) {
+			PowerPlantState state = states.get(order.get(i).getName());
+			if (i < runningUnits) {
+				state.setPower(new Interval<Double>(lower[i] + share * (upper[i] - lower[i])));
+				state.setRunning(new Interval<Boolean>(true));
+			} else {
+				state.setPower(new Interval<Double>(0.0));
+				state.setRunning(new Interval<Boolean>(false));
+			}
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public PowerPlantData getRepresentative() {
+		return representative;
+	}
+
+	public List<PowerPlantData> getMembers() {
+		return members;
+	}
+
+	public int size() {
+		return members.size();
+	}
+
+	public double getMinPower() {
+		return minPower;
+	}
+
+	public double getMaxPower() {
+		return maxPower;
+	}
+
+	public double getMaxChange() {
+		return maxChange;
+	}
+
+	public double getRateOfChange() {
+		return rateOfChange;
+	}
+
+	public boolean isForceOn() {
+		return forceOn;
+	}
+
+	public boolean isStartWithMin() {
+		return startWithMin;
+	}
+
+	public boolean isGraduallyOff() {
+		return graduallyOff;
+	}
+}
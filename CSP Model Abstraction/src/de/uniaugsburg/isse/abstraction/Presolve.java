@@ -0,0 +1,245 @@
+package de.uniaugsburg.isse.abstraction;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import de.uniaugsburg.isse.abstraction.types.Interval;
+import de.uniaugsburg.isse.abstraction.types.TimeGrid;
+import de.uniaugsburg.isse.constraints.BoundsConstraint;
+import de.uniaugsburg.isse.constraints.Constraint;
+import de.uniaugsburg.isse.constraints.FixedChangeConstraint;
+import de.uniaugsburg.isse.constraints.ForceOnConstraint;
+import de.uniaugsburg.isse.constraints.GraduallyOffConstraint;
+import de.uniaugsburg.isse.constraints.RateOfChangeConstraint;
+import de.uniaugsburg.isse.constraints.StartWithMinConstraint;
+import de.uniaugsburg.isse.constraints.StopTimeConstraint;
+import de.uniaugsburg.isse.powerplants.PowerPlantData;
+import de.uniaugsburg.isse.powerplants.PowerPlantState;
+
+/**
+ * Java-side presolve for the exported models: propagates the current state of every concrete plant over the prediction
+ * horizon (the bound propagation of TemporalAbstraction, but per plant) to find out which running variables are
+ * already determined and which production a plant can reach at all. The model then fixes these binaries, tightens the
+ * production bounds and skips hard constraints that cannot become active.
+ *
+ * The bounds have to be valid for the exported model, hence only constraints exported with the same meaning are
+ * propagated: stop times are not part of the model and change constraints only bound steps after which the plant is
+ * certainly running.
+ */
+public class Presolve {
+	public static final int FREE = -1;
+	public static final int OFF = 0;
+	public static final int ON = 1;
+
+	private static final double UNBOUNDED = 1.0e20; // CPLEX treats larger bounds as infinite
+
+	private int timeHorizon;
+	private double deltaTime = 15.0;
+	private TimeGrid timeGrid;
+
+	private Map<String, double[]> lowerBounds;
+	private Map<String, double[]> upperBounds;
+	private Map<String, int[]> runningStatus;
+
+	// statistics of the last run, only steps 1 .. T count as step 0 is given by the initial state anyway
+	private int fixedBinaries;
+	private int tightenedBounds;
+	private int omittedConstraints;
+
+	public Presolve(int timeHorizon) {
+		this.timeHorizon = timeHorizon;
+	}
+
+	/**
+	 * Derives bounds for steps 0 .. T from the current states
+	 *
+	 * @param states
+	 *            states of all plants of a model, AVPPs are left free
+	 */
+	public void perform(Map<String, PowerPlantState> states) {
+		lowerBounds = new HashMap<String, double[]>(states.size() * 2);
+		upperBounds = new HashMap<String, double[]>(states.size() * 2);
+		runningStatus = new HashMap<String, int[]>(states.size() * 2);
+		fixedBinaries = 0;
+		tightenedBounds = 0;
+		omittedConstraints = 0;
+
+		for (Entry<String, PowerPlantState> entry : states.entrySet()) {
+			PowerPlantData pd = entry.getValue().getData();
+			if (pd == null || pd.isAVPP())
+				leaveFree(entry.getKey(), pd);
+			else
+				propagate(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void leaveFree(String name, PowerPlantData pd) {
+		double[] lower = new double[timeHorizon + 1];
+		double[] upper = new double[timeHorizon + 1];
+		int[] running = new int[timeHorizon + 1];
+		double max = UNBOUNDED;
+		if (pd != null && pd.getFeasibleRegions() != null && !pd.getFeasibleRegions().isEmpty())
+			max = pd.getFeasibleRegions().last().max;
+
+		for (int t = 0; t <= timeHorizon; ++t) {
+			upper[t] = max;
+			running[t] = FREE;
+		}
+		lowerBounds.put(name, lower);
+		upperBounds.put(name, upper);
+		runningStatus.put(name, running);
+	}
+
+	private void propagate(String name, PowerPlantState current) {
+		PowerPlantData pd = current.getData();
+		double[] lower = new double[timeHorizon + 1];
+		double[] upper = new double[timeHorizon + 1];
+		int[] running = new int[timeHorizon + 1];
+
+		// the model derives the initial running state from the initial production
+		double initPower = current.getPower().min;
+		boolean initRunning = initPower > 0;
+		PowerPlantState pp = new PowerPlantState();
+		pp.setData(pd);
+		pp.setPower(new Interval<Double>(initPower));
+		pp.setRunning(new Interval<Boolean>(initRunning));
+		pp.setConsRunning(new Interval<Integer>(initRunning ? 1 : 0));
+		pp.setConsStopping(new Interval<Integer>(initRunning ? 0 : 1));
+		pp.updateConstraints();
+
+		lower[0] = initPower;
+		upper[0] = initPower;
+		running[0] = initRunning ? ON : OFF;
+
+		for (int t = 1; t <= timeHorizon; ++t) {
+			pp.setSimulationStep(t);
+			double P_min_t_inc = 0.0;
+			double P_max_t_inc = Double.POSITIVE_INFINITY;
+			boolean On_min_t_inc = false;
+			boolean On_max_t_inc = true;
+			boolean wasRunning = pp.onlyOn();
+
+			for (Constraint c : pd.getAssociatedConstraints()) {
+				if (c.isSoft() || c instanceof StopTimeConstraint)
+					continue;
+				// the change is only restricted between two running steps
+				if (!wasRunning && (c instanceof FixedChangeConstraint || c instanceof RateOfChangeConstraint))
+					continue;
+				c.setDeltaTime(getDeltaTime(t));
+				P_min_t_inc = Math.max(c.minimize(), P_min_t_inc);
+				On_min_t_inc = c.minimizeBool() || On_min_t_inc;
+				P_max_t_inc = Math.min(c.maximize(), P_max_t_inc);
+				On_max_t_inc = c.maximizeBool() && On_max_t_inc;
+			}
+
+			pp.updateRunning(On_min_t_inc, On_max_t_inc);
+			if (!On_min_t_inc)
+				P_min_t_inc = 0.0;
+			if (!On_max_t_inc)
+				P_max_t_inc = 0.0;
+			else if (P_max_t_inc > UNBOUNDED)
+				P_max_t_inc = UNBOUNDED;
+			pp.getPower().min = P_min_t_inc;
+			pp.getPower().max = P_max_t_inc;
+
+			lower[t] = P_min_t_inc;
+			upper[t] = P_max_t_inc;
+			running[t] = pp.onlyOn() ? ON : (pp.onlyOff() ? OFF : FREE);
+
+			if (running[t] != FREE)
+				++fixedBinaries;
+			if (P_min_t_inc > 0.0 || P_max_t_inc < pd.getPowerBoundaries().max)
+				++tightenedBounds;
+		}
+
+		for (Constraint c : pd.getAssociatedConstraints()) {
+			int redundantStatus = getRedundantStatus(c);
+			if (redundantStatus == FREE)
+				continue;
+			for (int t = 1; t <= timeHorizon; ++t) {
+				if (running[t] == redundantStatus)
+					++omittedConstraints;
+			}
+		}
+
+		lowerBounds.put(name, lower);
+		upperBounds.put(name, upper);
+		runningStatus.put(name, running);
+	}
+
+	/**
+	 * A hard constraint at step t can be dropped from the model if the running state of the plant at t is fixed to
+	 * the returned value: its premise cannot hold or fixing already implies it
+	 *
+	 * @param c
+	 * @return ON, OFF or FREE if the constraint is always needed
+	 */
+	public static int getRedundantStatus(Constraint c) {
+		if (c.isSoft()) // penalties still have to be determined
+			return FREE;
+		if (c instanceof BoundsConstraint || c instanceof FixedChangeConstraint || c instanceof RateOfChangeConstraint
+				|| c instanceof GraduallyOffConstraint)
+			return OFF;
+		if (c instanceof ForceOnConstraint || c instanceof StartWithMinConstraint)
+			return ON;
+		return FREE;
+	}
+
+	public double getDeltaTime(int t) {
+		return timeGrid == null ? deltaTime : timeGrid.getStepLength(t);
+	}
+
+	public Map<String, double[]> getLowerBounds() {
+		return lowerBounds;
+	}
+
+	public Map<String, double[]> getUpperBounds() {
+		return upperBounds;
+	}
+
+	public Map<String, int[]> getRunningStatus() {
+		return runningStatus;
+	}
+
+	/**
+	 * @return number of running variables fixed in the last run
+	 */
+	public int getFixedBinaries() {
+		return fixedBinaries;
+	}
+
+	/**
+	 * @return number of production variables with bounds tighter than the plant's limits in the last run
+	 */
+	public int getTightenedBounds() {
+		return tightenedBounds;
+	}
+
+	/**
+	 * @return number of constraint instances skipped in the last run
+	 */
+	public int getOmittedConstraints() {
+		return omittedConstraints;
+	}
+
+	public int getTimeHorizon() {
+		return timeHorizon;
+	}
+
+	public void setTimeHorizon(int timeHorizon) {
+		this.timeHorizon = timeHorizon;
+	}
+
+	public void setDeltaTime(double deltaTime) {
+		this.deltaTime = deltaTime;
+	}
+
+	public TimeGrid getTimeGrid() {
+		return timeGrid;
+	}
+
+	public void setTimeGrid(TimeGrid timeGrid) {
+		this.timeGrid = timeGrid;
+	}
+}
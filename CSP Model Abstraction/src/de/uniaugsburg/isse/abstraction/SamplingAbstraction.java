@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+import de.uniaugsburg.isse.abstraction.selectors.AdaptiveErrorSelector;
 import de.uniaugsburg.isse.abstraction.selectors.PythonActiveLearningSelector;
 import de.uniaugsburg.isse.abstraction.selectors.SamplingPointSelector;
 import de.uniaugsburg.isse.abstraction.types.Interval;
@@ -104,6 +105,12 @@ public class SamplingAbstraction {
 	protected SamplingPointSelector selector;
 	protected boolean useStaticSampling = false;
 	private int initialSamplingPoints = 0;
+	// adaptive sampling refines only while the estimated interpolation error exceeds the tolerance
+	private boolean useAdaptiveSampling = false;
+	private double adaptiveErrorTolerance = 0.01;
+	private int minSamplingPoints = 3;
+	private int maxSamplingPoints = 30;
+	private int usedSamplingPoints; // over all optimization criteria of the last perform
 
 	public int getInitialSamplingPoints() {
 		return initialSamplingPoints;
@@ -149,7 +156,10 @@ public class SamplingAbstraction {
 	 * @param decExpr
 	 */
 	public void perform(int samplePoints) {
-		if (useStaticSampling) {
+		usedSamplingPoints = 0;
+		if (useAdaptiveSampling) {
+			selector = new AdaptiveErrorSelector(adaptiveErrorTolerance, minSamplingPoints, maxSamplingPoints);
+		} else if (useStaticSampling) {
 			setInputPoints(calculateInputPoints(samplePoints + initialSamplingPoints));
 		} else {
 			// selector = new EquidistantSelector(calculateInputPoints(samplePoints));
@@ -211,15 +221,15 @@ public class SamplingAbstraction {
 	 */
 	private PiecewiseLinearFunction sampleFunction(OptimizationCriterion oc) {
 
-		if (useStaticSampling)
+		if (useStaticSampling && !useAdaptiveSampling)
 			return sampleStatically(oc);
 		else
 			return sampleDynamically(oc);
 	}
 
 	private PiecewiseLinearFunction sampleDynamically(OptimizationCriterion oc) {
-		// start with some initial sampling points
-		List<Double> inputs = calculateInputPoints(initialSamplingPoints); // only the ones at boundaries
+		// start with some initial sampling points - adaptive sampling starts from the region boundaries only
+		List<Double> inputs = calculateInputPoints(useAdaptiveSampling ? 2 : initialSamplingPoints); // only the ones at boundaries
 		TreeSet<InOutPair> sampledPairs = new TreeSet<InOutPair>(samplePoints(inputs, oc));
 
 		selector.reset();
@@ -245,6 +255,7 @@ public class SamplingAbstraction {
 			}
 		}
 		selector.destroy();
+		usedSamplingPoints += sampledPairs.size();
 		PiecewiseLinearFunction pwlFunc = new PiecewiseLinearFunction();
 		pwlFunc.convert(sampledPairs);
 		return pwlFunc;
@@ -327,6 +338,7 @@ public class SamplingAbstraction {
 				}
 
 				if ((actualInput < result && oc.minimize && oc.extensive) || (actualInput > result && !oc.minimize && oc.extensive)) {
+					getSolver().cleanup(); // hands a leased solver environment back
 					throw new RuntimeException("Invalid result input: " + actualInput + " output " + result + " violates extensivity property ");
 				}
 				++index;
@@ -350,6 +362,7 @@ public class SamplingAbstraction {
 		if (index == 0)
 			throw new RuntimeException("Empty points received!" + Arrays.toString(inPoints.toArray()));
 
+		usedSamplingPoints += index;
 		PiecewiseLinearFunction pwl = new PiecewiseLinearFunction();
 		pwl.convert(inputs, outputs, index);
 		if (prolongAdInfinitum)
@@ -472,6 +485,45 @@ public class SamplingAbstraction {
 		this.selector = selector;
 	}
 
+	public boolean isUseAdaptiveSampling() {
+		return useAdaptiveSampling;
+	}
+
+	public void setUseAdaptiveSampling(boolean useAdaptiveSampling) {
+		this.useAdaptiveSampling = useAdaptiveSampling;
+	}
+
+	public double getAdaptiveErrorTolerance() {
+		return adaptiveErrorTolerance;
+	}
+
+	public void setAdaptiveErrorTolerance(double adaptiveErrorTolerance) {
+		this.adaptiveErrorTolerance = adaptiveErrorTolerance;
+	}
+
+	public int getMinSamplingPoints() {
+		return minSamplingPoints;
+	}
+
+	public void setMinSamplingPoints(int minSamplingPoints) {
+		this.minSamplingPoints = minSamplingPoints;
+	}
+
+	public int getMaxSamplingPoints() {
+		return maxSamplingPoints;
+	}
+
+	public void setMaxSamplingPoints(int maxSamplingPoints) {
+		this.maxSamplingPoints = maxSamplingPoints;
+	}
+
+	/**
+	 * @return the number of successfully sampled points over all optimization criteria of the last perform
+	 */
+	public int getUsedSamplingPoints() {
+		return usedSamplingPoints;
+	}
+
 	public boolean isUseStaticSampling() {
 		return useStaticSampling;
 	}
@@ -3,15 +3,24 @@ package de.uniaugsburg.isse.abstraction;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.SortedSet;
 
+import de.uniaugsburg.isse.abstraction.merging.HoleCoarsening;
 import de.uniaugsburg.isse.abstraction.merging.HoleDetection;
+import de.uniaugsburg.isse.abstraction.types.ImmutableIntervalSet;
 import de.uniaugsburg.isse.abstraction.types.Interval;
 import de.uniaugsburg.isse.abstraction.types.IntervalSet;
 import de.uniaugsburg.isse.abstraction.types.PiecewiseLinearFunction;
+import de.uniaugsburg.isse.abstraction.types.TimeGrid;
+import de.uniaugsburg.isse.constraints.BoundsConstraint;
 import de.uniaugsburg.isse.constraints.Constraint;
+import de.uniaugsburg.isse.constraints.FixedChangeConstraint;
+import de.uniaugsburg.isse.constraints.GraduallyOffConstraint;
+import de.uniaugsburg.isse.constraints.RateOfChangeConstraint;
+import de.uniaugsburg.isse.constraints.StopTimeConstraint;
 import de.uniaugsburg.isse.powerplants.PowerPlantData;
 import de.uniaugsburg.isse.powerplants.PowerPlantState;
 import de.uniaugsburg.isse.util.PowerPlantUtil;
@@ -32,6 +41,21 @@ public class TemporalAbstraction extends GeneralAbstraction {
 
 	// TODO I know this should come from TEG but is set statically for now
 	private double deltaTime = 15.0;
+	protected TemporalAbstractionCache cache; // null disables memoisation
+	protected TimeGrid timeGrid; // variable step lengths, null for deltaTime in every step
+
+	/**
+	 * Cached result of perform(T)
+	 */
+	private static class CachedRegions {
+		private final IntervalSet intervalSet;
+		private final HoleCoarsening.Approximation approximation;
+
+		private CachedRegions(IntervalSet intervalSet, HoleCoarsening.Approximation approximation) {
+			this.intervalSet = intervalSet;
+			this.approximation = approximation;
+		}
+	}
 
 	// starting up
 
@@ -77,7 +101,7 @@ public class TemporalAbstraction extends GeneralAbstraction {
 				// System.out.println("Looking at: " + pp.getName());
 
 				for (Constraint c : pp.getData().getAssociatedConstraints()) {
-					c.setDeltaTime(deltaTime);
+					c.setDeltaTime(getDeltaTime(t));
 					if (!c.isSoft()) {
 						// minimize step
 						P_min_t_inc = Math.max(c.minimize(), P_min_t_inc);
@@ -140,13 +164,21 @@ public class TemporalAbstraction extends GeneralAbstraction {
 
 			holes = hd.detectSupplyHolesNew(plantIntervalsList);
 			feasibleRegions = hd.getIntervalList();
+			if (coarsening != null) {
+				feasibleRegions = coarsening.coarsen(feasibleRegions);
+				if (coarsening.isCoarsened()) {
+					holes = HoleCoarsening.getHoles(feasibleRegions);
+					approximation = coarsening.getApproximation();
+				}
+			}
 
 			reachHorizon = PowerPlantUtil.checkConvergence(feasibleRegions, this.getFeasibleRegions());
 			// if the feasible regions turn out to be empty (i.e. only intermittent plants) -> do not add them and
 			// converge (so general abstraction gets used anyway)
 			if (!feasibleRegions.isEmpty()) {
-				allFeasibleRegionsTemp.add(feasibleRegions);
-				allHolesTemp.add(holes);
+				// converged steps yield equal sets, share them
+				allFeasibleRegionsTemp.add(ImmutableIntervalSet.valueOf(feasibleRegions));
+				allHolesTemp.add(ImmutableIntervalSet.valueOf(holes));
 			} else
 				reachHorizon = true;
 
@@ -161,6 +193,18 @@ public class TemporalAbstraction extends GeneralAbstraction {
 	 * @param t
 	 */
 	public final void perform(int T) {
+		List<Object> key = null;
+		if (cache != null) {
+			key = fingerprint("regions", T, true);
+			CachedRegions cached = (CachedRegions) cache.get(key);
+			if (cached != null) {
+				this.allFeasibleRegions = cached.intervalSet.getAllFeasibleRegions();
+				this.allHoles = cached.intervalSet.getAllHoles();
+				if (cached.approximation != null)
+					this.approximation = cached.approximation;
+				return;
+			}
+		}
 		// first order set by P_min
 
 		ArrayList<PowerPlantState> plantStates = new ArrayList<PowerPlantState>(this.powerPlants.size());
@@ -182,9 +226,105 @@ public class TemporalAbstraction extends GeneralAbstraction {
 		IntervalSet is = this.perform(T, plantStates, avpps);
 		this.allFeasibleRegions = is.getAllFeasibleRegions();
 		this.allHoles = is.getAllHoles();
+		if (cache != null)
+			cache.put(key, new CachedRegions(is, approximation));
+	}
+
+	/**
+	 * Compact key for the memo: everything the bound propagation depends on, i.e., the initial states, parameters,
+	 * power boundaries and constraint values of the concrete children, the (interned) regions of AVPP children and the
+	 * settings
+	 * 
+	 * @param kind
+	 *            which result is cached
+	 * @param T
+	 *            horizon
+	 * @param regionsOnlyForAvpps
+	 *            whether AVPP children are represented by their regions only (no initial state)
+	 * @return
+	 */
+	protected List<Object> fingerprint(String kind, int T, boolean regionsOnlyForAvpps) {
+		List<Object> key = new ArrayList<Object>(4 * this.powerPlants.size() + 8);
+		key.add(kind);
+		key.add(T);
+		key.add(deltaTime);
+		key.add(timeGrid);
+		if (coarsening != null) {
+			key.add(coarsening.getApproximation());
+			key.add(coarsening.getMaxRegions());
+			key.add(coarsening.getEpsilon());
+		}
+		key.add(generalFeasibleRegions);
+
+		for (PowerPlantData pd : this.powerPlants) {
+			key.add(pd);
+			if (pd.isAVPP()) {
+				key.add(pd.getFeasibleRegions());
+				key.add(pd.getAllFeasibleRegions());
+				if (regionsOnlyForAvpps)
+					continue;
+			}
+			key.add(new HashMap<String, String>(pd.getMap()));
+			key.add(copyOf(pd.getPowerBoundaries()));
+			if (pd.getAssociatedConstraints() != null) {
+				for (Constraint c : pd.getAssociatedConstraints()) {
+					key.add(constraintValues(c));
+				}
+			}
+			PowerPlantState state = new PowerPlantState();
+			state.setData(pd);
+			state.initialize();
+			key.add(copyOf(state.getPower()));
+			key.add(copyOf(state.getConsRunning()));
+			key.add(copyOf(state.getConsStopping()));
+		}
+		return key;
+	}
+
+	/**
+	 * Values a constraint propagates with; they are read from the plant data when the constraint is created and may be
+	 * changed afterwards. Their step length is set by the propagation itself and covered by deltaTime and timeGrid.
+	 */
+	private static List<Object> constraintValues(Constraint c) {
+		List<Object> values = new ArrayList<Object>(5);
+		values.add(c.getClass());
+		values.add(c.isSoft());
+		values.add(c.getWeight());
+		if (c instanceof RateOfChangeConstraint) {
+			values.add(((RateOfChangeConstraint) c).getRateOfChange());
+		} else if (c instanceof FixedChangeConstraint) {
+			values.add(((FixedChangeConstraint) c).getMaxProductionChange());
+		} else if (c instanceof BoundsConstraint) {
+			values.add(copyOf(((BoundsConstraint) c).getBoundaries()));
+		} else if (c instanceof GraduallyOffConstraint) {
+			values.add(((GraduallyOffConstraint) c).getPMin());
+		} else if (c instanceof StopTimeConstraint) {
+			values.add(((StopTimeConstraint) c).getMinOffTime());
+			values.add(((StopTimeConstraint) c).getMinOnTime());
+		}
+		return values;
+	}
+
+	private static <T extends Comparable<T>> Interval<T> copyOf(Interval<T> interval) {
+		return interval == null ? null : interval.copy();
 	}
 
 	public PiecewiseLinearFunction getMaxOutputFunctionByState(List<SortedSet<Interval<Double>>> allFeasibleRegions) {
+		List<Object> key = null;
+		if (cache != null) {
+			key = fingerprint("maxOutput", 0, false);
+			key.add(allFeasibleRegions);
+			PiecewiseLinearFunction cached = (PiecewiseLinearFunction) cache.get(key);
+			if (cached != null)
+				return cached;
+		}
+		PiecewiseLinearFunction positiveDelta = computeMaxOutputFunctionByState(allFeasibleRegions);
+		if (cache != null)
+			cache.put(key, positiveDelta);
+		return positiveDelta;
+	}
+
+	private PiecewiseLinearFunction computeMaxOutputFunctionByState(List<SortedSet<Interval<Double>>> allFeasibleRegions) {
 		// find out max delta at minimum power
 
 		Collection<Interval<Double>> inOutPairs = new LinkedList<Interval<Double>>();
@@ -256,6 +396,21 @@ public class TemporalAbstraction extends GeneralAbstraction {
 	}
 
 	public PiecewiseLinearFunction getMinOutputFunctionByState(List<SortedSet<Interval<Double>>> allFeasibleRegions) {
+		List<Object> key = null;
+		if (cache != null) {
+			key = fingerprint("minOutput", 0, false);
+			key.add(allFeasibleRegions);
+			PiecewiseLinearFunction cached = (PiecewiseLinearFunction) cache.get(key);
+			if (cached != null)
+				return cached;
+		}
+		PiecewiseLinearFunction negativeDelta = computeMinOutputFunctionByState(allFeasibleRegions);
+		if (cache != null)
+			cache.put(key, negativeDelta);
+		return negativeDelta;
+	}
+
+	private PiecewiseLinearFunction computeMinOutputFunctionByState(List<SortedSet<Interval<Double>>> allFeasibleRegions) {
 		// find out max delta at minimum power
 
 		LinkedList<Interval<Double>> inOutPairs = new LinkedList<Interval<Double>>();
@@ -328,6 +483,31 @@ public class TemporalAbstraction extends GeneralAbstraction {
 		return negativeDelta;
 	}
 
+	/**
+	 * @param t
+	 *            1-based step
+	 * @return minutes from step t-1 to step t
+	 */
+	public double getDeltaTime(int t) {
+		return timeGrid == null ? deltaTime : timeGrid.getStepLength(t);
+	}
+
+	public TimeGrid getTimeGrid() {
+		return timeGrid;
+	}
+
+	public void setTimeGrid(TimeGrid timeGrid) {
+		this.timeGrid = timeGrid;
+	}
+
+	public TemporalAbstractionCache getCache() {
+		return cache;
+	}
+
+	public void setCache(TemporalAbstractionCache cache) {
+		this.cache = cache;
+	}
+
 	public List<SortedSet<Interval<Double>>> getAllFeasibleRegions() {
 		return this.allFeasibleRegions;
 	}
@@ -0,0 +1,75 @@
+package de.uniaugsburg.isse.abstraction;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded memo for temporal abstraction results. AVPPs often return to the same state of their children (e.g., all at
+ * minimal power or switched off) such that the bound propagation of TemporalAbstraction would yield the same regions and
+ * delta functions again. Keys are fingerprints of the children's states (see TemporalAbstraction), the least recently
+ * used entry is evicted once the capacity is reached.
+ */
+public class TemporalAbstractionCache {
+	private final Map<List<Object>, Object> entries;
+	private final int capacity;
+	private long hits;
+	private long misses;
+
+	public TemporalAbstractionCache(final int capacity) {
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<List<Object>, Object>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * @param key
+	 * @return the cached result or null
+	 */
+	public synchronized Object get(List<Object> key) {
+		Object value = entries.get(key);
+		if (value == null)
+			++misses;
+		else
+			++hits;
+		return value;
+	}
+
+	public synchronized void put(List<Object> key, Object value) {
+		entries.put(key, value);
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return fraction of lookups answered from the cache, 0 if there were none
+	 */
+	public synchronized double getHitRate() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0.0 : hits / (double) lookups;
+	}
+}
@@ -0,0 +1,154 @@
+package de.uniaugsburg.isse.abstraction.merging;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import de.uniaugsburg.isse.abstraction.types.Interval;
+
+/**
+ * Bounds the number of feasible regions of an AVPP since every region costs binary variables in the parent's model.
+ * Many small on/off plants fragment the regions into lots of tiny holes.
+ *
+ * An optimistic coarsening closes holes (smallest first), i.e., the result contains all feasible regions and possibly
+ * some infeasible values. A conservative coarsening drops regions (narrowest first), i.e., every value in the result is
+ * feasible but some feasible values are lost. In both cases the overall minimum and maximum remain untouched.
+ */
+public class HoleCoarsening {
+
+	public enum Approximation {
+		OPTIMISTIC, CONSERVATIVE
+	}
+
+	private int maxRegions; // 0 for no limit
+	private double epsilon; // holes (optimistic) or regions (conservative) narrower than this are removed anyway
+	private Approximation approximation = Approximation.OPTIMISTIC;
+	private boolean coarsened;
+
+	public HoleCoarsening(int maxRegions, double epsilon, Approximation approximation) {
+		this.maxRegions = maxRegions;
+		this.epsilon = epsilon;
+		this.approximation = approximation;
+	}
+
+	/**
+	 * Returns a coarsened copy of the feasible regions; the given set is not modified
+	 *
+	 * @param feasibleRegions
+	 * @return
+	 */
+	public SortedSet<Interval<Double>> coarsen(SortedSet<Interval<Double>> feasibleRegions) {
+		coarsened = false;
+		if (feasibleRegions == null || feasibleRegions.size() < 2)
+			return feasibleRegions;
+
+		List<Interval<Double>> regions = new ArrayList<Interval<Double>>(feasibleRegions.size());
+		for (Interval<Double> region : feasibleRegions) {
+			regions.add(region.copy());
+		}
+
+		if (approximation == Approximation.OPTIMISTIC)
+			closeHoles(regions);
+		else
+			dropRegions(regions);
+
+		if (!coarsened)
+			return feasibleRegions;
+		return new TreeSet<Interval<Double>>(regions);
+	}
+
+	private boolean exceedsLimit(List<Interval<Double>> regions) {
+		return maxRegions > 0 && regions.size() > maxRegions;
+	}
+
+	private void closeHoles(List<Interval<Double>> regions) {
+		while (regions.size() > 1) {
+			int smallest = -1;
+			double smallestHole = Double.POSITIVE_INFINITY;
+			for (int i = 0; i + 1 < regions.size(); ++i) {
+				double hole = regions.get(i + 1).min - regions.get(i).max;
+				if (hole < smallestHole) {
+					smallestHole = hole;
+					smallest = i;
+				}
+			}
+			if (smallestHole >= epsilon && !exceedsLimit(regions))
+				break;
+
+			Interval<Double> left = regions.get(smallest);
+			left.max = regions.get(smallest + 1).max;
+			regions.remove(smallest + 1);
+			coarsened = true;
+		}
+	}
+
+	private void dropRegions(List<Interval<Double>> regions) {
+		// the outermost regions keep the bounds of the AVPP
+		while (regions.size() > 2) {
+			int narrowest = -1;
+			double narrowestWidth = Double.POSITIVE_INFINITY;
+			for (int i = 1; i + 1 < regions.size(); ++i) {
+				double width = regions.get(i).max - regions.get(i).min;
+				if (width < narrowestWidth) {
+					narrowestWidth = width;
+					narrowest = i;
+				}
+			}
+			if (narrowestWidth >= epsilon && !exceedsLimit(regions))
+				break;
+
+			regions.remove(narrowest);
+			coarsened = true;
+		}
+	}
+
+	/**
+	 * Holes between consecutive regions
+	 *
+	 * @param feasibleRegions
+	 * @return
+	 */
+	public static Collection<Interval<Double>> getHoles(SortedSet<Interval<Double>> feasibleRegions) {
+		Collection<Interval<Double>> holes = new TreeSet<Interval<Double>>();
+		Interval<Double> previous = null;
+		for (Interval<Double> region : feasibleRegions) {
+			if (previous != null)
+				holes.add(new Interval<Double>(previous.max, region.min));
+			previous = region;
+		}
+		return holes;
+	}
+
+	/**
+	 * @return true if the last call to coarsen changed the regions
+	 */
+	public boolean isCoarsened() {
+		return coarsened;
+	}
+
+	public int getMaxRegions() {
+		return maxRegions;
+	}
+
+	public void setMaxRegions(int maxRegions) {
+		this.maxRegions = maxRegions;
+	}
+
+	public double getEpsilon() {
+		return epsilon;
+	}
+
+	public void setEpsilon(double epsilon) {
+		this.epsilon = epsilon;
+	}
+
+	public Approximation getApproximation() {
+		return approximation;
+	}
+
+	public void setApproximation(Approximation approximation) {
+		this.approximation = approximation;
+	}
+}
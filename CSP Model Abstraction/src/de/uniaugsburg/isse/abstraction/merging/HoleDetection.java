@@ -2,8 +2,18 @@ package de.uniaugsburg.isse.abstraction.merging;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import de.uniaugsburg.isse.abstraction.merging.MergeLists.List;
 import de.uniaugsburg.isse.abstraction.types.Interval;
@@ -17,8 +27,11 @@ import de.uniaugsburg.isse.util.PowerPlantUtil;
  * 
  */
 public class HoleDetection {
+	private static ExecutorService reductionPool;
+
 	private SortedSet<Interval<Double>> intervalList;
 	private Collection<Interval<Double>> holesList;
+	private int parallelThreshold = 32; // minimal number of plants to sum on the reduction pool
 
 	public Collection<Interval<Double>> getHolesList() {
 		return holesList;
@@ -36,7 +49,6 @@ public class HoleDetection {
 	 * @return
 	 */
 	public Collection<Interval<Double>> detectSupplyHolesNew(Collection<Collection<Interval<Double>>> plantsFeasibleRegions) {
-		boolean isFirst = true;
 		Collection<Interval<Double>> minIntervalSet = null;
 
 		// an empty list should first raise concerns but be treated as [0,0]
@@ -63,20 +75,7 @@ public class HoleDetection {
 		// during bootstrapping this collection could be empty
 		if (!plantsActualFeasibleRegions.isEmpty()) {
 
-			isFirst = true;
-			List aggregateFeasibleRegionsHead = null;
-
-			for (Collection<Interval<Double>> singlePlantFeasibleRegions : plantsActualFeasibleRegions) {
-				// combine all intervals in this plant's feasible regions with
-				// each of the already existing intervals
-				if (isFirst) {
-					aggregateFeasibleRegionsHead = List.fromCollection(singlePlantFeasibleRegions);
-					isFirst = false;
-				} else {
-					// perform a plus on sets with all already feasible regions and the incomings (includes merging)
-					aggregateFeasibleRegionsHead = PowerPlantUtil.plusSets(aggregateFeasibleRegionsHead, singlePlantFeasibleRegions);
-				}
-			}
+			List aggregateFeasibleRegionsHead = reduce(plantsActualFeasibleRegions);
 			intervalList = MergeLists.toJavaSet(aggregateFeasibleRegionsHead);
 
 			// collect holes
@@ -98,6 +97,138 @@ public class HoleDetection {
 		}
 	}
 
+	/**
+	 * Sums the plants' feasible regions pairwise in a balanced tree (level by level) instead of folding them left to
+	 * right: intermediate sets stay small for longer and the sums of one level are independent of each other, so they
+	 * are computed on the reduction pool for many plants. Plants with identical regions are grouped beforehand and every
+	 * group is summed by repeated doubling.
+	 * 
+	 * @param plantsFeasibleRegions
+	 *            non-empty collection of non-empty feasible regions
+	 * @return merged feasible regions of the sum
+	 */
+	private List reduce(Collection<Collection<Interval<Double>>> plantsFeasibleRegions) {
+		// plants with identical regions are summed by doubling first
+		Map<java.util.List<Double>, Collection<Interval<Double>>> groups = new LinkedHashMap<java.util.List<Double>, Collection<Interval<Double>>>();
+		Map<java.util.List<Double>, Integer> groupSizes = new HashMap<java.util.List<Double>, Integer>();
+		for (Collection<Interval<Double>> singlePlantFeasibleRegions : plantsFeasibleRegions) {
+			java.util.List<Double> key = new ArrayList<Double>(2 * singlePlantFeasibleRegions.size());
+			for (Interval<Double> interval : singlePlantFeasibleRegions) {
+				key.add(interval.min);
+				key.add(interval.max);
+			}
+			Integer size = groupSizes.get(key);
+			if (size == null) {
+				groups.put(key, singlePlantFeasibleRegions);
+				size = 0;
+			}
+			groupSizes.put(key, size + 1);
+		}
+
+		java.util.List<List> level = new ArrayList<List>(groups.size());
+		for (Entry<java.util.List<Double>, Collection<Interval<Double>>> group : groups.entrySet()) {
+			// merging modifies the intervals of a list, hence do not touch the plant's own intervals
+			Collection<Interval<Double>> copies = new ArrayList<Interval<Double>>(group.getValue().size());
+			for (Interval<Double> interval : group.getValue()) {
+				copies.add(interval.copy());
+			}
+			level.add(multiply(List.fromCollection(copies), groupSizes.get(group.getKey())));
+		}
+
+		boolean parallel = level.size() >= parallelThreshold;
+		while (level.size() > 1) {
+			java.util.List<List> nextLevel = new ArrayList<List>((level.size() + 1) / 2);
+			if (parallel) {
+				java.util.List<Callable<List>> sums = new ArrayList<Callable<List>>(level.size() / 2);
+				for (int i = 0; i + 1 < level.size(); i += 2) {
+					final List left = level.get(i);
+					final List right = level.get(i + 1);
+					sums.add(new Callable<List>() {
+						@Override
+						public List call() throws Exception {
+							return plus(left, right);
+						}
+					});
+				}
+				try {
+					for (Future<List> sum : getReductionPool().invokeAll(sums)) {
+						nextLevel.add(sum.get());
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Interrupted while summing feasible regions", e);
+				} catch (ExecutionException e) {
+					throw new RuntimeException("Could not sum feasible regions", e.getCause());
+				}
+			} else {
+				for (int i = 0; i + 1 < level.size(); i += 2) {
+					nextLevel.add(plus(level.get(i), level.get(i + 1)));
+				}
+			}
+			if (level.size() % 2 == 1) // odd one out is carried to the next level
+				nextLevel.add(level.get(level.size() - 1));
+			level = nextLevel;
+		}
+		return level.get(0);
+	}
+
+	/**
+	 * k-fold sum of the same regions by repeated doubling, i.e., O(log k) sums
+	 * 
+	 * @param regions
+	 * @param k
+	 *            at least 1
+	 * @return
+	 */
+	static List multiply(List regions, int k) {
+		List result = null;
+		List power = regions;
+		while (k > 0) {
+			if ((k & 1) == 1)
+				result = (result == null) ? power : plus(result, power);
+			k >>= 1;
+			if (k > 0)
+				power = plus(power, power);
+		}
+		return result;
+	}
+
+	private static List plus(List left, List right) {
+		// iterate the shorter list in the inner loop
+		if (left.size() < right.size()) {
+			List tmp = left;
+			left = right;
+			right = tmp;
+		}
+		Collection<Interval<Double>> rightIntervals = new ArrayList<Interval<Double>>(right.size());
+		for (List curr = right; curr != null; curr = curr.getNext()) {
+			rightIntervals.add(curr.getInterval());
+		}
+		return PowerPlantUtil.plusSets(left, rightIntervals);
+	}
+
+	private static synchronized ExecutorService getReductionPool() {
+		if (reductionPool == null) {
+			reductionPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "hole-detection");
+					thread.setDaemon(true); // must not keep the experiments alive
+					return thread;
+				}
+			});
+		}
+		return reductionPool;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+
 	@Deprecated
 	public Collection<Interval<Double>> detectSupplyHoles(Collection<Collection<Interval<Double>>> plantIntervals) {
 		boolean first = true;
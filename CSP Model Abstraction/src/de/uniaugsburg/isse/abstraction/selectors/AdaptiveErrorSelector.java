@@ -0,0 +1,169 @@
+package de.uniaugsburg.isse.abstraction.selectors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.uniaugsburg.isse.abstraction.InOutPair;
+import de.uniaugsburg.isse.abstraction.types.Interval;
+
+/**
+ * Refines the sampled piecewise linear function where it is least accurate: every segment between two neighboring
+ * samples gets an error estimate by comparing its chord with the extended neighboring segments at its midpoint. The
+ * segment with the largest estimate is bisected until all estimates (relative to the sampled output range) are below
+ * the tolerance or the maximal number of points is reached. Until the minimal number of points is reached, segments are
+ * bisected regardless of their error.
+ *
+ * Segments spanning a hole of the general feasible regions are never refined.
+ */
+public class AdaptiveErrorSelector extends SamplingPointSelector {
+
+	private final double errorTolerance;
+	private final int minPoints;
+	private final int maxPoints;
+	private final Set<Double> failedInputs;
+	private double nextInput;
+	private int requestedPoints;
+	private double estimatedError;
+
+	/**
+	 * @param errorTolerance
+	 *            maximal estimated interpolation error relative to the range of sampled outputs
+	 * @param minPoints
+	 *            minimal number of sampled points (including initial points)
+	 * @param maxPoints
+	 *            maximal number of sampled points (including initial points)
+	 */
+	public AdaptiveErrorSelector(double errorTolerance, int minPoints, int maxPoints) {
+		this.errorTolerance = errorTolerance;
+		this.minPoints = minPoints;
+		this.maxPoints = maxPoints;
+		this.failedInputs = new HashSet<Double>();
+	}
+
+	@Override
+	public void reset() {
+		failedInputs.clear();
+		requestedPoints = 0;
+		estimatedError = Double.POSITIVE_INFINITY;
+	}
+
+	@Override
+	protected void consumeInitialPoints(Collection<InOutPair> sampledPoints) {
+		requestedPoints = sampledPoints.size();
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (requestedPoints >= maxPoints)
+			return false;
+
+		List<InOutPair> points = new ArrayList<InOutPair>(sampledPoints);
+		if (points.size() < 2)
+			return false;
+
+		double minOutput = Double.POSITIVE_INFINITY;
+		double maxOutput = Double.NEGATIVE_INFINITY;
+		for (InOutPair pair : points) {
+			minOutput = Math.min(minOutput, pair.output);
+			maxOutput = Math.max(maxOutput, pair.output);
+		}
+		double outputRange = Math.max(maxOutput - minOutput, 1.0e-9);
+
+		boolean refineAnyway = points.size() < minPoints;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		double maxError = 0.0;
+		double candidate = Double.NaN;
+
+		for (int i = 0; i + 1 < points.size(); ++i) {
+			InOutPair left = points.get(i);
+			InOutPair right = points.get(i + 1);
+			double midpoint = (left.input + right.input) / 2.0;
+
+			if (!isRefinable(left.input, right.input, midpoint))
+				continue;
+
+			double error = estimateError(points, i, midpoint) / outputRange;
+			maxError = Math.max(maxError, error);
+
+			// before reaching the minimum, prefer long segments, afterwards the inaccurate ones
+			double score = refineAnyway ? (right.input - left.input) : error;
+			if (score > bestScore && (refineAnyway || error > errorTolerance)) {
+				bestScore = score;
+				candidate = midpoint;
+			}
+		}
+		estimatedError = maxError;
+
+		if (Double.isNaN(candidate))
+			return false;
+		nextInput = candidate;
+		return true;
+	}
+
+	/**
+	 * Checks that both samples lie in the same feasible region, the midpoint has not failed before and the segment is
+	 * not degenerate
+	 */
+	private boolean isRefinable(double leftInput, double rightInput, double midpoint) {
+		if (rightInput - leftInput < 1.0e-6 || failedInputs.contains(midpoint))
+			return false;
+
+		if (generalFeasibleRegions != null && !generalFeasibleRegions.isEmpty()) {
+			for (Interval<Double> region : generalFeasibleRegions) {
+				if (region.min <= leftInput && leftInput <= region.max)
+					return rightInput <= region.max;
+			}
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Largest deviation of the neighboring segments (extended as lines) from the chord at the midpoint of segment i
+	 */
+	private double estimateError(List<InOutPair> points, int i, double midpoint) {
+		InOutPair left = points.get(i);
+		InOutPair right = points.get(i + 1);
+		double chord = interpolate(left, right, midpoint);
+		double error = 0.0;
+
+		if (i > 0)
+			error = Math.max(error, Math.abs(interpolate(points.get(i - 1), left, midpoint) - chord));
+		if (i + 2 < points.size())
+			error = Math.max(error, Math.abs(interpolate(right, points.get(i + 2), midpoint) - chord));
+		return error;
+	}
+
+	private double interpolate(InOutPair a, InOutPair b, double x) {
+		if (b.input == a.input)
+			return a.output;
+		double slope = (b.output - a.output) / (b.input - a.input);
+		return a.output + slope * (x - a.input);
+	}
+
+	@Override
+	public double getNextInput() {
+		++requestedPoints;
+		return nextInput;
+	}
+
+	@Override
+	public void informFailure(double nextInput) {
+		failedInputs.add(nextInput);
+	}
+
+	@Override
+	public void destroy() {
+		// nothing to release
+	}
+
+	/**
+	 * @return the largest relative error estimate of the last refinement round
+	 */
+	public double getEstimatedError() {
+		return estimatedError;
+	}
+}
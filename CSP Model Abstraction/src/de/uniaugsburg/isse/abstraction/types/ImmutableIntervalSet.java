@@ -0,0 +1,214 @@
+package de.uniaugsburg.isse.abstraction.types;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable, interned set of non-overlapping intervals. Feasible regions and holes are often equal across time steps
+ * (after convergence) and across sibling AVPPs; valueOf hands out one shared instance per distinct set so that its hash
+ * and its textual representations for the data files are computed only once.
+ *
+ * The set keeps its own copies of the intervals and only hands out copies of them, so a shared set cannot be changed
+ * through the intervals it was created from or returned.
+ */
+public final class ImmutableIntervalSet extends AbstractSet<Interval<Double>> implements SortedSet<Interval<Double>> {
+
+	private static final Map<ImmutableIntervalSet, WeakReference<ImmutableIntervalSet>> internedSets = new WeakHashMap<ImmutableIntervalSet, WeakReference<ImmutableIntervalSet>>();
+	private static final ImmutableIntervalSet EMPTY = valueOf(new ArrayList<Interval<Double>>(0));
+
+	private final List<Interval<Double>> intervals;
+	private final int hash;
+
+	// rendered forms, derived state only, computed on first use
+	private volatile String cplexText;
+	private volatile String dataText;
+
+	private ImmutableIntervalSet(List<Interval<Double>> intervals) {
+		this.intervals = Collections.unmodifiableList(intervals);
+		int h = 0;
+		for (Interval<Double> interval : intervals) {
+			h += interval.hashCode();
+		}
+		this.hash = h;
+	}
+
+	/**
+	 * Returns the shared instance equal to the given intervals
+	 *
+	 * @param intervals
+	 *            non-overlapping intervals, copied
+	 * @return
+	 */
+	public static ImmutableIntervalSet valueOf(Collection<Interval<Double>> intervals) {
+		if (intervals instanceof ImmutableIntervalSet)
+			return (ImmutableIntervalSet) intervals;
+
+		TreeSet<Interval<Double>> sorted = new TreeSet<Interval<Double>>();
+		for (Interval<Double> interval : intervals) {
+			sorted.add(interval.copy());
+		}
+		ImmutableIntervalSet candidate = new ImmutableIntervalSet(new ArrayList<Interval<Double>>(sorted));
+
+		synchronized (internedSets) {
+			WeakReference<ImmutableIntervalSet> reference = internedSets.get(candidate);
+			ImmutableIntervalSet interned = reference == null ? null : reference.get();
+			if (interned != null)
+				return interned;
+			internedSets.put(candidate, new WeakReference<ImmutableIntervalSet>(candidate));
+			return candidate;
+		}
+	}
+
+	public static ImmutableIntervalSet empty() {
+		return EMPTY;
+	}
+
+	@Override
+	public Iterator<Interval<Double>> iterator() {
+		final Iterator<Interval<Double>> iterator = intervals.iterator();
+		return new Iterator<Interval<Double>>() {
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Interval<Double> next() {
+				return iterator.next().copy();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return intervals.size();
+	}
+
+	@Override
+	public Comparator<? super Interval<Double>> comparator() {
+		return null; // natural ordering
+	}
+
+	@Override
+	public Interval<Double> first() {
+		if (intervals.isEmpty())
+			throw new NoSuchElementException();
+		return intervals.get(0).copy();
+	}
+
+	@Override
+	public Interval<Double> last() {
+		if (intervals.isEmpty())
+			throw new NoSuchElementException();
+		return intervals.get(intervals.size() - 1).copy();
+	}
+
+	@Override
+	public SortedSet<Interval<Double>> subSet(Interval<Double> fromElement, Interval<Double> toElement) {
+		return valueOf(new TreeSet<Interval<Double>>(this).subSet(fromElement, toElement));
+	}
+
+	@Override
+	public SortedSet<Interval<Double>> headSet(Interval<Double> toElement) {
+		return valueOf(new TreeSet<Interval<Double>>(this).headSet(toElement));
+	}
+
+	@Override
+	public SortedSet<Interval<Double>> tailSet(Interval<Double> fromElement) {
+		return valueOf(new TreeSet<Interval<Double>>(this).tailSet(fromElement));
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (o instanceof ImmutableIntervalSet) {
+			ImmutableIntervalSet other = (ImmutableIntervalSet) o;
+			return hash == other.hash && intervals.equals(other.intervals);
+		}
+		return super.equals(o);
+	}
+
+	/**
+	 * @return the compact representation used in temporal data arrays
+	 */
+	public String getCplexText() {
+		String text = cplexText;
+		if (text == null) {
+			text = renderCplexText(intervals);
+			cplexText = text;
+		}
+		return text;
+	}
+
+	/**
+	 * @return the multi-line representation used for general holes and bounds
+	 */
+	public String getDataText() {
+		String text = dataText;
+		if (text == null) {
+			text = renderDataText(intervals);
+			dataText = text;
+		}
+		return text;
+	}
+
+	/**
+	 * Prints a collection of intervals in CPLEX conform syntax ({<1.0, 2.0>})
+	 *
+	 * @param intervalSet
+	 *            may be null
+	 * @return
+	 */
+	public static String renderCplexText(Collection<Interval<Double>> intervalSet) {
+		StringBuilder sb = new StringBuilder("{");
+		if (intervalSet != null) {
+			for (Interval<Double> iv : intervalSet) {
+				sb.append("<" + iv.min + ", " + iv.max + ">");
+			}
+		}
+		sb.append("}");
+		return sb.toString();
+	}
+
+	/**
+	 * Prints a collection of intervals as a multi-line OPL set, one tuple per line
+	 *
+	 * @param intervalSet
+	 * @return
+	 */
+	public static String renderDataText(Collection<Interval<Double>> intervalSet) {
+		StringBuilder sb = new StringBuilder("{\n");
+		boolean first = true;
+		for (Interval<Double> interval : intervalSet) {
+			if (!first)
+				sb.append(",\n");
+			sb.append(" <" + interval.min + "," + interval.max + ">");
+			first = false;
+		}
+		sb.append(" \n}\n");
+		return sb.toString();
+	}
+}
@@ -355,6 +355,179 @@ public class PiecewiseLinearFunction {
 		return max;
 	}
 
+	/**
+	 * Removes breakpoints as long as the resulting function deviates at most maxError from this one at every
+	 * breakpoint (Douglas-Peucker on the breakpoints), collinear segments are always merged. The first and last
+	 * breakpoint as well as the outer slopes are kept, so the function is unchanged outside [t_1, t_n].
+	 * 
+	 * @param maxError
+	 *            absolute error bound on the output
+	 * @return a new function with at most as many breakpoints as this one
+	 */
+	public PiecewiseLinearFunction simplify(double maxError) {
+		if (this.t == null || this.t.length < 3)
+			return this;
+
+		boolean[] keep = new boolean[this.t.length];
+		keep[0] = true;
+		keep[this.t.length - 1] = true;
+		this.markBreakpoints(keep, 0, this.t.length - 1, Math.max(maxError, 1.0e-9));
+
+		int kept = 0;
+		for (int i = 0; i < keep.length; ++i) {
+			if (keep[i])
+				++kept;
+		}
+
+		PiecewiseLinearFunction simplified = new PiecewiseLinearFunction();
+		simplified.t = new double[kept];
+		simplified.s = new double[kept + 1];
+		simplified.s[0] = this.s[0];
+		simplified.s[kept] = this.s[this.s.length - 1];
+		int j = 0;
+		int previous = 0;
+		for (int i = 0; i < keep.length; ++i) {
+			if (keep[i]) {
+				simplified.t[j] = this.t[i];
+				if (j > 0) {
+					double slope = (this.f[i] - this.f[previous]) / (this.t[i] - this.t[previous]);
+					simplified.s[j] = Math.abs(slope) < 0.00001 ? 0.0 : slope;
+				}
+				previous = i;
+				++j;
+			}
+		}
+		simplified.t0 = simplified.t[0];
+		simplified.v0 = this.f[0];
+		simplified.ins = this.ins;
+		simplified.outs = this.outs;
+		simplified.numberInputOutputPairs = this.numberInputOutputPairs;
+		simplified.csvString = this.csvString;
+		simplified.updateForEvaluation();
+		return simplified;
+	}
+
+	/**
+	 * Keeps the breakpoint between from and to that is farthest from the chord if its distance exceeds maxError and
+	 * recurses on both halves
+	 */
+	private void markBreakpoints(boolean[] keep, int from, int to, double maxError) {
+		if (to - from < 2)
+			return;
+		double slope = (this.f[to] - this.f[from]) / (this.t[to] - this.t[from]);
+		int farthest = -1;
+		double maxDistance = maxError;
+		for (int i = from + 1; i < to; ++i) {
+			double chord = this.f[from] + slope * (this.t[i] - this.t[from]);
+			double distance = Math.abs(this.f[i] - chord);
+			if (distance > maxDistance) {
+				maxDistance = distance;
+				farthest = i;
+			}
+		}
+		if (farthest >= 0) {
+			keep[farthest] = true;
+			this.markBreakpoints(keep, from, farthest, maxError);
+			this.markBreakpoints(keep, farthest, to, maxError);
+		}
+	}
+
+	/**
+	 * Computes the lower convex envelope of the breakpoints (monotone chain). The outer slopes are bent if necessary so
+	 * that the result is convex on the whole real line; a convex cost function can be minimized without additional
+	 * binaries.
+	 * 
+	 * @return a convex function that is less than or equal to this one on [t_1, t_n]
+	 */
+	public PiecewiseLinearFunction convexHull() {
+		if (this.t == null || this.t.length < 2)
+			return this;
+
+		int[] hull = new int[this.t.length];
+		int size = 0;
+		for (int i = 0; i < this.t.length; ++i) {
+			// remove the last hull point as long as it is not below the segment to the new point
+			while (size >= 2) {
+				int a = hull[size - 2];
+				int b = hull[size - 1];
+				double cross = (this.t[b] - this.t[a]) * (this.f[i] - this.f[a]) - (this.f[b] - this.f[a]) * (this.t[i] - this.t[a]);
+				if (cross <= 0)
+					--size;
+				else
+					break;
+			}
+			hull[size++] = i;
+		}
+
+		PiecewiseLinearFunction convex = new PiecewiseLinearFunction();
+		convex.t = new double[size];
+		convex.s = new double[size + 1];
+		for (int j = 0; j < size; ++j) {
+			convex.t[j] = this.t[hull[j]];
+			if (j > 0)
+				convex.s[j] = (this.f[hull[j]] - this.f[hull[j - 1]]) / (this.t[hull[j]] - this.t[hull[j - 1]]);
+		}
+		convex.s[0] = size > 1 ? Math.min(this.s[0], convex.s[1]) : this.s[0];
+		convex.s[size] = size > 1 ? Math.max(this.s[this.s.length - 1], convex.s[size - 1]) : this.s[this.s.length - 1];
+		convex.t0 = convex.t[0];
+		convex.v0 = this.f[0];
+		convex.ins = this.ins;
+		convex.outs = this.outs;
+		convex.numberInputOutputPairs = this.numberInputOutputPairs;
+		convex.csvString = this.csvString;
+		convex.updateForEvaluation();
+		return convex;
+	}
+
+	/**
+	 * Maximal absolute difference to another function on the breakpoints of both functions within [t_1, t_n] of this
+	 * function
+	 * 
+	 * @param other
+	 * @return
+	 */
+	public double getMaxDeviation(PiecewiseLinearFunction other) {
+		double deviation = 0.0;
+		double first = this.t[0];
+		double last = this.t[this.t.length - 1];
+		for (int i = 0; i < this.t.length; ++i) {
+			deviation = Math.max(deviation, Math.abs(this.f[i] - other.evaluate(this.t[i])));
+		}
+		for (int i = 0; i < other.t.length; ++i) {
+			if (other.t[i] >= first && other.t[i] <= last)
+				deviation = Math.max(deviation, Math.abs(other.f[i] - this.evaluate(other.t[i])));
+		}
+		return deviation;
+	}
+
+	/**
+	 * Checks whether slopes are non-decreasing
+	 * 
+	 * @return
+	 */
+	public boolean isConvex() {
+		for (int i = 1; i < this.s.length; ++i) {
+			if (this.s[i] < this.s[i - 1] - 0.00001)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return max f(t_i) - min f(t_i) over all breakpoints
+	 */
+	public double getOutputRange() {
+		if (this.f == null || this.f.length == 0)
+			return 0.0;
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < this.f.length; ++i) {
+			min = Math.min(min, this.f[i]);
+			max = Math.max(max, this.f[i]);
+		}
+		return max - min;
+	}
+
 	public void divideSlopesBy(double d) {
 		this.v0 /= d;
 		for (int i = 0; i < this.s.length; ++i)
@@ -0,0 +1,137 @@
+package de.uniaugsburg.isse.abstraction.types;
+
+import java.util.Arrays;
+
+/**
+ * Variable-length time steps for the prediction horizon: fine steps for the near future, coarse ones for the far future
+ * that is planned again anyway. Step t (1-based) lasts getStepLength(t) minutes, which has to be a multiple of the base
+ * step length (the resolution of the input data); step 0 is the current state.
+ */
+public class TimeGrid {
+	private final double baseLength;
+	private final double[] stepLengths;
+
+	/**
+	 * @param baseLength
+	 *            minutes of one step of the input data
+	 * @param stepLengths
+	 *            minutes of steps 1 .. T
+	 */
+	public TimeGrid(double baseLength, double[] stepLengths) {
+		if (stepLengths.length == 0)
+			throw new RuntimeException("Time grid needs at least one step!");
+		for (double stepLength : stepLengths) {
+			double multiple = stepLength / baseLength;
+			if (multiple < 1.0 || Math.abs(multiple - Math.rint(multiple)) > 1.0e-6)
+				throw new RuntimeException("Step length " + stepLength + " is not a multiple of " + baseLength);
+		}
+		this.baseLength = baseLength;
+		this.stepLengths = stepLengths.clone();
+	}
+
+	/**
+	 * Parses comma separated step lengths, e.g., "15,15,15,30,30,60"
+	 *
+	 * @param baseLength
+	 * @param stepLengths
+	 * @return
+	 */
+	public static TimeGrid parse(double baseLength, String stepLengths) {
+		String[] parts = stepLengths.split(",");
+		double[] lengths = new double[parts.length];
+		for (int i = 0; i < parts.length; ++i) {
+			lengths[i] = Double.parseDouble(parts[i].trim());
+		}
+		return new TimeGrid(baseLength, lengths);
+	}
+
+	/**
+	 * @return number of steps T
+	 */
+	public int size() {
+		return stepLengths.length;
+	}
+
+	public double getBaseLength() {
+		return baseLength;
+	}
+
+	/**
+	 * @param t
+	 *            1-based step, steps beyond the horizon keep the last length
+	 * @return minutes of step t
+	 */
+	public double getStepLength(int t) {
+		if (t <= 0)
+			return baseLength;
+		return stepLengths[Math.min(t, stepLengths.length) - 1];
+	}
+
+	/**
+	 * @param t
+	 * @return number of base steps covered by step t
+	 */
+	public int getBaseSteps(int t) {
+		return (int) Math.round(getStepLength(t) / baseLength);
+	}
+
+	/**
+	 * @return number of base steps covered by the whole horizon
+	 */
+	public int getCoveredBaseSteps() {
+		int covered = 0;
+		for (int t = 1; t <= stepLengths.length; ++t)
+			covered += getBaseSteps(t);
+		return covered;
+	}
+
+	public boolean isUniform() {
+		for (double stepLength : stepLengths) {
+			if (stepLength != baseLength)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Averages base step values (e.g., residual load) over the steps of the grid
+	 *
+	 * @param values
+	 *            values per base step
+	 * @param offset
+	 *            index of the base step corresponding to step 1
+	 * @return one value per grid step
+	 */
+	public Double[] aggregate(Double[] values, int offset) {
+		Double[] aggregated = new Double[stepLengths.length];
+		int index = offset;
+		for (int t = 1; t <= stepLengths.length; ++t) {
+			int baseSteps = getBaseSteps(t);
+			double sum = 0.0;
+			for (int i = 0; i < baseSteps; ++i)
+				sum += values[index++];
+			aggregated[t - 1] = sum / baseSteps;
+		}
+		return aggregated;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(stepLengths) + Double.valueOf(baseLength).hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof TimeGrid))
+			return false;
+		TimeGrid other = (TimeGrid) obj;
+		return baseLength == other.baseLength && Arrays.equals(stepLengths, other.stepLengths);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(stepLengths);
+	}
+}
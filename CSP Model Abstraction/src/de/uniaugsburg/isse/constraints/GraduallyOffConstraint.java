@@ -20,4 +20,8 @@ public class GraduallyOffConstraint extends PlantConstraint {
 		return (p_next > P_min);
 	}
 
+	public double getPMin() {
+		return P_min;
+	}
+
 }
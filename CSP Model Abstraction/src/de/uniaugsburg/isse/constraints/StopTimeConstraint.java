@@ -32,4 +32,12 @@ public class StopTimeConstraint extends PlantConstraint {
 			return !(getPlant().getConsRunning().min - minOnTime >= 0);
 		}
 	}
+
+	public int getMinOffTime() {
+		return minOffTime;
+	}
+
+	public int getMinOnTime() {
+		return minOnTime;
+	}
 }
@@ -1,11 +1,13 @@
 package de.uniaugsburg.isse.powerplants;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.TreeSet;
 
 import de.uniaugsburg.isse.abstraction.types.Interval;
 import de.uniaugsburg.isse.abstraction.types.PiecewiseLinearFunction;
@@ -262,13 +264,52 @@ public class PowerPlantData {
 			}
 		}
 
-		// woops, we have to alter the intervals
-		if (closestInterval.min > initPower)
-			closestInterval.min = initPower;
-		else
-			closestInterval.max = initPower;
+		// woops, we have to alter the intervals - on a copy since region sets may be shared
+		SortedSet<Interval<Double>> alteredRegions = new TreeSet<Interval<Double>>();
+		for (Interval<Double> feasReg : feasibleRegions) {
+			if (feasReg == closestInterval) {
+				Interval<Double> altered = feasReg.copy();
+				if (altered.min > initPower)
+					altered.min = initPower;
+				else
+					altered.max = initPower;
+				alteredRegions.add(altered);
+			} else {
+				alteredRegions.add(feasReg);
+			}
+		}
+		feasibleRegions = alteredRegions;
 		return true;
 	};
+
+	/**
+	 * Copy with its own parameters, regions and constraint collections, e.g., to hand the data to another thread while
+	 * the original keeps being updated; intervals, constraints and functions are shared as they are replaced rather
+	 * than changed
+	 * 
+	 * @return
+	 */
+	public PowerPlantData copy() {
+		PowerPlantData copy = new PowerPlantData(name);
+		copy.parameters.putAll(parameters);
+		copy.runningIdsConstraints.putAll(runningIdsConstraints);
+		copy.powerBoundaries = powerBoundaries;
+		if (feasibleRegions != null)
+			copy.feasibleRegions = new TreeSet<Interval<Double>>(feasibleRegions);
+		if (holes != null)
+			copy.holes = new LinkedList<Interval<Double>>(holes);
+		if (allFeasibleRegions != null)
+			copy.allFeasibleRegions = new ArrayList<SortedSet<Interval<Double>>>(allFeasibleRegions);
+		if (allHoles != null)
+			copy.allHoles = new ArrayList<Collection<Interval<Double>>>(allHoles);
+		if (associatedConstraints != null)
+			copy.associatedConstraints = new LinkedList<Constraint>(associatedConstraints);
+		copy.positiveDelta = positiveDelta;
+		copy.negativeDelta = negativeDelta;
+		copy.costFunction = costFunction;
+		copy.avpp = avpp;
+		return copy;
+	}
 	
 	@Override
 	public String toString() {
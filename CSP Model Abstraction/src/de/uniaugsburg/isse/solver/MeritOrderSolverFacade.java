@@ -0,0 +1,445 @@
+package de.uniaugsburg.isse.solver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+
+import de.uniaugsburg.isse.abstraction.types.Interval;
+import de.uniaugsburg.isse.abstraction.types.PiecewiseLinearFunction;
+import de.uniaugsburg.isse.abstraction.types.TimeGrid;
+import de.uniaugsburg.isse.constraints.Constraint;
+import de.uniaugsburg.isse.constraints.FixedChangeConstraint;
+import de.uniaugsburg.isse.constraints.RateOfChangeConstraint;
+import de.uniaugsburg.isse.constraints.StopTimeConstraint;
+import de.uniaugsburg.isse.powerplants.PowerPlantData;
+import de.uniaugsburg.isse.powerplants.PowerPlantState;
+
+/**
+ * Greedy dispatcher for a single AVPP that needs no external solver: for every step of the horizon, the residual load
+ * is allocated to the children in merit order, i.e., the child with the cheapest marginal costs (slope of its cost
+ * function at its current output) is raised first. Concrete plants are propagated step by step like in the exported
+ * model (bounds, ramping, forced states), AVPPs may only take values in their temporal feasible regions (falling back
+ * to the general ones once converged), holes are crossed by jumping to the next region at once.
+ *
+ * The result is always a feasible schedule for the children but usually more expensive than the optimal one and it may
+ * miss the load if it is not reachable exactly (the exact model penalizes the violation instead). The model and data
+ * files passed to solve are ignored, the problem has to be set via setProblem before.
+ */
+public class MeritOrderSolverFacade implements SolverFacade {
+	private static final double EPSILON = 1.0e-6;
+
+	private int timeHorizon;
+	private double deltaTime = 15.0;
+	private TimeGrid timeGrid;
+
+	// problem
+	private List<PowerPlantData> children;
+	private Map<String, PowerPlantState> states;
+	private Double[] residualLoad;
+
+	// solution, index 0 is the initial state
+	private Map<String, double[]> production;
+	private double[] totalProduction;
+	private double objective;
+	private boolean solved;
+
+	private boolean useInitialSolution;
+	private boolean backupSettings;
+
+	public MeritOrderSolverFacade(int timeHorizon) {
+		this.timeHorizon = timeHorizon;
+	}
+
+	/**
+	 * @param children
+	 *            plants and AVPPs to dispatch
+	 * @param states
+	 *            current states of the children
+	 * @param residualLoad
+	 *            load for steps 1 .. T
+	 */
+	public void setProblem(Collection<PowerPlantData> children, Map<String, PowerPlantState> states, Double[] residualLoad) {
+		this.children = new ArrayList<PowerPlantData>(children);
+		this.states = states;
+		this.residualLoad = residualLoad;
+	}
+
+	@Override
+	public void solve(String modelFile, String dataFile) {
+		if (children == null)
+			throw new RuntimeException("Merit order dispatch needs a problem, call setProblem first!");
+
+		int n = children.size();
+		production = new HashMap<String, double[]>(n * 2);
+		totalProduction = new double[timeHorizon + 1];
+		objective = 0.0;
+
+		PowerPlantState[] simulated = new PowerPlantState[n];
+		PiecewiseLinearFunction[] costs = new PiecewiseLinearFunction[n];
+		for (int i = 0; i < n; ++i) {
+			PowerPlantData child = children.get(i);
+			double[] power = new double[timeHorizon + 1];
+			power[0] = states.get(child.getName()).getPower().min;
+			totalProduction[0] += power[0];
+			production.put(child.getName(), power);
+			costs[i] = child.getCostFunction();
+			if (!child.isAVPP())
+				simulated[i] = simulate(child, power[0]);
+		}
+
+		for (int t = 1; t <= timeHorizon; ++t) {
+			List<List<Interval<Double>>> regions = new ArrayList<List<Interval<Double>>>(n);
+			for (int i = 0; i < n; ++i) {
+				if (children.get(i).isAVPP())
+					regions.add(getAvppRegions(children.get(i), t));
+				else
+					regions.add(getPlantRegions(simulated[i], t));
+			}
+
+			double[] dispatch = dispatchStep(regions, costs, residualLoad[t - 1]);
+			for (int i = 0; i < n; ++i) {
+				production.get(children.get(i).getName())[t] = dispatch[i];
+				totalProduction[t] += dispatch[i];
+				if (costs[i] != null && !costs[i].isEmpty() && dispatch[i] > 0)
+					objective += costs[i].evaluate(dispatch[i]);
+				if (simulated[i] != null) {
+					boolean running = dispatch[i] > 0;
+					simulated[i].updateRunning(running, running);
+					simulated[i].setPower(new Interval<Double>(dispatch[i]));
+				}
+			}
+		}
+		solved = true;
+	}
+
+	private PowerPlantState simulate(PowerPlantData pd, double initPower) {
+		// the model derives the initial running state from the initial production
+		boolean initRunning = initPower > 0;
+		PowerPlantState pp = new PowerPlantState();
+		pp.setData(pd);
+		pp.setPower(new Interval<Double>(initPower));
+		pp.setRunning(new Interval<Boolean>(initRunning));
+		pp.setConsRunning(new Interval<Integer>(initRunning ? 1 : 0));
+		pp.setConsStopping(new Interval<Integer>(initRunning ? 0 : 1));
+		return pp;
+	}
+
+	/**
+	 * Values a concrete plant can take at step t given its dispatched output at t - 1, same semantics as Presolve
+	 *
+	 * @param pp
+	 * @param t
+	 * @return
+	 */
+	private List<Interval<Double>> getPlantRegions(PowerPlantState pp, int t) {
+		PowerPlantData pd = pp.getData();
+		pp.updateConstraints();
+		pp.setSimulationStep(t);
+		double P_min_t_inc = pd.getPowerBoundaries().min;
+		double P_max_t_inc = pd.getPowerBoundaries().max;
+		boolean On_min_t_inc = false;
+		boolean On_max_t_inc = true;
+		boolean wasRunning = pp.onlyOn();
+
+		for (Constraint c : pd.getAssociatedConstraints()) {
+			if (c.isSoft() || c instanceof StopTimeConstraint)
+				continue;
+			// the change is only restricted between two running steps
+			if (!wasRunning && (c instanceof FixedChangeConstraint || c instanceof RateOfChangeConstraint))
+				continue;
+			c.setDeltaTime(getDeltaTime(t));
+			P_min_t_inc = Math.max(c.minimize(), P_min_t_inc);
+			On_min_t_inc = c.minimizeBool() || On_min_t_inc;
+			P_max_t_inc = Math.min(c.maximize(), P_max_t_inc);
+			On_max_t_inc = c.maximizeBool() && On_max_t_inc;
+		}
+
+		List<Interval<Double>> regions = new ArrayList<Interval<Double>>(2);
+		if (!On_min_t_inc || !On_max_t_inc)
+			regions.add(new Interval<Double>(0.0));
+		if (On_max_t_inc)
+			regions.add(new Interval<Double>(P_min_t_inc, Math.max(P_min_t_inc, P_max_t_inc)));
+		return regions;
+	}
+
+	private List<Interval<Double>> getAvppRegions(PowerPlantData avpp, int t) {
+		SortedSet<Interval<Double>> regions = avpp.getFeasibleRegions();
+		List<SortedSet<Interval<Double>>> allRegions = avpp.getAllFeasibleRegions();
+		if (allRegions != null && allRegions.size() >= t && !allRegions.get(t - 1).isEmpty())
+			regions = allRegions.get(t - 1);
+		if (regions == null || regions.isEmpty()) {
+			List<Interval<Double>> bounds = new ArrayList<Interval<Double>>(1);
+			bounds.add(avpp.getPowerBoundaries());
+			return bounds;
+		}
+		return new ArrayList<Interval<Double>>(regions);
+	}
+
+	/**
+	 * Starts every child at the lowest value it can take and raises the child with the cheapest marginal costs until the
+	 * load is met. Within a region, a child is raised up to the next breakpoint of its cost function; crossing a hole
+	 * is only possible as a whole, hence an overshoot is compensated by lowering the most expensive children again.
+	 *
+	 * @param regions
+	 *            sorted feasible regions per child
+	 * @param costs
+	 * @param load
+	 * @return output per child
+	 */
+	protected double[] dispatchStep(List<List<Interval<Double>>> regions, PiecewiseLinearFunction[] costs, double load) {
+		int n = regions.size();
+		double[] output = new double[n];
+		int[] region = new int[n];
+		double remaining = load;
+		for (int i = 0; i < n; ++i) {
+			output[i] = regions.get(i).get(0).min;
+			remaining -= output[i];
+		}
+
+		int jumped = -1;
+		while (remaining > EPSILON) {
+			int best = -1;
+			double bestMarginal = Double.POSITIVE_INFINITY;
+			double bestTarget = 0.0;
+			boolean bestIsJump = false;
+			int overshooting = -1; // jump with the smallest overshoot if nothing fits anymore
+			double overshootTarget = 0.0;
+
+			for (int i = 0; i < n; ++i) {
+				List<Interval<Double>> childRegions = regions.get(i);
+				double current = output[i];
+				Interval<Double> currentRegion = childRegions.get(region[i]);
+				if (current < currentRegion.max - EPSILON) {
+					double target = Math.min(getNextBreakpoint(costs[i], current, currentRegion.max), current + remaining);
+					double marginal = getMarginalCosts(costs[i], current, target);
+					if (marginal < bestMarginal) {
+						best = i;
+						bestMarginal = marginal;
+						bestTarget = target;
+						bestIsJump = false;
+					}
+				} else if (region[i] + 1 < childRegions.size()) {
+					double target = childRegions.get(region[i] + 1).min;
+					if (target - current <= remaining + EPSILON) {
+						double marginal = getMarginalCosts(costs[i], current, target);
+						if (marginal < bestMarginal) {
+							best = i;
+							bestMarginal = marginal;
+							bestTarget = target;
+							bestIsJump = true;
+						}
+					} else if (overshooting < 0 || target - current < overshootTarget - output[overshooting]) {
+						overshooting = i;
+						overshootTarget = target;
+					}
+				}
+			}
+
+			if (best < 0) {
+				if (overshooting < 0) // load cannot be reached
+					break;
+				best = overshooting;
+				bestTarget = overshootTarget;
+				bestIsJump = true;
+				jumped = best;
+			}
+			if (bestIsJump)
+				++region[best];
+			remaining -= bestTarget - output[best];
+			output[best] = bestTarget;
+		}
+
+		if (remaining < -EPSILON)
+			lowerExpensiveChildren(regions, costs, output, region, -remaining, jumped);
+		return output;
+	}
+
+	private void lowerExpensiveChildren(List<List<Interval<Double>>> regions, PiecewiseLinearFunction[] costs, double[] output, int[] region,
+			double excess, int jumped) {
+		while (excess > EPSILON) {
+			int worst = -1;
+			double worstMarginal = Double.NEGATIVE_INFINITY;
+			double worstTarget = 0.0;
+			for (int i = 0; i < output.length; ++i) {
+				double regionMin = regions.get(i).get(region[i]).min;
+				if (i == jumped || output[i] <= regionMin + EPSILON)
+					continue;
+				double target = Math.max(getPreviousBreakpoint(costs[i], output[i], regionMin), output[i] - excess);
+				double marginal = getMarginalCosts(costs[i], target, output[i]);
+				if (marginal > worstMarginal) {
+					worst = i;
+					worstMarginal = marginal;
+					worstTarget = target;
+				}
+			}
+			if (worst < 0)
+				break;
+			excess -= output[worst] - worstTarget;
+			output[worst] = worstTarget;
+		}
+	}
+
+	private double getMarginalCosts(PiecewiseLinearFunction costs, double from, double to) {
+		if (costs == null || costs.isEmpty() || to - from < EPSILON)
+			return 0.0;
+		return (costs.evaluate(to) - costs.evaluate(from)) / (to - from);
+	}
+
+	private double getNextBreakpoint(PiecewiseLinearFunction costs, double current, double max) {
+		if (costs == null || costs.isEmpty())
+			return max;
+		for (double breakpoint : costs.getBreakpoints(costs.getBPs())) {
+			if (breakpoint > current + EPSILON && breakpoint < max)
+				return breakpoint;
+		}
+		return max;
+	}
+
+	private double getPreviousBreakpoint(PiecewiseLinearFunction costs, double current, double min) {
+		double previous = min;
+		if (costs == null || costs.isEmpty())
+			return previous;
+		for (double breakpoint : costs.getBreakpoints(costs.getBPs())) {
+			if (breakpoint < current - EPSILON && breakpoint > previous)
+				previous = breakpoint;
+		}
+		return previous;
+	}
+
+	public double getDeltaTime(int t) {
+		return timeGrid == null ? deltaTime : timeGrid.getStepLength(t);
+	}
+
+	@Override
+	public double getProduction(String key, int i) {
+		return production.get(key)[i];
+	}
+
+	@Override
+	public boolean getRunning(String key, int i) {
+		return production.get(key)[i] > 0;
+	}
+
+	/**
+	 * @return costs of the dispatched children over the horizon, without any penalties for missing the load
+	 */
+	@Override
+	public double getObjective() {
+		return objective;
+	}
+
+	@Override
+	public double getDecExpr(String decExpr, int i) {
+		throw new RuntimeException("Decision expression " + decExpr + " is not available in merit order dispatch");
+	}
+
+	@Override
+	public double getDecVar(String decVar, String p, int i) {
+		if ("energyProduction".equals(decVar))
+			return getProduction(p, i);
+		if ("running".equals(decVar))
+			return getRunning(p, i) ? 1.0 : 0.0;
+		throw new RuntimeException("Decision variable " + decVar + " is not available in merit order dispatch");
+	}
+
+	@Override
+	public double getTotalProduction(int i) {
+		return totalProduction[i];
+	}
+
+	@Override
+	public SolutionMatrix getSolution(Collection<String> plants, int timeHorizon) {
+		SolutionMatrix solution = new SolutionMatrix(plants, timeHorizon);
+		int steps = Math.min(timeHorizon, this.timeHorizon);
+		int p = 0;
+		for (String plant : plants) {
+			double[] plantProduction = production.get(plant);
+			System.arraycopy(plantProduction, 1, solution.getProduction()[p], 1, steps);
+			for (int t = 1; t <= steps; ++t) {
+				solution.getRunning()[p][t] = plantProduction[t] > 0;
+			}
+			++p;
+		}
+		System.arraycopy(totalProduction, 1, solution.getTotalProduction(), 1, steps);
+		solution.setObjective(objective);
+		return solution;
+	}
+
+	@Override
+	public void setSettingsFile(String settingsFile) {
+		// no settings
+	}
+
+	@Override
+	public void setTimeLimit(int seconds) {
+		// a greedy pass needs no time limit
+	}
+
+	@Override
+	public void setMipGap(double relativeGap) {
+		// never optimal anyway
+	}
+
+	@Override
+	public void cleanup() {
+		production = null;
+		totalProduction = null;
+		solved = false;
+	}
+
+	@Override
+	public boolean isSolved() {
+		return solved;
+	}
+
+	@Override
+	public void setSimplified(boolean isSimplified) {
+	}
+
+	@Override
+	public void setPresolve(boolean b) {
+	}
+
+	@Override
+	public void setUseInitialSolution(boolean useInitialSolution) {
+		this.useInitialSolution = useInitialSolution;
+	}
+
+	@Override
+	public boolean isUseInitialSolution() {
+		return useInitialSolution;
+	}
+
+	@Override
+	public void setBackupSettings(boolean backupSettings) {
+		this.backupSettings = backupSettings;
+	}
+
+	@Override
+	public boolean isBackupSettings() {
+		return backupSettings;
+	}
+
+	public int getTimeHorizon() {
+		return timeHorizon;
+	}
+
+	public void setTimeHorizon(int timeHorizon) {
+		this.timeHorizon = timeHorizon;
+	}
+
+	public void setDeltaTime(double deltaTime) {
+		this.deltaTime = deltaTime;
+	}
+
+	public TimeGrid getTimeGrid() {
+		return timeGrid;
+	}
+
+	public void setTimeGrid(TimeGrid timeGrid) {
+		this.timeGrid = timeGrid;
+	}
+}
@@ -0,0 +1,113 @@
+package de.uniaugsburg.isse.solver;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Production and running values of several plants and the total production over the horizon, read from a solver in one
+ * pass. Rows are plants in the order they were requested (see getIndex), columns are the steps 1 .. T of the exported
+ * models; column 0 is not used.
+ */
+public class SolutionMatrix {
+	private final Map<String, Integer> plantIndex;
+	private final int timeHorizon;
+	private final double[][] production;
+	private final boolean[][] running;
+	private final double[] totalProduction;
+	private double objective;
+
+	/**
+	 * Creates an empty matrix to be filled by a solver facade
+	 *
+	 * @param plants
+	 * @param timeHorizon
+	 */
+	public SolutionMatrix(Collection<String> plants, int timeHorizon) {
+		this.timeHorizon = timeHorizon;
+		this.plantIndex = new HashMap<String, Integer>(plants.size() * 2);
+		for (String plant : plants) {
+			plantIndex.put(plant, plantIndex.size());
+		}
+		this.production = new double[plants.size()][timeHorizon + 1];
+		this.running = new boolean[plants.size()][timeHorizon + 1];
+		this.totalProduction = new double[timeHorizon + 1];
+	}
+
+	/**
+	 * Fills a matrix by single lookups, for facades that offer no faster access
+	 *
+	 * @param solver
+	 *            solved facade
+	 * @param plants
+	 * @param timeHorizon
+	 * @return
+	 */
+	public static SolutionMatrix read(SolverFacade solver, Collection<String> plants, int timeHorizon) {
+		SolutionMatrix solution = new SolutionMatrix(plants, timeHorizon);
+		int p = 0;
+		for (String plant : plants) {
+			for (int t = 1; t <= timeHorizon; ++t) {
+				solution.production[p][t] = solver.getProduction(plant, t);
+				solution.running[p][t] = solver.getRunning(plant, t);
+			}
+			++p;
+		}
+		for (int t = 1; t <= timeHorizon; ++t) {
+			solution.totalProduction[t] = solver.getTotalProduction(t);
+		}
+		solution.objective = solver.getObjective();
+		return solution;
+	}
+
+	/**
+	 * @param plant
+	 * @return row of the plant, -1 if it was not requested
+	 */
+	public int getIndex(String plant) {
+		Integer index = plantIndex.get(plant);
+		return index == null ? -1 : index;
+	}
+
+	public Map<String, Integer> getPlantIndex() {
+		return plantIndex;
+	}
+
+	public double getProduction(String plant, int t) {
+		return production[plantIndex.get(plant)][t];
+	}
+
+	public boolean getRunning(String plant, int t) {
+		return running[plantIndex.get(plant)][t];
+	}
+
+	/**
+	 * @return production[plant index][step], to be filled directly by solver facades
+	 */
+	public double[][] getProduction() {
+		return production;
+	}
+
+	/**
+	 * @return running[plant index][step], to be filled directly by solver facades
+	 */
+	public boolean[][] getRunning() {
+		return running;
+	}
+
+	public double[] getTotalProduction() {
+		return totalProduction;
+	}
+
+	public double getObjective() {
+		return objective;
+	}
+
+	public void setObjective(double objective) {
+		this.objective = objective;
+	}
+
+	public int getTimeHorizon() {
+		return timeHorizon;
+	}
+}
@@ -0,0 +1,126 @@
+package de.uniaugsburg.isse.solver;
+
+import java.util.Collection;
+
+/**
+ * Copy of the production and running values a solver facade found for some plants, e.g., to keep a solution after the
+ * solver itself is cleaned up or reused for another model. Only steps 1 .. T are copied (the exported models start at
+ * 1), nothing can be solved anew.
+ */
+public class SolutionSnapshot implements SolverFacade {
+	private final int timeHorizon;
+	private SolutionMatrix solution;
+	private boolean solved;
+
+	/**
+	 * @param solver
+	 *            solved facade, the snapshot is not solved otherwise
+	 * @param plants
+	 *            names of the plants to copy
+	 * @param timeHorizon
+	 */
+	public SolutionSnapshot(SolverFacade solver, Collection<String> plants, int timeHorizon) {
+		this.timeHorizon = timeHorizon;
+		this.solved = solver.isSolved();
+		if (solved)
+			solution = solver.getSolution(plants, timeHorizon);
+	}
+
+	@Override
+	public void solve(String modelFile, String dataFile) {
+		throw new RuntimeException("A solution snapshot cannot solve " + modelFile + " / " + dataFile);
+	}
+
+	@Override
+	public double getProduction(String key, int i) {
+		return solution.getProduction(key, i);
+	}
+
+	@Override
+	public boolean getRunning(String key, int i) {
+		return solution.getRunning(key, i);
+	}
+
+	@Override
+	public double getObjective() {
+		return solution.getObjective();
+	}
+
+	@Override
+	public double getDecExpr(String decExpr, int i) {
+		throw new RuntimeException("Decision expression " + decExpr + " is not part of the snapshot");
+	}
+
+	@Override
+	public double getDecVar(String decVar, String p, int i) {
+		if ("energyProduction".equals(decVar))
+			return getProduction(p, i);
+		if ("running".equals(decVar))
+			return getRunning(p, i) ? 1.0 : 0.0;
+		throw new RuntimeException("Decision variable " + decVar + " is not part of the snapshot");
+	}
+
+	@Override
+	public double getTotalProduction(int i) {
+		return solution.getTotalProduction()[i];
+	}
+
+	@Override
+	public SolutionMatrix getSolution(Collection<String> plants, int timeHorizon) {
+		return SolutionMatrix.read(this, plants, timeHorizon);
+	}
+
+	@Override
+	public void setSettingsFile(String settingsFile) {
+	}
+
+	@Override
+	public void setTimeLimit(int seconds) {
+	}
+
+	@Override
+	public void setMipGap(double relativeGap) {
+	}
+
+	/**
+	 * Keeps the values, a snapshot is not bound to any solver resources
+	 */
+	@Override
+	public void cleanup() {
+	}
+
+	@Override
+	public boolean isSolved() {
+		return solved;
+	}
+
+	@Override
+	public void setSimplified(boolean isSimplified) {
+	}
+
+	@Override
+	public void setPresolve(boolean b) {
+	}
+
+	@Override
+	public void setUseInitialSolution(boolean useInitialSolution) {
+	}
+
+	@Override
+	public boolean isUseInitialSolution() {
+		return false;
+	}
+
+	@Override
+	public void setBackupSettings(boolean backupSettings) {
+	}
+
+	@Override
+	public boolean isBackupSettings() {
+		return false;
+	}
+
+	public int getTimeHorizon() {
+		return timeHorizon;
+	}
+}
@@ -1,5 +1,7 @@
 package de.uniaugsburg.isse.solver;
 
+import java.util.Collection;
+
 /**
  * Using an interface for solvers to avoid depending on CPLEX binaries in this
  * project
@@ -25,8 +27,20 @@ public interface SolverFacade {
 
 	double getTotalProduction(int i);
 
+	/**
+	 * Reads production, running and total production of steps 1 .. timeHorizon and the objective in one call
+	 * 
+	 * @param plants
+	 *            rows of the result, in iteration order
+	 * @param timeHorizon
+	 * @return
+	 */
+	SolutionMatrix getSolution(Collection<String> plants, int timeHorizon);
+
 	void setTimeLimit(int seconds);
 
+	void setMipGap(double relativeGap);
+
 	public abstract void cleanup();
 
 	public abstract boolean isSolved();
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 
+import de.uniaugsburg.isse.abstraction.types.ImmutableIntervalSet;
 import de.uniaugsburg.isse.abstraction.types.Interval;
 
 public class Utils {
@@ -48,14 +49,9 @@ public class Utils {
 	 */
 	public static String CplexIntervalSet(
 			Collection<Interval<Double>> feasibleRegion) {
-		StringBuilder sb = new StringBuilder("{");
-		if (feasibleRegion != null) {
-			for (Interval<Double> iv : feasibleRegion) {
-				sb.append("<" + iv.min + ", " + iv.max + ">");
-			}
-		}
-		sb.append("}");
-		return sb.toString();
+		if (feasibleRegion instanceof ImmutableIntervalSet)
+			return ((ImmutableIntervalSet) feasibleRegion).getCplexText();
+		return ImmutableIntervalSet.renderCplexText(feasibleRegion);
 	}
 
 	public static String getEmptySets(int timeHorizon) {
@@ -3,17 +3,31 @@ package de.uniaugsburg.isse.abstraction;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import de.uniaugsburg.isse.abstraction.merging.HoleCoarsening;
 import de.uniaugsburg.isse.abstraction.merging.HoleDetection;
+import de.uniaugsburg.isse.abstraction.types.ImmutableIntervalSet;
 import de.uniaugsburg.isse.abstraction.types.Interval;
+import de.uniaugsburg.isse.abstraction.types.PiecewiseLinearFunction;
+import de.uniaugsburg.isse.abstraction.types.TimeGrid;
+import de.uniaugsburg.isse.constraints.Constraint;
+import de.uniaugsburg.isse.constraints.FixedChangeConstraint;
 import de.uniaugsburg.isse.powerplants.PowerPlantData;
+import de.uniaugsburg.isse.powerplants.PowerPlantState;
+import de.uniaugsburg.isse.solver.MeritOrderSolverFacade;
+import de.uniaugsburg.isse.solver.SolutionMatrix;
+import de.uniaugsburg.isse.solver.SolutionSnapshot;
+import de.uniaugsburg.isse.util.AbstractionParameterLiterals;
 import de.uniaugsburg.isse.util.PowerPlantUtil;
+import de.uniaugsburg.isse.util.Utils;
 
 public class FunctionalTests {
 
@@ -131,6 +145,284 @@ public class FunctionalTests {
 		Assert.assertTrue(PowerPlantUtil.compareIntervalSets(expecteds, PowerPlantUtil.convert(ta.getAllFeasibleRegions())));
 	}
 
+	/**
+	 * Multi-resolution horizon: two 15 minute steps followed by a 30 minute step
+	 */
+	@Test
+	public void testTimeGrid() {
+		TimeGrid grid = TimeGrid.parse(15.0, "15, 15, 30");
+		Assert.assertEquals(3, grid.size());
+		Assert.assertEquals(4, grid.getCoveredBaseSteps());
+		Assert.assertEquals(2, grid.getBaseSteps(3));
+		Assert.assertEquals(30.0, grid.getStepLength(5), 0.0);
+		Assert.assertFalse(grid.isUniform());
+
+		// residual load is averaged over the coarse step
+		Double[] load = new Double[] { 100.0, 110.0, 120.0, 130.0, 150.0 };
+		Double[] aggregated = grid.aggregate(load, 1);
+		Assert.assertEquals(110.0, aggregated[0], 0.0);
+		Assert.assertEquals(120.0, aggregated[1], 0.0);
+		Assert.assertEquals(140.0, aggregated[2], 0.0);
+
+		// the coarse step allows twice the change: 50 +- (10, 20, 40)
+		PowerPlantData pd1 = PowerPlantFactory.getSimplePlant(0.0, 100.0, 50.0, 10.0, "CPP1");
+		Collection<PowerPlantData> pd = new ArrayList<PowerPlantData>(1);
+		pd.add(pd1);
+
+		TemporalAbstraction ta = new TemporalAbstraction();
+		ta.setPowerPlants(pd);
+		ta.setTimeGrid(grid);
+		ta.performNew();
+		ta.perform(3);
+
+		Collection<Collection<Interval<Double>>> expecteds = new ArrayList<Collection<Interval<Double>>>(3);
+		expecteds.add(PowerPlantFactory.getSingletonCollection(40.0, 60.0));
+		expecteds.add(PowerPlantFactory.getSingletonCollection(30.0, 70.0));
+		expecteds.add(PowerPlantFactory.getSingletonCollection(10.0, 90.0));
+		Assert.assertTrue(PowerPlantUtil.compareIntervalSets(expecteds, PowerPlantUtil.convert(ta.getAllFeasibleRegions())));
+
+		try {
+			TimeGrid.parse(15.0, "15, 20");
+			Assert.fail("Step lengths have to be multiples of the base length");
+		} catch (RuntimeException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Presolve fixes the running states a plant cannot leave and tightens its bounds
+	 */
+	@Test
+	public void testPresolve() {
+		// has to ramp down to its minimum before switching off
+		PowerPlantData pd1 = PowerPlantFactory.getSimplePlant(20.0, 100.0, 90.0, 10.0, "CPP1");
+		// off now but forced on
+		PowerPlantData pd2 = PowerPlantFactory.getOnPlant(10.0, 50.0, "CPP2");
+		// off now and free to start
+		PowerPlantData pd3 = PowerPlantFactory.getSimplePlant(10.0, 50.0, "CPP3");
+
+		Map<String, PowerPlantState> states = new HashMap<String, PowerPlantState>();
+		states.put(pd1.getName(), getState(pd1, 90.0));
+		states.put(pd2.getName(), getState(pd2, 0.0));
+		states.put(pd3.getName(), getState(pd3, 0.0));
+
+		Presolve presolve = new Presolve(3);
+		presolve.perform(states);
+
+		Assert.assertArrayEquals(new int[] { 1, 1, 1, 1 }, presolve.getRunningStatus().get("CPP1"));
+		Assert.assertArrayEquals(new double[] { 90.0, 80.0, 70.0, 60.0 }, presolve.getLowerBounds().get("CPP1"), 0.0001);
+		Assert.assertArrayEquals(new double[] { 90.0, 100.0, 100.0, 100.0 }, presolve.getUpperBounds().get("CPP1"), 0.0001);
+
+		// no ramping from off, only the plant's limits apply
+		Assert.assertArrayEquals(new int[] { 0, 1, 1, 1 }, presolve.getRunningStatus().get("CPP2"));
+		Assert.assertArrayEquals(new double[] { 0.0, 10.0, 10.0, 10.0 }, presolve.getLowerBounds().get("CPP2"), 0.0001);
+		Assert.assertArrayEquals(new double[] { 0.0, 50.0, 50.0, 50.0 }, presolve.getUpperBounds().get("CPP2"), 0.0001);
+
+		Assert.assertArrayEquals(new int[] { 0, -1, -1, -1 }, presolve.getRunningStatus().get("CPP3"));
+		Assert.assertArrayEquals(new double[] { 0.0, 0.0, 0.0, 0.0 }, presolve.getLowerBounds().get("CPP3"), 0.0001);
+
+		Assert.assertEquals(6, presolve.getFixedBinaries());
+		Assert.assertEquals(6, presolve.getTightenedBounds());
+		Assert.assertEquals(3, presolve.getOmittedConstraints()); // force on of CPP2
+
+		CplexExporter exporter = new CplexExporter();
+		exporter.setTimeHorizon(3);
+		exporter.setUseSamplingAbstraction(false);
+		exporter.setUseTemporalAbstraction(false);
+		exporter.setUsePresolve(true);
+		String model = exporter.createModel(Arrays.asList(pd1, pd2, pd3));
+		Assert.assertTrue(model.contains("if (presolvedRunning[\"CPP2\"][t] != 1) { running[\"CPP2\"][t] == true; }"));
+		Assert.assertTrue(model.contains("int presolvedRunning[ControllablePlants][COMPLETE_TIMERANGE] = ...;"));
+		String data = exporter.createPresolveData(presolve);
+		Assert.assertTrue(data.contains("\"CPP2\" : [0, 1, 1, 1]"));
+	}
+
+	/**
+	 * Three interchangeable plants form one class, the aggregated decision is split among them again
+	 */
+	@Test
+	public void testPlantClasses() {
+		Collection<PowerPlantData> pd = new ArrayList<PowerPlantData>(4);
+		for (int i = 1; i <= 3; ++i) {
+			PowerPlantData plant = PowerPlantFactory.getSimplePlant(20.0, 100.0, 50.0, 10.0, "CPP" + i);
+			plant.setCostFunction(new PiecewiseLinearFunction(20.0, 100.0, 3.0));
+			pd.add(plant);
+		}
+		PowerPlantData other = PowerPlantFactory.getSimplePlant(20.0, 100.0, 50.0, 5.0, "CPP4");
+		other.setCostFunction(new PiecewiseLinearFunction(20.0, 100.0, 3.0));
+		pd.add(other);
+
+		List<PlantClass> classes = PlantClass.group(pd);
+		Assert.assertEquals(2, classes.size());
+		Assert.assertEquals(3, classes.get(0).size());
+		Assert.assertEquals(10.0, classes.get(0).getMaxChange(), 0.0);
+		Assert.assertTrue(classes.get(0).isGraduallyOff());
+
+		Map<String, PowerPlantState> states = new HashMap<String, PowerPlantState>();
+		states.put("CPP1", getState(classes.get(0).getMembers().get(0), 60.0));
+		states.put("CPP2", getState(classes.get(0).getMembers().get(1), 30.0));
+		states.put("CPP3", getState(classes.get(0).getMembers().get(2), 0.0));
+		states.put("CPP4", getState(other, 50.0));
+		Assert.assertEquals(2, classes.get(0).getRunningMembers(states));
+		Assert.assertEquals(90.0, classes.get(0).getProduction(states), 0.0001);
+
+		CplexExporter exporter = new CplexExporter();
+		exporter.setTimeHorizon(3);
+		exporter.setCosts(true);
+		String model = exporter.createAggregatedModel(classes);
+		Assert.assertTrue(model.contains("int classSize[ControllablePlants] = [3, 1];"));
+		Assert.assertTrue(exporter.createAggregatedInitStateData(classes, states).contains("\"class_CPP1\" : #< pInit : 90.0,\nrunningInit: 2>#"));
+
+		// the plants at 60 (within 50 .. 70) and 30 (within 20 .. 40) keep running, both use 3/4 of their range
+		classes.get(0).disaggregate(2, 100.0, states, 1.0);
+		Assert.assertEquals(65.0, states.get("CPP1").getPower().min, 0.001);
+		Assert.assertEquals(35.0, states.get("CPP2").getPower().min, 0.001);
+		Assert.assertFalse(states.get("CPP3").isRunning().max);
+		Assert.assertEquals(0.0, states.get("CPP3").getPower().min, 0.0);
+	}
+
+	/**
+	 * Minimal costs of two plants that can be switched off: the cheaper plant alone, both plants or the expensive one
+	 * for outputs the cheaper one cannot reach
+	 */
+	@Test
+	public void testCostConvolution() {
+		PowerPlantData pd1 = PowerPlantFactory.getSimplePlant(10.0, 50.0, "CPP1");
+		pd1.setCostFunction(new PiecewiseLinearFunction(10.0, 50.0, 2.0));
+		PowerPlantData pd2 = PowerPlantFactory.getSimplePlant(20.0, 40.0, "CPP2");
+		pd2.setCostFunction(new PiecewiseLinearFunction(20.0, 40.0, 1.0));
+
+		CostConvolution convolution = new CostConvolution(100);
+		Assert.assertTrue(convolution.perform(Arrays.asList(pd1, pd2)));
+		PiecewiseLinearFunction costs = convolution.getCostFunction();
+		Assert.assertEquals(2, convolution.getConvexPieces()); // off and [10, 90]
+		Assert.assertArrayEquals(new double[] { 0.0, 10.0, 20.0, 40.0, 90.0 }, costs.getBreakpoints(costs.getBPs()), 0.0001);
+		Assert.assertEquals(0.0, costs.evaluate(0.0), 0.0001);
+		Assert.assertEquals(20.0, costs.evaluate(10.0), 0.0001);
+		Assert.assertEquals(30.0, costs.evaluate(30.0), 0.0001); // CPP2 alone
+		Assert.assertEquals(60.0, costs.evaluate(50.0), 0.0001); // CPP2 at 40, CPP1 at 10
+		Assert.assertEquals(140.0, costs.evaluate(90.0), 0.0001);
+
+		// 2 x 2 pieces exceed the bound
+		Assert.assertFalse(new CostConvolution(3).perform(Arrays.asList(pd1, pd2)));
+	}
+
+	/**
+	 * The cheapest child is raised first, the AVPP has to jump over its hole and the ramping plant stays within reach
+	 */
+	@Test
+	public void testMeritOrderDispatch() {
+		PowerPlantData pd1 = PowerPlantFactory.getSimplePlant(20.0, 100.0, 50.0, 10.0, "CPP1");
+		pd1.setCostFunction(new PiecewiseLinearFunction(20.0, 100.0, 2.0));
+		PowerPlantData pd2 = PowerPlantFactory.getSimplePlant(10.0, 50.0, "CPP2");
+		pd2.setCostFunction(new PiecewiseLinearFunction(10.0, 50.0, 5.0));
+		PowerPlantData avpp = new PowerPlantData("AVPP1");
+		avpp.setAVPP(true);
+		avpp.setPowerBoundaries(new Interval<Double>(0.0, 60.0));
+		avpp.setFeasibleRegions(new TreeSet<Interval<Double>>(PowerPlantFactory.getCollection(new double[] { 0.0, 0.0, 30.0, 60.0 })));
+		avpp.setCostFunction(new PiecewiseLinearFunction(30.0, 60.0, 1.0));
+
+		Map<String, PowerPlantState> states = new HashMap<String, PowerPlantState>();
+		states.put(pd1.getName(), getState(pd1, 50.0));
+		states.put(pd2.getName(), getState(pd2, 0.0));
+		states.put(avpp.getName(), getState(avpp, 0.0));
+
+		MeritOrderSolverFacade dispatcher = new MeritOrderSolverFacade(3);
+		dispatcher.setProblem(Arrays.asList(pd1, pd2, avpp), states, new Double[] { 70.0, 100.0, 130.0 });
+		dispatcher.solve(null, null);
+		Assert.assertTrue(dispatcher.isSolved());
+
+		// CPP1 cannot go below 40 in the first step, the AVPP covers the rest at its minimum
+		Assert.assertEquals(40.0, dispatcher.getProduction("CPP1", 1), 0.0001);
+		Assert.assertEquals(30.0, dispatcher.getProduction("AVPP1", 1), 0.0001);
+		Assert.assertFalse(dispatcher.getRunning("CPP2", 1));
+
+		Assert.assertEquals(40.0, dispatcher.getProduction("CPP1", 2), 0.0001);
+		Assert.assertEquals(60.0, dispatcher.getProduction("AVPP1", 2), 0.0001);
+
+		// CPP1 can only ramp up to 50, the expensive plant has to start
+		Assert.assertEquals(50.0, dispatcher.getProduction("CPP1", 3), 0.0001);
+		Assert.assertEquals(20.0, dispatcher.getProduction("CPP2", 3), 0.0001);
+		for (int t = 1; t <= 3; ++t)
+			Assert.assertEquals(40.0 + 30.0 * t, dispatcher.getTotalProduction(t), 0.0001);
+	}
+
+	@Test
+	public void testSolutionSnapshot() {
+		PowerPlantData pd1 = PowerPlantFactory.getSimplePlant(20.0, 100.0, 50.0, 10.0, "CPP1");
+		pd1.setCostFunction(new PiecewiseLinearFunction(20.0, 100.0, 2.0));
+		PowerPlantData pd2 = PowerPlantFactory.getSimplePlant(10.0, 50.0, "CPP2");
+		pd2.setCostFunction(new PiecewiseLinearFunction(10.0, 50.0, 5.0));
+
+		Map<String, PowerPlantState> states = new HashMap<String, PowerPlantState>();
+		states.put(pd1.getName(), getState(pd1, 50.0));
+		states.put(pd2.getName(), getState(pd2, 0.0));
+
+		MeritOrderSolverFacade dispatcher = new MeritOrderSolverFacade(2);
+		dispatcher.setProblem(Arrays.asList(pd1, pd2), states, new Double[] { 45.0, 70.0 });
+		dispatcher.solve(null, null);
+		SolutionSnapshot snapshot = new SolutionSnapshot(dispatcher, states.keySet(), 2);
+		double objective = dispatcher.getObjective();
+		dispatcher.cleanup();
+
+		// the values survive the cleanup of the solver
+		Assert.assertTrue(snapshot.isSolved());
+		Assert.assertEquals(45.0, snapshot.getProduction("CPP1", 1), 0.0001);
+		Assert.assertFalse(snapshot.getRunning("CPP2", 1));
+		Assert.assertEquals(70.0, snapshot.getTotalProduction(2), 0.0001);
+		Assert.assertEquals(objective, snapshot.getObjective(), 0.0001);
+
+		snapshot.cleanup();
+		Assert.assertEquals(45.0, snapshot.getProduction("CPP1", 1), 0.0001);
+		Assert.assertFalse(new SolutionSnapshot(dispatcher, states.keySet(), 2).isSolved());
+	}
+
+	@Test
+	public void testSolutionMatrix() {
+		PowerPlantData pd1 = PowerPlantFactory.getSimplePlant(20.0, 100.0, 50.0, 10.0, "CPP1");
+		pd1.setCostFunction(new PiecewiseLinearFunction(20.0, 100.0, 2.0));
+		PowerPlantData pd2 = PowerPlantFactory.getSimplePlant(10.0, 50.0, "CPP2");
+		pd2.setCostFunction(new PiecewiseLinearFunction(10.0, 50.0, 5.0));
+
+		Map<String, PowerPlantState> states = new HashMap<String, PowerPlantState>();
+		states.put(pd1.getName(), getState(pd1, 50.0));
+		states.put(pd2.getName(), getState(pd2, 0.0));
+
+		MeritOrderSolverFacade dispatcher = new MeritOrderSolverFacade(3);
+		dispatcher.setProblem(Arrays.asList(pd1, pd2), states, new Double[] { 45.0, 70.0, 120.0 });
+		dispatcher.solve(null, null);
+		List<String> plants = Arrays.asList("CPP2", "CPP1");
+		SolutionMatrix bulk = dispatcher.getSolution(plants, 3);
+		SolutionMatrix single = SolutionMatrix.read(dispatcher, plants, 3);
+
+		// rows in the requested order
+		Assert.assertEquals(0, bulk.getIndex("CPP2"));
+		Assert.assertEquals(1, bulk.getIndex("CPP1"));
+		Assert.assertEquals(-1, bulk.getIndex("CPP3"));
+		for (int p = 0; p < plants.size(); ++p) {
+			for (int t = 1; t <= 3; ++t) {
+				Assert.assertEquals(single.getProduction()[p][t], bulk.getProduction()[p][t], 0.0001);
+				Assert.assertEquals(single.getRunning()[p][t], bulk.getRunning()[p][t]);
+			}
+		}
+		for (int t = 1; t <= 3; ++t) {
+			Assert.assertEquals(dispatcher.getTotalProduction(t), bulk.getTotalProduction()[t], 0.0001);
+		}
+		Assert.assertEquals(dispatcher.getObjective(), bulk.getObjective(), 0.0001);
+
+		// a snapshot is filled through the bulk call
+		SolutionSnapshot snapshot = new SolutionSnapshot(dispatcher, plants, 3);
+		Assert.assertEquals(bulk.getProduction("CPP1", 3), snapshot.getProduction("CPP1", 3), 0.0001);
+	}
+
+	private PowerPlantState getState(PowerPlantData pd, double power) {
+		PowerPlantState state = new PowerPlantState();
+		state.setData(pd);
+		state.setPower(new Interval<Double>(power));
+		state.setRunning(new Interval<Boolean>(power > 0));
+		return state;
+	}
+
 	/**
 	 * This test catches one problem occurred at runtime - an empty list in the set of feasible regions coming from a
 	 * power plant underneath
@@ -154,6 +446,218 @@ public class FunctionalTests {
 		Assert.assertTrue(PowerPlantUtil.compareIntervals(firstIntervalList, feasibleRegions));
 	}
 
+	/**
+	 * Summing many plants on the reduction pool has to yield the same regions as summing them sequentially
+	 */
+	@Test
+	public void testParallelHoleDetection() {
+		Collection<Collection<Interval<Double>>> plantIntervalsList = new ArrayList<Collection<Interval<Double>>>();
+		for (int i = 0; i < 40; ++i) {
+			Collection<Interval<Double>> intervals = new ArrayList<Interval<Double>>(2);
+			intervals.add(new Interval<Double>(0.0));
+			intervals.add(new Interval<Double>(100.0, 101.0));
+			plantIntervalsList.add(intervals);
+		}
+
+		HoleDetection sequential = new HoleDetection();
+		sequential.setParallelThreshold(Integer.MAX_VALUE);
+		Collection<Interval<Double>> sequentialHoles = sequential.detectSupplyHolesNew(plantIntervalsList);
+
+		HoleDetection parallel = new HoleDetection();
+		parallel.setParallelThreshold(2);
+		Collection<Interval<Double>> parallelHoles = parallel.detectSupplyHolesNew(plantIntervalsList);
+
+		// k plants running yield [100 k, 101 k] which are disjoint up to k = 40
+		Assert.assertEquals(41, parallel.getIntervalList().size());
+		Assert.assertEquals(40, parallelHoles.size());
+		Assert.assertEquals(4000.0, parallel.getIntervalList().last().min, 0.0001);
+		Assert.assertEquals(4040.0, parallel.getIntervalList().last().max, 0.0001);
+		Assert.assertTrue(PowerPlantUtil.compareIntervals(sequential.getIntervalList(), parallel.getIntervalList()));
+		Assert.assertTrue(PowerPlantUtil.compareIntervals(sequentialHoles, parallelHoles));
+
+		// plants' own intervals must not be modified by merging
+		for (Collection<Interval<Double>> intervals : plantIntervalsList) {
+			Assert.assertTrue(PowerPlantUtil.compareIntervals(Arrays.asList(new Interval<Double>(0.0), new Interval<Double>(100.0, 101.0)), intervals));
+		}
+
+		// distinct plants are not grouped and hence summed on the pool
+		plantIntervalsList.clear();
+		for (int i = 0; i < 40; ++i) {
+			Collection<Interval<Double>> intervals = new ArrayList<Interval<Double>>(2);
+			intervals.add(new Interval<Double>(0.0));
+			intervals.add(new Interval<Double>(100.0 + 7.0 * i, 101.0 + 7.0 * i));
+			plantIntervalsList.add(intervals);
+		}
+		sequentialHoles = sequential.detectSupplyHolesNew(plantIntervalsList);
+		parallelHoles = parallel.detectSupplyHolesNew(plantIntervalsList);
+		Assert.assertTrue(PowerPlantUtil.compareIntervals(sequential.getIntervalList(), parallel.getIntervalList()));
+		Assert.assertTrue(PowerPlantUtil.compareIntervals(sequentialHoles, parallelHoles));
+	}
+
+	/**
+	 * A homogeneous fleet is summed by doubling
+	 */
+	@Test
+	public void testIdenticalPlantsHoleDetection() {
+		Collection<Collection<Interval<Double>>> plantIntervalsList = new ArrayList<Collection<Interval<Double>>>();
+		for (int i = 0; i < 1000; ++i) {
+			Collection<Interval<Double>> intervals = new ArrayList<Interval<Double>>(2);
+			intervals.add(new Interval<Double>(0.0));
+			intervals.add(new Interval<Double>(10.0, 12.0));
+			plantIntervalsList.add(intervals);
+		}
+		// one odd plant
+		plantIntervalsList.add(Arrays.asList(new Interval<Double>(1.0, 2.0)));
+
+		HoleDetection hd = new HoleDetection();
+		Collection<Interval<Double>> holes = hd.detectSupplyHolesNew(plantIntervalsList);
+
+		// k plants yield [10 k, 12 k] which overlap from k = 5 onwards, shifted by the odd plant
+		SortedSet<Interval<Double>> regions = hd.getIntervalList();
+		Assert.assertEquals(6, regions.size());
+		Assert.assertEquals(5, holes.size());
+		Assert.assertEquals(1.0, regions.first().min, 0.0001);
+		Assert.assertEquals(2.0, regions.first().max, 0.0001);
+		Assert.assertEquals(51.0, regions.last().min, 0.0001);
+		Assert.assertEquals(12002.0, regions.last().max, 0.0001);
+	}
+
+	@Test
+	public void testTemporalAbstractionCache() {
+		PowerPlantData pd1 = PowerPlantFactory.getSimplePlant(0.0, 100.0, 90.0, 10.0, "CPP1");
+		PowerPlantData pd2 = PowerPlantFactory.getSimplePlant(0.0, 100.0, 50.0, 10.0, "CPP2");
+		Collection<PowerPlantData> pd = new ArrayList<PowerPlantData>(2);
+		pd.add(pd1);
+		pd.add(pd2);
+		TemporalAbstractionCache cache = new TemporalAbstractionCache(10);
+
+		TemporalAbstraction ta = new TemporalAbstraction();
+		ta.setPowerPlants(pd);
+		ta.performNew();
+		ta.setCache(cache);
+		ta.perform(2);
+		Assert.assertEquals(0, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+
+		// same states in the next time step
+		TemporalAbstraction nextTa = new TemporalAbstraction();
+		nextTa.setPowerPlants(pd);
+		nextTa.performNew();
+		nextTa.setCache(cache);
+		nextTa.perform(2);
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertSame(ta.getAllFeasibleRegions(), nextTa.getAllFeasibleRegions());
+
+		// a changed state has to be propagated again
+		pd1.put(AbstractionParameterLiterals.POWER_INIT, "80.0");
+		nextTa = new TemporalAbstraction();
+		nextTa.setPowerPlants(pd);
+		nextTa.performNew();
+		nextTa.setCache(cache);
+		nextTa.perform(2);
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(2, cache.getMisses());
+		Assert.assertEquals(2, cache.size());
+		// step 1 : 1 -> [70, 90], 2 -> [40, 60] | combined : 110, 150
+		Assert.assertEquals(110.0, nextTa.getAllFeasibleRegions().get(0).first().min, 0.0001);
+		Assert.assertEquals(1.0 / 3.0, cache.getHitRate(), 0.0001);
+
+		// so does a changed constraint value or boundary
+		for (Constraint c : pd1.getAssociatedConstraints()) {
+			if (c instanceof FixedChangeConstraint)
+				((FixedChangeConstraint) c).setMaxProductionChange(5.0);
+		}
+		nextTa = new TemporalAbstraction();
+		nextTa.setPowerPlants(pd);
+		nextTa.performNew();
+		nextTa.setCache(cache);
+		nextTa.perform(2);
+		Assert.assertEquals(3, cache.getMisses());
+		// step 1 : 1 -> [75, 85], 2 -> [40, 60] | combined : 115, 145
+		Assert.assertEquals(115.0, nextTa.getAllFeasibleRegions().get(0).first().min, 0.0001);
+
+		pd2.setPowerBoundaries(new Interval<Double>(0.0, 55.0));
+		nextTa = new TemporalAbstraction();
+		nextTa.setPowerPlants(pd);
+		nextTa.performNew();
+		nextTa.setCache(cache);
+		nextTa.perform(2);
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(4, cache.getMisses());
+	}
+
+	@Test
+	public void testHoleCoarsening() {
+		SortedSet<Interval<Double>> regions = new TreeSet<Interval<Double>>();
+		regions.add(new Interval<Double>(0.0));
+		regions.add(new Interval<Double>(10.0, 20.0));
+		regions.add(new Interval<Double>(20.5, 21.0));
+		regions.add(new Interval<Double>(30.0, 40.0));
+
+		// closing holes below 1 merges [10, 20] and [20.5, 21]
+		HoleCoarsening optimistic = new HoleCoarsening(0, 1.0, HoleCoarsening.Approximation.OPTIMISTIC);
+		SortedSet<Interval<Double>> coarsened = optimistic.coarsen(regions);
+		Assert.assertTrue(optimistic.isCoarsened());
+		Assert.assertTrue(PowerPlantUtil.compareIntervals(
+				Arrays.asList(new Interval<Double>(0.0), new Interval<Double>(10.0, 21.0), new Interval<Double>(30.0, 40.0)), coarsened));
+		Assert.assertEquals(4, regions.size());
+
+		// at most two regions: next smallest hole is [21, 30]
+		optimistic.setMaxRegions(2);
+		coarsened = optimistic.coarsen(regions);
+		Assert.assertTrue(PowerPlantUtil.compareIntervals(Arrays.asList(new Interval<Double>(0.0), new Interval<Double>(10.0, 40.0)), coarsened));
+		Assert.assertEquals(1, HoleCoarsening.getHoles(coarsened).size());
+
+		// conservative drops the narrow inner region, outermost ones stay
+		HoleCoarsening conservative = new HoleCoarsening(3, 0.0, HoleCoarsening.Approximation.CONSERVATIVE);
+		coarsened = conservative.coarsen(regions);
+		Assert.assertTrue(PowerPlantUtil.compareIntervals(
+				Arrays.asList(new Interval<Double>(0.0), new Interval<Double>(10.0, 20.0), new Interval<Double>(30.0, 40.0)), coarsened));
+
+		// nothing to do
+		HoleCoarsening exact = new HoleCoarsening(10, 0.1, HoleCoarsening.Approximation.OPTIMISTIC);
+		Assert.assertSame(regions, exact.coarsen(regions));
+		Assert.assertFalse(exact.isCoarsened());
+	}
+
+	@Test
+	public void testInternedIntervalSets() {
+		SortedSet<Interval<Double>> regions = new TreeSet<Interval<Double>>();
+		regions.add(new Interval<Double>(0.0));
+		regions.add(new Interval<Double>(10.0, 20.0));
+		List<Interval<Double>> sameRegions = Arrays.asList(new Interval<Double>(10.0, 20.0), new Interval<Double>(0.0));
+
+		ImmutableIntervalSet shared = ImmutableIntervalSet.valueOf(regions);
+		Assert.assertSame(shared, ImmutableIntervalSet.valueOf(sameRegions));
+		Assert.assertSame(shared, ImmutableIntervalSet.valueOf(shared));
+		Assert.assertEquals(regions, shared);
+		Assert.assertEquals(regions.hashCode(), shared.hashCode());
+		Assert.assertEquals(0.0, shared.first().min, 0.0);
+		Assert.assertEquals(20.0, shared.last().max, 0.0);
+
+		// the shared set does not depend on the original intervals
+		regions.first().max = 5.0;
+		Assert.assertEquals(0.0, shared.first().max, 0.0);
+		// nor can it be changed through the intervals it hands out
+		shared.iterator().next().max = 5.0;
+		shared.last().min = 15.0;
+		Assert.assertEquals(new Interval<Double>(0.0), shared.first());
+		Assert.assertEquals(10.0, shared.last().min, 0.0);
+
+		// rendering is cached
+		String text = Utils.CplexIntervalSet(shared);
+		Assert.assertEquals("{<0.0, 0.0><10.0, 20.0>}", text);
+		Assert.assertEquals("{\n <0.0,0.0>,\n <10.0,20.0> \n}\n", shared.getDataText());
+		Assert.assertSame(text, Utils.CplexIntervalSet(ImmutableIntervalSet.valueOf(sameRegions)));
+
+		try {
+			shared.add(new Interval<Double>(30.0, 40.0));
+			Assert.fail("Interned interval sets must not be modifiable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
 	@Test
 	public void testTwoAvppsDifferentHorizon() {
 		ArrayList<SortedSet<Interval<Double>>> firstSet = new ArrayList<SortedSet<Interval<Double>>>(2);
@@ -1,5 +1,6 @@
 package de.uniaugsburg.isse.abstraction;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.SortedSet;
@@ -10,6 +11,7 @@ import org.junit.Test;
 
 import de.uniaugsburg.isse.ApproximateFunction;
 import de.uniaugsburg.isse.RealMap;
+import de.uniaugsburg.isse.abstraction.selectors.AdaptiveErrorSelector;
 import de.uniaugsburg.isse.abstraction.types.Interval;
 import de.uniaugsburg.isse.abstraction.types.PiecewiseLinearFunction;
 import de.uniaugsburg.isse.powerplants.PowerPlantData;
@@ -375,4 +377,133 @@ public class SamplingAbstractionTests {
 		Assert.assertArrayEquals(expecteds, actuals);
 	}
 
+	private int sampleAdaptively(AdaptiveErrorSelector selector, SortedSet<Interval<Double>> feasibleRegions, RealMap f) {
+		Collection<InOutPair> initialPoints = new TreeSet<InOutPair>();
+		for (Interval<Double> region : feasibleRegions) {
+			initialPoints.add(new InOutPair(region.min, f.f(region.min)));
+			initialPoints.add(new InOutPair(region.max, f.f(region.max)));
+		}
+		selector.reset();
+		selector.setInitialPoints(initialPoints);
+		selector.setAbstractionData(feasibleRegions, null);
+		int points = initialPoints.size();
+		while (selector.hasNext()) {
+			double input = selector.getNextInput();
+			Assert.assertTrue(input >= feasibleRegions.first().min && input <= feasibleRegions.last().max);
+			selector.inform(new InOutPair(input, f.f(input)));
+			++points;
+		}
+		return points;
+	}
+
+	@Test
+	public void adaptiveSamplingStopsOnLinearFunction() {
+		// a straight line only gets the minimal number of points
+		SortedSet<Interval<Double>> feasibleRegions = new TreeSet<Interval<Double>>();
+		feasibleRegions.add(new Interval<Double>(1.0, 10.0));
+
+		AdaptiveErrorSelector selector = new AdaptiveErrorSelector(0.01, 4, 20);
+		int points = sampleAdaptively(selector, feasibleRegions, new RealMap() {
+
+			@Override
+			public double f(double x) {
+				return 3.0 * x + 2.0;
+			}
+		});
+		Assert.assertEquals(4, points);
+		Assert.assertEquals(0.0, selector.getEstimatedError(), 0.0001);
+	}
+
+	@Test
+	public void adaptiveSamplingRefinesKinks() {
+		// the kink at 6.3 needs more points than the line, but stays within the budget
+		SortedSet<Interval<Double>> feasibleRegions = new TreeSet<Interval<Double>>();
+		feasibleRegions.add(new Interval<Double>(1.0, 10.0));
+		RealMap kink = new RealMap() {
+
+			@Override
+			public double f(double x) {
+				return Math.abs(x - 6.3);
+			}
+		};
+
+		AdaptiveErrorSelector selector = new AdaptiveErrorSelector(0.01, 3, 12);
+		int points = sampleAdaptively(selector, feasibleRegions, kink);
+		Assert.assertTrue(points > 4);
+		Assert.assertTrue(points <= 12);
+
+		// a looser tolerance needs fewer points
+		AdaptiveErrorSelector looseSelector = new AdaptiveErrorSelector(0.2, 3, 12);
+		Assert.assertTrue(sampleAdaptively(looseSelector, feasibleRegions, kink) < points);
+	}
+
+	@Test
+	public void adaptiveSamplingSkipsHoles() {
+		SortedSet<Interval<Double>> feasibleRegions = new TreeSet<Interval<Double>>();
+		feasibleRegions.add(new Interval<Double>(1.0, 4.0));
+		feasibleRegions.add(new Interval<Double>(8.0, 10.0));
+
+		AdaptiveErrorSelector selector = new AdaptiveErrorSelector(0.0, 10, 10);
+		selector.reset();
+		selector.setInitialPoints(Arrays.asList(new InOutPair(1.0, 1.0), new InOutPair(4.0, 4.0), new InOutPair(8.0, 8.0), new InOutPair(10.0, 10.0)));
+		selector.setAbstractionData(feasibleRegions, null);
+		while (selector.hasNext()) {
+			double input = selector.getNextInput();
+			Assert.assertFalse(input > 4.0 && input < 8.0);
+			selector.inform(new InOutPair(input, input));
+		}
+	}
+
+	@Test
+	public void testPwlSimplificationMergesCollinear() {
+		double[] inputs = new double[] { 1.0, 2.0, 3.0, 4.0, 5.0 };
+		double[] outputs = new double[] { 2.0, 4.0, 6.0, 7.0, 8.0 };
+		PiecewiseLinearFunction pwlFunction = new PiecewiseLinearFunction();
+		pwlFunction.convert(inputs, outputs);
+
+		PiecewiseLinearFunction simplified = pwlFunction.simplify(0.0);
+		// only the kink at 3 remains between first and last breakpoint
+		Assert.assertEquals(3, simplified.getBPs());
+		for (double d = 0.0; d <= 6.0; d += 0.5) {
+			Assert.assertEquals(pwlFunction.evaluate(d), simplified.evaluate(d), 0.0001);
+		}
+	}
+
+	@Test
+	public void testPwlSimplificationWithinErrorBound() {
+		ApproximateFunction af = new ApproximateFunction();
+		PiecewiseLinearFunction pwlFunc = af.create(new RealMap() {
+
+			@Override
+			public double f(double x) {
+				return Math.sqrt(x);
+			}
+		}, 1.0, 100.0, 30);
+
+		double errorBound = 0.2;
+		PiecewiseLinearFunction simplified = pwlFunc.simplify(errorBound);
+		Assert.assertTrue(simplified.getBPs() < pwlFunc.getBPs());
+		for (int i = 0; i < pwlFunc.getBPs(); ++i) {
+			double bp = pwlFunc.getBreakpoints(pwlFunc.getBPs())[i];
+			Assert.assertEquals(pwlFunc.evaluate(bp), simplified.evaluate(bp), errorBound + 0.0001);
+		}
+	}
+
+	@Test
+	public void testConvexHullOfCosts() {
+		double[] inputs = new double[] { 0.0, 1.0, 2.0, 3.0, 4.0 };
+		double[] outputs = new double[] { 0.0, 3.0, 2.0, 5.0, 9.0 };
+		PiecewiseLinearFunction costs = new PiecewiseLinearFunction();
+		costs.convert(inputs, outputs);
+		Assert.assertFalse(costs.isConvex());
+
+		PiecewiseLinearFunction convexCosts = costs.convexHull();
+		Assert.assertTrue(convexCosts.isConvex());
+		// 1.0 lies above the chord from 0 to 2
+		Assert.assertEquals(4, convexCosts.getBPs());
+		for (double d = 0.0; d <= 4.0; d += 0.25) {
+			Assert.assertTrue(convexCosts.evaluate(d) <= costs.evaluate(d) + 0.0001);
+		}
+		Assert.assertEquals(2.0, costs.getMaxDeviation(convexCosts), 0.0001);
+	}
 }